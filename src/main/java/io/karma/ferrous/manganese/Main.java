@@ -15,9 +15,12 @@
 
 package io.karma.ferrous.manganese;
 
+import io.karma.ferrous.manganese.cache.ModuleCache;
 import io.karma.ferrous.manganese.compiler.CompileContext;
 import io.karma.ferrous.manganese.compiler.CompileStatus;
 import io.karma.ferrous.manganese.compiler.Compiler;
+import io.karma.ferrous.manganese.daemon.Daemon;
+import io.karma.ferrous.manganese.daemon.DaemonClient;
 import io.karma.ferrous.manganese.linker.LinkModel;
 import io.karma.ferrous.manganese.linker.LinkTargetType;
 import io.karma.ferrous.manganese.linker.LinkerType;
@@ -32,8 +35,10 @@ import joptsimple.OptionParser;
 import org.apiguardian.api.API;
 import org.apiguardian.api.API.Status;
 import org.fusesource.jansi.Ansi;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
@@ -49,7 +54,15 @@ import static org.lwjgl.llvm.LLVMTargetMachine.LLVMGetHostCPUFeatures;
 @API(status = Status.INTERNAL)
 final class Main {
     public static void main(final String[] args) {
+        if (DaemonClient.isRemoteInvocation(args)) {
+            System.exit(DaemonClient.run(args)); // Don't pay for initializing LLVM in the client
+        }
         Manganese.init();
+        System.exit(run(args, Path.of(""), System.out, null).getExitCode());
+    }
+
+    private static CompileStatus run(final String[] args, final Path workingDirectory, final PrintStream printStream,
+                                     final @Nullable Daemon daemon) {
         var status = CompileStatus.SUCCESS;
 
         try {
@@ -75,10 +88,41 @@ final class Main {
                 .withOptionalArg()
                 .ofType(Integer.class)
                 .defaultsTo(Runtime.getRuntime().availableProcessors());
+            final var parallelOpt = parser.accepts("p", "Parallel mode. This will stream files through discovery, reading and parsing, and lower every file on its own thread using an isolated LLVM context.");
+            final var partitionsOpt = parser.accepts("P", "Number of partitions to generate machine code for in parallel. Every partition becomes its own object file.")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1);
+            final var lazyOpt = parser.accepts("l", "Lazy mode. This will only parse and emit the bodies of functions reachable from the entry point or an exported function.");
+            final var mappedOpt = parser.accepts("m", "Memory-mapped mode. This will lex source files straight from a memory mapping instead of reading them into memory first.");
+            final var splitOpt = parser.accepts("Ps", "Split mode. This will parse the top-level declarations of large files in parallel.");
+            final var fastLexerOpt = parser.accepts("f", "Fast lexer mode. This will lex sources with a table-driven lexer which only falls back to the generated lexer where needed.");
+            final var memoryBudgetOpt = parser.accepts("M", "Memory budget mode. This will release the parse tree, parser and lexer of every file once it has been compiled.");
+            final var heapBudgetOpt = parser.accepts("Mh", "The heap usage in megabytes above which parallel mode waits for files in flight before starting new ones.")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(0);
+            final var cacheOpt = parser.accepts("C", "A directory in which compiled modules are cached between invocations.")
+                .withRequiredArg()
+                .ofType(String.class);
+            final var cacheSizeOpt = parser.accepts("Cs", "The maximum size of the module cache in megabytes.")
+                .availableIf("C")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo((int) (ModuleCache.DEFAULT_MAX_SIZE >> 20));
+            final var daemonOpt = parser.accepts("daemon", "Daemon mode. Keeps the compiler running and serves compile requests forwarded with --remote.");
+            parser.accepts("remote", "Forward this invocation to a running compile daemon.");
+            final var socketOpt = parser.accepts("socket", "The path of the Unix-domain socket used to communicate with the compile daemon.")
+                .withRequiredArg()
+                .ofType(String.class)
+                .defaultsTo(Daemon.getDefaultSocketPath().toString());
             // Debug options
             final var debugOpt = parser.accepts("d", "Debug mode. This will print debug information during the compilation.");
             final var parseWarningsOpt = parser.accepts("Dp", "Display parser warnings during compilation.")
                 .availableIf("d");
+            final var grammarProfileOpt = parser.accepts("Dg", "Grammar profiling mode. This will print the time, lookahead and ambiguities of every grammar decision after parsing.");
+            final var verifyLexerOpt = parser.accepts("Df", "Lex every file a second time with the generated lexer and report where the fast lexer diverges from it.")
+                .availableIf("d");
             final var tokenViewOpt = parser.accepts("Dt", "Token view. This will print a tree structure containing all tokens during compilation.")
                 .availableIf("d");
             final var opaquePointerOpt = parser.accepts("DP", "Disable opaque pointers. Useful for disassembling compile output.")
@@ -106,6 +150,9 @@ final class Main {
                 .withOptionalArg()
                 .ofType(String.class)
                 .defaultsTo(CodeModel.DEFAULT.getName());
+            final var pipelineOpt = parser.accepts("Tp", "A custom LLVM pass pipeline to run instead of the one selected by the optimization level, e.g. 'mem2reg,instcombine,gvn'.")
+                .withRequiredArg()
+                .ofType(String.class);
             final var featuresOpt = parser.accepts("Tf", "Feature options forwarded to LLVM during compilation.")
                 .withOptionalArg()
                 .ofType(String.class)
@@ -160,6 +207,7 @@ final class Main {
                 .withOptionalArg()
                 .ofType(String.class)
                 .defaultsTo(LinkTargetType.EXECUTABLE.getName());
+            final var wholeProgramOpt = parser.accepts("Lw", "Whole-program mode. Internalizes all functions of an executable which are not exported, so they can be inlined across files and removed when unused.");
             final var linkerOptionsOpt = parser.accepts("Lo", "Options passed directly to the linker.")
                 .withOptionalArg()
                 .ofType(String.class)
@@ -176,41 +224,41 @@ final class Main {
                         .map(feat -> feat.substring(1))
                         .forEach(feat -> Logger.INSTANCE.infoln(STR."  - \{feat}"));
                     // @formatter:on
-                    return;
+                    return CompileStatus.SUCCESS;
                 }
                 if (options.has(targetOpt)) {
                     KitchenSink.printAvailableValues(Architecture.class, "Available architectures:");
                     KitchenSink.printAvailableValues(Platform.class, "Available platforms:");
                     KitchenSink.printAvailableValues(ABI.class, "Available ABIs:");
-                    return;
+                    return CompileStatus.SUCCESS;
                 }
                 if (options.has(linkTargetTypeOpt)) {
                     KitchenSink.printAvailableValues(LinkTargetType.class, "Available link target types:");
-                    return;
+                    return CompileStatus.SUCCESS;
                 }
                 if (options.has(linkModelOpt)) {
                     KitchenSink.printAvailableValues(LinkModel.class, "Available link models:");
-                    return;
+                    return CompileStatus.SUCCESS;
                 }
                 if (options.has(linkerTypeOpt)) {
                     KitchenSink.printAvailableValues(LinkerType.class, "Available linker types:");
-                    return;
+                    return CompileStatus.SUCCESS;
                 }
                 if (options.has(optimizationOpt)) {
                     KitchenSink.printAvailableValues(OptimizationLevel.class, "Available optimization levels:");
-                    return;
+                    return CompileStatus.SUCCESS;
                 }
                 if (options.has(codeModelOpt)) {
                     KitchenSink.printAvailableValues(CodeModel.class, "Available code models:");
-                    return;
+                    return CompileStatus.SUCCESS;
                 }
                 if (options.has(relocOpt)) {
                     KitchenSink.printAvailableValues(Relocation.class, "Available relocation types:");
-                    return;
+                    return CompileStatus.SUCCESS;
                 }
                 parser.formatHelpWith(new BuiltinHelpFormatter(120, 8));
                 parser.printHelpOn(Logger.INSTANCE); // Print help
-                return;
+                return CompileStatus.SUCCESS;
             }
             if (options.has(versionOpt)) {
                 final var location = Objects.requireNonNull(Compiler.class.getClassLoader().getResource(
@@ -222,7 +270,19 @@ final class Main {
                     Logger.INSTANCE.infoln(STR."Manganese Version \{attribs.getValue("Implementation-Version")}");
                     Logger.INSTANCE.infoln(STR."Running on \{SystemInfo.getPlatformPair()}");
                 }
-                return;
+                return CompileStatus.SUCCESS;
+            }
+            if (options.has(daemonOpt)) {
+                if (daemon != null) {
+                    Logger.INSTANCE.errorln("Compile daemon is already running");
+                    return CompileStatus.UNKNOWN_ERROR;
+                }
+                final var logLevel = options.has(debugOpt) ? LogLevel.DEBUG : LogLevel.INFO;
+                Logger.INSTANCE.setLogLevel(logLevel);
+                try (final var newDaemon = new Daemon(Path.of(options.valueOf(socketOpt)), logLevel, Main::run)) {
+                    newDaemon.serve();
+                }
+                return CompileStatus.SUCCESS;
             }
 
             final var targetTriple = options.valueOf(targetOpt);
@@ -236,32 +296,61 @@ final class Main {
             final var linkTargetType = LinkTargetType.byName(options.valueOf(linkTargetTypeOpt));
             if (optLevel.isEmpty() || relocation.isEmpty() || codeModel.isEmpty() || linkModel.isEmpty() || linkTargetType.isEmpty()) {
                 Logger.INSTANCE.errorln("Malformed parameter");
-                return;
+                return CompileStatus.SUCCESS;
             }
 
-            final var targetMachine = Manganese.createTargetMachine(target,
-                features,
-                optLevel.get(),
-                relocation.get(),
-                codeModel.get(),
-                options.valueOf(cpuOpt));
             final var linkerType = LinkerType.byName(options.valueOf(linkerTypeOpt));
             if (linkerType.isEmpty()) {
                 Logger.INSTANCE.errorln("Malformed parameter");
-                return;
+                return CompileStatus.SUCCESS;
             }
 
-            final var linker = linkerType.get().create();
-            linker.addRawOptions(options.valueOf(linkerOptionsOpt));
+            // @formatter:off
+            final var targetMachine = daemon != null
+                ? daemon.getOrCreateTargetMachine(target, features, optLevel.get(), relocation.get(), codeModel.get(), options.valueOf(cpuOpt))
+                : Manganese.createTargetMachine(target, features, optLevel.get(), relocation.get(), codeModel.get(), options.valueOf(cpuOpt));
+            // @formatter:on
+            final Compiler compiler;
+            if (daemon != null) {
+                compiler = daemon.getOrCreateCompiler(targetMachine,
+                    linkerType.get(),
+                    options.valueOf(linkerOptionsOpt),
+                    options.valueOf(threadsOpt),
+                    options.has(profilerOpt));
+            }
+            else {
+                final var linker = linkerType.get().create();
+                linker.addRawOptions(options.valueOf(linkerOptionsOpt));
+                compiler = Manganese.createCompiler(targetMachine,
+                    linker,
+                    options.valueOf(threadsOpt),
+                    options.has(profilerOpt));
+            }
 
-            try (final var compiler = Manganese.createCompiler(targetMachine,
-                linker,
-                options.valueOf(threadsOpt),
-                options.has(profilerOpt))) {
+            try {
                 compiler.setDisassemble(options.has(disassembleOpt));
                 compiler.setTokenView(options.has(tokenViewOpt), false);
                 compiler.setReportParserWarnings(options.has(parseWarningsOpt));
+                compiler.setProfileGrammar(options.has(grammarProfileOpt));
                 compiler.setEnableOpaquePointers(!options.has(opaquePointerOpt));
+                compiler.setParallelLowering(options.has(parallelOpt));
+                compiler.setLazyLowering(options.has(lazyOpt));
+                compiler.setMemoryMappedSources(options.has(mappedOpt));
+                compiler.setSplitLargeFiles(options.has(splitOpt));
+                compiler.setUseFastLexer(options.has(fastLexerOpt), options.has(verifyLexerOpt));
+                compiler.setReleaseParseState(options.has(memoryBudgetOpt));
+                compiler.setHeapBudget((long) Math.max(0, options.valueOf(heapBudgetOpt)) << 20);
+                compiler.setCodegenPartitions(Math.max(1, options.valueOf(partitionsOpt)));
+                compiler.setWholeProgram(options.has(wholeProgramOpt));
+                compiler.setOptimizationPipeline(options.has(pipelineOpt) ? options.valueOf(pipelineOpt) : null);
+                if (options.has(cacheOpt)) {
+                    final var cacheSize = (long) options.valueOf(cacheSizeOpt) << 20;
+                    final var cacheDirectory = workingDirectory.resolve(options.valueOf(cacheOpt));
+                    compiler.setModuleCache(new ModuleCache(cacheDirectory, cacheSize));
+                }
+                else {
+                    compiler.setModuleCache(null); // Compilers are reused in daemon mode
+                }
 
                 // Update the log level if we are in verbose mode.
                 final var debugMode = options.has(debugOpt);
@@ -274,27 +363,33 @@ final class Main {
                     }
                 }
 
-                final var in = Path.of(options.valueOf(inOpt));
+                final var in = workingDirectory.resolve(options.valueOf(inOpt));
                 // @formatter:off
                 final var out = options.has(outOpt)
-                    ? Path.of(options.valueOf(outOpt))
-                    : Path.of(KitchenSink.getRawFileName(in));
+                    ? workingDirectory.resolve(options.valueOf(outOpt))
+                    : workingDirectory.resolve(KitchenSink.getRawFileName(in));
                 // @formatter:on
 
                 try (final var context = new CompileContext()) {
                     final var result = compiler.compile(in, out, context, linkModel.get(), linkTargetType.get());
-                    targetMachine.dispose();
                     status = status.worse(result.status());
                     final var errors = result.errors();
                     Collections.sort(errors);
-                    errors.forEach(error -> error.print(System.out));
+                    errors.forEach(error -> error.print(printStream));
+                }
+            }
+            finally {
+                // Target machines and compilers are kept warm between daemon requests
+                if (daemon == null) {
+                    compiler.close();
+                    targetMachine.dispose();
                 }
             }
         }
         catch (OptionException | NoArgsException error) {
             // Special case; display help instead of logging the exception.
             Logger.INSTANCE.infoln("Try running with -? to get some help!");
-            System.exit(0);
+            return CompileStatus.SUCCESS;
         }
         catch (IOException error) {
             Logger.INSTANCE.errorln(error.toString());
@@ -306,7 +401,7 @@ final class Main {
         }
 
         Logger.INSTANCE.infoln(status.getFormattedMessage());
-        System.exit(status.getExitCode());
+        return status;
     }
 
     private static final class NoArgsException extends RuntimeException {
@@ -42,6 +42,7 @@ import static org.lwjgl.system.MemoryUtil.NULL;
 public final class Manganese {
     private static final AtomicBoolean IS_INITIALIZED = new AtomicBoolean(false);
     private static final AtomicReference<String> LAST_LLVM_ERROR = new AtomicReference<>("");
+    private static LLVMDiagnosticHandler diagnosticHandler;
 
     // @formatter:off
     private Manganese() {}
@@ -79,7 +80,7 @@ public final class Manganese {
         LLVMUtils.initAVR();
         LLVMUtils.initWebAssembly();
 
-        LLVMContextSetDiagnosticHandler(LLVMGetGlobalContext(), LLVMDiagnosticHandler.create((info, ctx) -> {
+        diagnosticHandler = LLVMDiagnosticHandler.create((info, ctx) -> {
             final var severityValue = LLVMGetDiagInfoSeverity(info);
             final var severity = DiagnosticSeverity.byValue(severityValue);
             if (severity.isEmpty()) {
@@ -91,7 +92,16 @@ public final class Manganese {
             }
             final var message = MemoryUtil.memUTF8(LLVMGetDiagInfoDescription(info)).toString();
             LAST_LLVM_ERROR.set(message);
-        }), NULL);
+        });
+        attachDiagnosticHandler(LLVMGetGlobalContext());
+    }
+
+    @API(status = API.Status.INTERNAL)
+    public static void attachDiagnosticHandler(final long context) {
+        if (!IS_INITIALIZED.get()) {
+            throw new IllegalStateException("Not initialized");
+        }
+        LLVMContextSetDiagnosticHandler(context, diagnosticHandler, NULL);
     }
 
     public static Target createTarget(final Architecture arch, final Platform platform, final ABI abi) {
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.cache;
+
+import io.karma.ferrous.manganese.module.Module;
+import io.karma.ferrous.manganese.target.TargetMachine;
+import io.karma.ferrous.manganese.util.Logger;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persistent, content-addressed cache for the lowered bitcode of single source files.
+ * Entries are keyed by the hash of the source file and every compiler setting which
+ * influences the generated IR, and are evicted in least-recently-used order once the
+ * cache grows beyond its size limit.
+ *
+ * @author Alexander Hinze
+ * @since 28/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class ModuleCache {
+    public static final long DEFAULT_MAX_SIZE = 512L << 20;
+    private static final String EXTENSION = ".bc";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final long TEMP_FILE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+    private static final String COMPILER_VERSION = STR."\{Objects.requireNonNullElse(ModuleCache.class.getPackage().getImplementationVersion(),
+        "dev")}+\{computeBuildId()}";
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger stores = new AtomicInteger();
+    private final AtomicInteger evictions = new AtomicInteger();
+
+    public ModuleCache(final Path directory, final long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * The implementation version is not bumped for local or CI builds of changed sources,
+     * so entries are additionally keyed by the size and modification time of the compiler
+     * classes, which change with every build.
+     */
+    private static String computeBuildId() {
+        try {
+            final var location = Path.of(ModuleCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (!Files.isDirectory(location)) {
+                return STR."\{Files.size(location)}-\{Files.getLastModifiedTime(location).toMillis()}";
+            }
+            var totalSize = 0L;
+            var lastModified = 0L;
+            try (final var files = Files.walk(location)) {
+                for (final var path : (Iterable<Path>) files::iterator) {
+                    if (!Files.isRegularFile(path)) {
+                        continue;
+                    }
+                    totalSize += Files.size(path);
+                    lastModified = Math.max(lastModified, Files.getLastModifiedTime(path).toMillis());
+                }
+            }
+            return STR."\{totalSize}-\{lastModified}";
+        }
+        catch (Exception error) {
+            // Without a stable build identity, entries must not outlive this process
+            Logger.INSTANCE.warnln(STR."Could not identify compiler build, cache entries are not reused: \{error}");
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    public String computeKey(final Path sourceFile, final TargetMachine machine, final boolean enableOpaquePointers,
+                             final boolean lazyLowering) throws IOException {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Files.readAllBytes(sourceFile));
+            // @formatter:off
+            final var settings = String.join("|",
+                COMPILER_VERSION,
+                machine.getTarget().getNormalizedTriple(),
+                machine.getFeatures(),
+                machine.getLevel().getName(),
+                machine.getRelocation().getName(),
+                machine.getCodeModel().getName(),
+                machine.getDataLayout(),
+                Boolean.toString(enableOpaquePointers),
+                Boolean.toString(lazyLowering));
+            // @formatter:on
+            digest.update(settings.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException("SHA-256 is not supported by this runtime", error);
+        }
+    }
+
+    public boolean contains(final String key) {
+        return Files.exists(getEntryPath(key));
+    }
+
+    public @Nullable Module load(final String key, final String name, final long context) {
+        final var path = getEntryPath(key);
+        if (!Files.exists(path)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try {
+            final var module = Module.fromBitcode(context, name, path);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis())); // Keep LRU order
+            hits.incrementAndGet();
+            Logger.INSTANCE.debugln(STR."Loaded module '\{name}' from cache entry \{key}");
+            return module;
+        }
+        catch (Exception error) {
+            Logger.INSTANCE.warnln(STR."Discarding broken cache entry \{key}: \{error}");
+            try {
+                Files.deleteIfExists(path);
+            }
+            catch (IOException ignored) { /* swallow exception */ }
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    public void store(final String key, final Module module) {
+        final var bitcode = module.getBitcode();
+        if (bitcode == null) {
+            Logger.INSTANCE.warnln(STR."Could not cache module '\{module.getName()}': no bitcode");
+            return;
+        }
+        final var path = getEntryPath(key);
+        Path tempPath = null;
+        try {
+            // Write to a temporary file first so concurrent readers never observe partial entries
+            tempPath = Files.createTempFile(directory, key, TEMP_EXTENSION);
+            try (final var channel = Files.newByteChannel(tempPath, StandardOpenOption.WRITE)) {
+                while (bitcode.hasRemaining()) {
+                    channel.write(bitcode);
+                }
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            stores.incrementAndGet();
+        }
+        catch (IOException error) {
+            Logger.INSTANCE.warnln(STR."Could not cache module '\{module.getName()}': \{error}");
+            if (tempPath != null) {
+                try {
+                    Files.deleteIfExists(tempPath);
+                }
+                catch (IOException ignored) { /* swallow exception */ }
+            }
+        }
+    }
+
+    public void evict() {
+        final var entries = new ArrayList<Entry>();
+        var totalSize = 0L;
+        final var tempFileDeadline = System.currentTimeMillis() - TEMP_FILE_TIMEOUT;
+        try (final var files = Files.list(directory)) {
+            for (final var path : (Iterable<Path>) files::iterator) {
+                final var fileName = path.getFileName().toString();
+                if (fileName.endsWith(TEMP_EXTENSION)) {
+                    // Left behind by a store which crashed, recent ones may still be written to
+                    if (Files.getLastModifiedTime(path).toMillis() < tempFileDeadline) {
+                        Files.deleteIfExists(path);
+                    }
+                    continue;
+                }
+                if (!fileName.endsWith(EXTENSION)) {
+                    continue;
+                }
+                final var entry = new Entry(path, Files.size(path), Files.getLastModifiedTime(path));
+                entries.add(entry);
+                totalSize += entry.size();
+            }
+        }
+        catch (IOException error) {
+            Logger.INSTANCE.warnln(STR."Could not scan module cache: \{error}");
+            return;
+        }
+        if (totalSize <= maxSize) {
+            return;
+        }
+        entries.sort(Comparator.comparing(Entry::lastModified));
+        for (final var entry : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(entry.path());
+                totalSize -= entry.size();
+                evictions.incrementAndGet();
+            }
+            catch (IOException error) {
+                Logger.INSTANCE.warnln(STR."Could not evict cache entry \{entry.path()}: \{error}");
+            }
+        }
+    }
+
+    public void printStatistics() {
+        Logger.INSTANCE.infoln(STR."Module cache: \{hits.get()} hits, \{misses.get()} misses, \{stores.get()} stores, \{evictions.get()} evictions");
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        stores.set(0);
+        evictions.set(0);
+    }
+
+    private Path getEntryPath(final String key) {
+        return directory.resolve(key + EXTENSION);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public int getStores() {
+        return stores.get();
+    }
+
+    public int getEvictions() {
+        return evictions.get();
+    }
+
+    private record Entry(Path path, long size, FileTime lastModified) {}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.compiler;
+
+import io.karma.ferrous.manganese.util.Logger;
+import io.karma.ferrous.manganese.util.TokenTable;
+import io.karma.ferrous.vanadium.FerrousLexer;
+import io.karma.ferrous.vanadium.FerrousParser;
+import io.karma.ferrous.vanadium.FerrousParser.DeclContext;
+import io.karma.ferrous.vanadium.FerrousParser.FileContext;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a single large file on multiple threads by splitting its tokens
+ * at top-level declaration boundaries, parsing every chunk with its own parser
+ * and stitching the declarations of all chunks into the parse tree of the first one.
+ * Chunks are token ranges of the file's token table, so all token indices stay valid.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class ChunkedParser {
+    /**
+     * Files with fewer tokens than this are parsed as a whole.
+     */
+    public static final int MIN_FILE_TOKENS = 1 << 16;
+    /**
+     * Chunks are grown until they contain at least this many tokens.
+     */
+    public static final int MIN_CHUNK_TOKENS = 1 << 13;
+
+    // @formatter:off
+    private ChunkedParser() {}
+    // @formatter:on
+
+    /**
+     * @param tokenTable The tokens of the file to split.
+     * @param maxChunks  The maximum number of chunks to create.
+     * @return The index of the first token of every chunk.
+     */
+    public static int[] findBoundaries(final TokenTable tokenTable, final int maxChunks) {
+        final var size = tokenTable.size();
+        final var chunkSize = Math.max(MIN_CHUNK_TOKENS, size / Math.max(1, maxChunks));
+        final var boundaries = new ArrayList<Integer>();
+        boundaries.add(0);
+        var depth = 0;
+        var isAfterDeclaration = false;
+        for (var i = 0; i < size; i++) {
+            if (tokenTable.getChannel(i) != Token.DEFAULT_CHANNEL) {
+                continue;
+            }
+            switch (tokenTable.getType(i)) {
+                case FerrousLexer.L_BRACE -> depth++;
+                case FerrousLexer.R_BRACE -> {
+                    if (--depth < 0) {
+                        return new int[]{0}; // Unbalanced, let the parser report it
+                    }
+                    isAfterDeclaration = depth == 0;
+                    continue;
+                }
+            }
+            // Only split in front of something which starts like a declaration, like a keyword or name
+            if (isAfterDeclaration && i - boundaries.getLast() >= chunkSize) {
+                final var text = tokenTable.getText(i);
+                if (!text.isEmpty() && Character.isLetter(text.charAt(0))) {
+                    boundaries.add(i);
+                }
+            }
+            isAfterDeclaration = false;
+        }
+        return boundaries.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @param tokenTable     The tokens of the file to parse.
+     * @param maxChunks      The maximum number of chunks to parse concurrently.
+     * @param executor       The executor to parse chunks on.
+     * @param grammarProfile The profile to add the decisions of every chunk parser to, if any.
+     * @return The stitched parse tree, or null if the file could not be split
+     * or any chunk could not be parsed in SLL mode, in which case the file has to be parsed as a whole.
+     */
+    public static @Nullable FileContext parse(final TokenTable tokenTable, final int maxChunks,
+                                              final ExecutorService executor,
+                                              final @Nullable GrammarProfile grammarProfile) {
+        final var startTime = System.nanoTime();
+        final var boundaries = findBoundaries(tokenTable, maxChunks);
+        final var numChunks = boundaries.length;
+        if (numChunks < 2) {
+            return null;
+        }
+        final var futures = new ArrayList<CompletableFuture<FileContext>>(numChunks);
+        for (var i = 0; i < numChunks; i++) {
+            final var begin = boundaries[i];
+            final var end = i + 1 < numChunks ? boundaries[i + 1] : tokenTable.size() - 1;
+            futures.add(CompletableFuture.supplyAsync(() -> parseChunk(tokenTable, begin, end, grammarProfile),
+                executor));
+        }
+        final var chunks = new ArrayList<FileContext>(numChunks);
+        try {
+            for (final var future : futures) {
+                chunks.add(future.join());
+            }
+        }
+        catch (CompletionException error) {
+            if (error.getCause() instanceof ParseCancellationException) {
+                Logger.INSTANCE.debugln("Could not parse chunk in SLL mode, parsing file as a whole");
+                return null;
+            }
+            throw error;
+        }
+        final var fileContext = stitch(tokenTable, chunks);
+        if (fileContext == null) {
+            Logger.INSTANCE.debugln("Could not stitch chunks, parsing file as a whole");
+            return null;
+        }
+        final var time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Logger.INSTANCE.debugln(STR."Parsed \{tokenTable.getSourceName()} in \{numChunks} chunks in \{time}ms");
+        return fileContext;
+    }
+
+    private static FileContext parseChunk(final TokenTable tokenTable, final int begin, final int end,
+                                          final @Nullable GrammarProfile grammarProfile) {
+        final var parser = new FerrousParser(tokenTable.getRange(begin, end));
+        parser.removeErrorListeners();
+        if (grammarProfile != null) {
+            parser.setProfile(true);
+        }
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+        final var fileContext = parser.file();
+        if (grammarProfile != null) {
+            grammarProfile.add(parser);
+        }
+        return fileContext;
+    }
+
+    private static @Nullable ParserRuleContext findContainer(final ParserRuleContext context) {
+        if (context.children == null) {
+            return null;
+        }
+        for (final var child : context.children) {
+            if (child instanceof DeclContext) {
+                return context;
+            }
+            if (child instanceof ParserRuleContext ruleContext) {
+                final var container = findContainer(ruleContext);
+                if (container != null) {
+                    return container;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isEndOfFile(final ParseTree tree) {
+        return tree instanceof TerminalNode node && node.getSymbol().getType() == Token.EOF;
+    }
+
+    private static boolean isWrapper(final ParserRuleContext container) {
+        // Everything around the declarations of a chunk has to be structure only, so dropping it loses nothing
+        ParseTree child = container;
+        var parent = container.getParent();
+        while (parent != null) {
+            for (final var sibling : parent.children) {
+                if (sibling != child && !isEndOfFile(sibling)) {
+                    return false;
+                }
+            }
+            child = parent;
+            parent = parent.getParent();
+        }
+        return true;
+    }
+
+    private static @Nullable FileContext stitch(final TokenTable tokenTable, final ArrayList<FileContext> chunks) {
+        final var fileContext = chunks.getFirst();
+        final var container = findContainer(fileContext);
+        if (container == null) {
+            return null;
+        }
+        var stop = container.stop;
+        for (var i = 1; i < chunks.size(); i++) {
+            final var chunkContainer = findContainer(chunks.get(i));
+            if (chunkContainer == null || !isWrapper(chunkContainer)) {
+                return null;
+            }
+            for (final var child : chunkContainer.children) {
+                child.setParent(container);
+                container.addAnyChild(child);
+            }
+            stop = chunkContainer.stop;
+        }
+        // The first chunk ended at the start of the second one, so move its end to the end of the file
+        final var endOfFile = tokenTable.get(tokenTable.size() - 1);
+        ParserRuleContext context = container;
+        while (context != null) {
+            context.stop = context.stop != null && context.stop.getType() == Token.EOF ? endOfFile : stop;
+            for (final var child : context.children) {
+                if (isEndOfFile(child) && child instanceof TerminalNodeImpl node) {
+                    node.symbol = endOfFile;
+                }
+            }
+            context = context.getParent();
+        }
+        return fileContext;
+    }
+}
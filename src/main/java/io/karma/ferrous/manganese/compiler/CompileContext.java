@@ -16,8 +16,13 @@
 package io.karma.ferrous.manganese.compiler;
 
 import io.karma.ferrous.manganese.compiler.pass.CompilePass;
+import io.karma.ferrous.manganese.compiler.pass.ParseTreePass;
 import io.karma.ferrous.manganese.module.Module;
 import io.karma.ferrous.manganese.module.ModuleData;
+import io.karma.ferrous.manganese.ocm.type.Type;
+import io.karma.ferrous.manganese.parser.MultiplexedParseListener;
+import io.karma.ferrous.manganese.util.Identifier;
+import io.karma.ferrous.manganese.util.Logger;
 import io.karma.ferrous.manganese.util.TokenUtils;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.tree.ParseTreeListener;
@@ -27,10 +32,10 @@ import org.apiguardian.api.API.Status;
 import org.jetbrains.annotations.Nullable;
 
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Objects;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -66,6 +71,10 @@ public final class CompileContext implements AutoCloseable {
         return moduleData.computeIfAbsent(name, ModuleData::new);
     }
 
+    public Collection<ModuleData> getModuleData() {
+        return moduleData.values();
+    }
+
     public ModuleData getOrCreateModuleData() {
         return getOrCreateModuleData(Objects.requireNonNull(getCurrentModuleName()));
     }
@@ -84,7 +93,7 @@ public final class CompileContext implements AutoCloseable {
 
     public CompileError makeError(final Token token, final CompileErrorCode errorCode) {
         return new CompileError(token,
-            TokenUtils.getLineTokens(getOrCreateModuleData().getTokenStream(), token),
+            TokenUtils.getLineTokens(getOrCreateModuleData().getTokenTable(), token),
             getCurrentPass(),
             null,
             getCurrentSourceFile(),
@@ -93,7 +102,7 @@ public final class CompileContext implements AutoCloseable {
 
     public CompileError makeError(final Token token, final String text, final CompileErrorCode errorCode) {
         return new CompileError(token,
-            TokenUtils.getLineTokens(getOrCreateModuleData().getTokenStream(), token),
+            TokenUtils.getLineTokens(getOrCreateModuleData().getTokenTable(), token),
             getCurrentPass(),
             text,
             getCurrentSourceFile(),
@@ -117,10 +126,6 @@ public final class CompileContext implements AutoCloseable {
     }
 
     public void addError(final CompileError error) {
-        final var tokenStream = getOrCreateModuleData().getTokenStream();
-        if (tokenStream != null && tokenStream.size() == 0) {
-            tokenStream.fill();
-        }
         if (errors.contains(error)) {
             return; // Don't report duplicates
         }
@@ -128,6 +133,15 @@ public final class CompileContext implements AutoCloseable {
         setCurrentStatus(getCurrentStatus().worse(error.getStatus()));
     }
 
+    public boolean hasErrors(final Path sourceFile) {
+        for (final var error : errors) {
+            if (sourceFile.equals(error.sourceFile())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public @Nullable CompilePass getCurrentPass() {
         return threadLocals.get().currentPass;
     }
@@ -148,7 +162,8 @@ public final class CompileContext implements AutoCloseable {
         return threadLocals.get().currentModuleName;
     }
 
-    void setCurrentModuleName(final @Nullable String currentName) {
+    @API(status = Status.INTERNAL)
+    public void setCurrentModuleName(final @Nullable String currentName) {
         threadLocals.get().currentModuleName = currentName;
     }
 
@@ -156,14 +171,67 @@ public final class CompileContext implements AutoCloseable {
         return threadLocals.get().currentSourceFile;
     }
 
-    void setCurrentSourceFile(final @Nullable Path currentSourceFile) {
+    @API(status = Status.INTERNAL)
+    public void setCurrentSourceFile(final @Nullable Path currentSourceFile) {
         threadLocals.get().currentSourceFile = currentSourceFile;
     }
 
+    /**
+     * @return The types the generic parameters of the function whose body
+     * is currently being parsed on this thread are bound to.
+     */
+    public Map<Identifier, Type> getGenericBindings() {
+        return threadLocals.get().genericBindings;
+    }
+
+    @API(status = Status.INTERNAL)
+    public void setGenericBindings(final Map<Identifier, Type> genericBindings) {
+        threadLocals.get().genericBindings = genericBindings;
+    }
+
     public void walkParseTree(final ParseTreeListener listener) {
         ParseTreeWalker.DEFAULT.walk(listener, getOrCreateModuleData().getFileContext());
     }
 
+    public void walkParseTree(final List<? extends ParseTreePass<?>> passes) {
+        final var parseListeners = getOrCreateModuleData().getParseListeners();
+        final var multiplexer = new MultiplexedParseListener();
+        for (final var pass : passes) {
+            final var listener = pass.createParseListener(this);
+            parseListeners.put(pass, listener);
+            multiplexer.subscribe(listener);
+        }
+        final var profiler = getCompiler().getProfiler();
+        profiler.push("Walk parse tree");
+        final var startTime = System.nanoTime();
+        walkParseTree(multiplexer);
+        final var time = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+        profiler.pop();
+        Logger.INSTANCE.debugln(STR."Walked parse tree of \{getCurrentModuleName()} for \{passes.size()} passes in \{time}us");
+    }
+
+    @SuppressWarnings("unchecked")
+    public <L extends ParseTreeListener> L getParseListener(final ParseTreePass<L> pass) {
+        final var parseListeners = getOrCreateModuleData().getParseListeners();
+        synchronized (parseListeners) {
+            if (parseListeners.isEmpty()) {
+                // The first parse tree pass to run drives all of them from one shared traversal
+                final var parseTreePasses = getCompiler().getParseTreePasses();
+                if (parseTreePasses.contains(pass)) {
+                    walkParseTree(parseTreePasses);
+                }
+            }
+            var listener = (L) parseListeners.get(pass);
+            if (listener == null) {
+                // The pass was not part of the shared traversal, so it gets a traversal of its own
+                listener = pass.createParseListener(this);
+                walkParseTree(listener);
+                parseListeners.put(pass, listener);
+            }
+            return listener;
+        }
+    }
+
     public void dispose() {
         modules.values().forEach(Module::dispose); // Dispose the actual modules
         modules.clear();
@@ -180,5 +248,6 @@ public final class CompileContext implements AutoCloseable {
         private String currentModuleName;
         private Path currentSourceFile;
         private CompilePass currentPass;
+        private Map<Identifier, Type> genericBindings = Collections.emptyMap();
     }
 }
@@ -28,6 +28,7 @@ public enum CompileErrorCode {
     E0003("Could not open file input stream while analyzing file", CompileStatus.IO_ERROR),
     E0004("Could not open file output stream while compiling file", CompileStatus.IO_ERROR),
     E0005("Could not create target directory", CompileStatus.IO_ERROR),
+    E0006("Could not list input directory", CompileStatus.IO_ERROR),
     // Verification Errors
     E1000("Translation unit module could not be verified", CompileStatus.VERIFY_ERROR),
     E1001("Builtin module could not be verified", CompileStatus.VERIFY_ERROR),
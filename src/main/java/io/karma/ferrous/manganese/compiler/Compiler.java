@@ -15,25 +15,40 @@
 
 package io.karma.ferrous.manganese.compiler;
 
+import io.karma.ferrous.manganese.Manganese;
+import io.karma.ferrous.manganese.cache.ModuleCache;
 import io.karma.ferrous.manganese.compiler.pass.*;
 import io.karma.ferrous.manganese.linker.LinkModel;
 import io.karma.ferrous.manganese.linker.LinkTargetType;
 import io.karma.ferrous.manganese.linker.Linker;
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.module.Module;
+import io.karma.ferrous.manganese.module.ModuleInternalizer;
+import io.karma.ferrous.manganese.module.ModuleMerger;
+import io.karma.ferrous.manganese.module.ModuleOptimizer;
+import io.karma.ferrous.manganese.module.ModulePartitioner;
+import io.karma.ferrous.manganese.ocm.function.Function;
+import io.karma.ferrous.manganese.ocm.type.Types;
+import io.karma.ferrous.manganese.parser.FastLexer;
 import io.karma.ferrous.manganese.profiler.NoOpProfiler;
 import io.karma.ferrous.manganese.profiler.Profiler;
 import io.karma.ferrous.manganese.profiler.RemoteryProfiler;
 import io.karma.ferrous.manganese.target.FileType;
+import io.karma.ferrous.manganese.target.OptimizationLevel;
 import io.karma.ferrous.manganese.target.TargetMachine;
 import io.karma.ferrous.manganese.util.KitchenSink;
 import io.karma.ferrous.manganese.util.Logger;
+import io.karma.ferrous.manganese.util.MappedCharStream;
+import io.karma.ferrous.manganese.util.TokenTable;
 import io.karma.ferrous.manganese.util.TokenUtils;
 import io.karma.ferrous.vanadium.FerrousLexer;
 import io.karma.ferrous.vanadium.FerrousParser;
 import io.karma.kommons.function.Functions;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.apiguardian.api.API;
 import org.apiguardian.api.API.Status;
 import org.fusesource.jansi.Ansi;
@@ -50,10 +65,16 @@ import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.lwjgl.llvm.LLVMCore.LLVMContextSetOpaquePointers;
 import static org.lwjgl.llvm.LLVMCore.LLVMGetGlobalContext;
@@ -65,24 +86,50 @@ import static org.lwjgl.llvm.LLVMCore.LLVMGetGlobalContext;
 @API(status = Status.STABLE)
 public final class Compiler implements AutoCloseable {
     private static final String[] IN_EXTENSIONS = {"ferrous", "fe"};
+    public static final String MAIN_FUNCTION_NAME = "main";
+    private static final int PIPELINE_QUEUE_CAPACITY = 4; // Per worker
 
     private final TargetMachine targetMachine;
     private final Linker linker;
     private final ExecutorService executorService;
+    private final int numThreads;
     private final Profiler profiler;
     private final ArrayList<CompilePass> passes = new ArrayList<>();
+    private final HashMap<CompilePass, ArrayList<CompilePass>> passDependencies = new HashMap<>();
+    private final FastLexer.ShapeCache lexerShapes = new FastLexer.ShapeCache(FerrousLexer::new);
 
     private boolean tokenView;
     private boolean extendedTokenView;
     private boolean reportParserWarnings;
     private boolean disassemble;
+    private boolean parallelLowering;
+    private boolean lazyLowering;
+    private int codegenPartitions = 1;
+    private @Nullable String optimizationPipeline;
+    private boolean wholeProgram;
+    private boolean memoryMappedSources;
+    private boolean releaseParseState;
+    private long heapBudget;
+    private boolean enableOpaquePointers = true;
     private boolean isDisposed;
+    private ParseStatistics parseStatistics = new ParseStatistics();
+    private LoweringStatistics loweringStatistics = new LoweringStatistics();
+    private MonomorphizationCache monomorphizationCache = new MonomorphizationCache();
+    private boolean profileGrammar;
+    private boolean useFastLexer;
+    private boolean splitLargeFiles;
+    private boolean verifyFastLexer;
+    private @Nullable GrammarProfile grammarProfile;
+    private @Nullable ModuleCache moduleCache;
+    private @Nullable PassScheduler scheduler;
+    private @Nullable PassScheduler.Report lastScheduleReport;
 
     @API(status = Status.INTERNAL)
     public Compiler(final TargetMachine targetMachine, final Linker linker, final int numThreads,
                     final boolean enableProfiler) {
         this.targetMachine = targetMachine;
         this.linker = linker;
+        this.numThreads = numThreads;
         executorService = Executors.newWorkStealingPool(numThreads);
         Runtime.getRuntime().addShutdownHook(new Thread(() -> Functions.tryDo(() -> {
             executorService.shutdown();
@@ -123,36 +170,68 @@ public final class Compiler implements AutoCloseable {
         throw new IllegalStateException("No such compile pass");
     }
 
+    public List<ParseTreePass<?>> getParseTreePasses() {
+        final var parseTreePasses = new ArrayList<ParseTreePass<?>>();
+        for (final var pass : passes) {
+            if (pass instanceof ParseTreePass<?> parseTreePass) {
+                parseTreePasses.add(parseTreePass);
+            }
+        }
+        return parseTreePasses;
+    }
+
     public boolean addPass(final CompilePass pass) {
         if (passes.contains(pass)) {
             return false;
         }
         passes.add(pass);
+        scheduler = null;
         return true;
     }
 
     public boolean addPassBefore(final Class<? extends CompilePass> beforeType, final CompilePass pass) {
+        if (passes.contains(pass)) {
+            return false;
+        }
         for (final var toCompare : passes) {
             if (!toCompare.getClass().equals(beforeType)) {
                 continue;
             }
-            passes.add(Math.max(0, passes.indexOf(toCompare) - 1), pass);
+            passes.add(passes.indexOf(toCompare), pass);
+            passDependencies.computeIfAbsent(toCompare, p -> new ArrayList<>()).add(pass);
+            scheduler = null;
             return true;
         }
         return false;
     }
 
     public boolean addPassAfter(final Class<? extends CompilePass> afterType, final CompilePass pass) {
+        if (passes.contains(pass)) {
+            return false;
+        }
         for (final var toCompare : passes) {
             if (!toCompare.getClass().equals(afterType)) {
                 continue;
             }
-            passes.add(passes.indexOf(toCompare), pass);
+            passes.add(passes.indexOf(toCompare) + 1, pass);
+            passDependencies.computeIfAbsent(pass, p -> new ArrayList<>()).add(toCompare);
+            scheduler = null;
             return true;
         }
         return false;
     }
 
+    public PassScheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = new PassScheduler(passes, passDependencies);
+        }
+        return scheduler;
+    }
+
+    public @Nullable PassScheduler.Report getLastScheduleReport() {
+        return lastScheduleReport;
+    }
+
     private void addDefaultPasses() {
         passes.add(new TypeDiscoveryPass());
         passes.add(new TypeResolutionPass());
@@ -161,55 +240,237 @@ public final class Compiler implements AutoCloseable {
         passes.add(new EmitPass());
     }
 
-    private void tokenizeAndParse(final String name, final ReadableByteChannel in, final CompileContext context) {
+    private boolean tokenize(final String name, final ReadableByteChannel in, final CompileContext context) {
         try {
-            context.setCurrentModuleName(name);
-            final var moduleData = context.getOrCreateModuleData();
-            // Tokenize
-            profiler.push("Tokenize");
-            final var lexer = new FerrousLexer(CharStreams.fromChannel(in, StandardCharsets.UTF_8));
-            moduleData.setLexer(lexer);
-            final var tokenStream = new CommonTokenStream(lexer);
-            tokenStream.fill();
-            moduleData.setTokenStream(tokenStream);
-            profiler.pop();
-            if (tokenView) {
-                System.out.printf("\n%s\n",
-                    TokenUtils.renderTokenTree(context.getCurrentModuleName(),
-                        extendedTokenView,
-                        lexer,
-                        tokenStream.getTokens()));
+            return tokenize(name, CharStreams.fromChannel(in, StandardCharsets.UTF_8), context);
+        }
+        catch (IOException error) {
+            context.reportError(error.getMessage(), CompileErrorCode.E0002);
+            return false;
+        }
+    }
+
+    private boolean tokenize(final String name, final CharStream in, final CompileContext context) {
+        context.setCurrentModuleName(name);
+        final var moduleData = context.getOrCreateModuleData();
+        profiler.push("Tokenize");
+        final var lexer = new FerrousLexer(in);
+        moduleData.setLexer(lexer);
+        final var fastLexer = useFastLexer ? new FastLexer(in, lexer, lexerShapes) : null;
+        final var startTime = System.nanoTime();
+        final var tokenTable = TokenTable.tokenize(fastLexer != null ? fastLexer : lexer);
+        final var time = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+        moduleData.setTokenTable(tokenTable);
+        profiler.pop();
+        Logger.INSTANCE.debugln(STR."Tokenized \{name} into \{tokenTable.size()} tokens (\{tokenTable.getMemoryUsage()} bytes) in \{time}us");
+        if (fastLexer != null) {
+            Logger.INSTANCE.debugln(STR."Fast lexer emitted \{fastLexer.getNumFastTokens()} tokens from \{lexerShapes.size()} shapes, delegated \{fastLexer.getNumDelegatedTokens()}");
+            if (verifyFastLexer) {
+                verifyTokens(name, in, tokenTable, time);
+            }
+        }
+        if (tokenView) {
+            System.out.printf("\n%s\n",
+                TokenUtils.renderTokenTree(context.getCurrentModuleName(),
+                    extendedTokenView,
+                    lexer,
+                    tokenTable.getTokens()));
+        }
+        return true;
+    }
+
+    private static void verifyTokens(final String name, final CharStream in, final TokenTable tokenTable,
+                                     final long fastTime) {
+        in.seek(0);
+        final var startTime = System.nanoTime();
+        final var expectedTable = TokenTable.tokenize(new FerrousLexer(in));
+        final var time = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+        Logger.INSTANCE.debugln(STR."Lexed \{name} in \{fastTime}us with the fast lexer, \{time}us with FerrousLexer");
+        final var size = Math.min(tokenTable.size(), expectedTable.size());
+        for (var i = 0; i < size; i++) {
+            // @formatter:off
+            if (tokenTable.getType(i) != expectedTable.getType(i)
+                || tokenTable.getChannel(i) != expectedTable.getChannel(i)
+                || tokenTable.getStartIndex(i) != expectedTable.getStartIndex(i)
+                || tokenTable.getStopIndex(i) != expectedTable.getStopIndex(i)
+                || tokenTable.getLine(i) != expectedTable.getLine(i)
+                || tokenTable.getColumn(i) != expectedTable.getColumn(i)) {
+                Logger.INSTANCE.warnln(STR."Fast lexer diverges from FerrousLexer in \{name} at token \{i}: \{tokenTable.get(i)} != \{expectedTable.get(i)}");
+                return;
             }
-            // Parse
-            final var parser = new FerrousParser(tokenStream);
-            parser.removeErrorListeners(); // Remove default error listener
-            parser.addErrorListener(new ErrorListener(context));
-            moduleData.setParser(parser);
-            profiler.push("Parse");
-            moduleData.setFileContext(parser.file());
+            // @formatter:on
+        }
+        if (tokenTable.size() != expectedTable.size()) {
+            Logger.INSTANCE.warnln(STR."Fast lexer produced \{tokenTable.size()} tokens for \{name}, FerrousLexer \{expectedTable.size()}");
+        }
+    }
+
+    private void parse(final CompileContext context) {
+        final var moduleData = context.getOrCreateModuleData();
+        final var tokenTable = moduleData.getTokenTable();
+        if (splitLargeFiles && !reportParserWarnings && tokenTable.size() >= ChunkedParser.MIN_FILE_TOKENS) {
+            profiler.push("Parse chunks");
+            final var startTime = System.nanoTime();
+            final var fileContext = ChunkedParser.parse(tokenTable, numThreads, executorService, grammarProfile);
             profiler.pop();
+            final var chunkedTime = System.nanoTime() - startTime;
+            if (fileContext != null) {
+                moduleData.setFileContext(fileContext);
+                parseStatistics.recordChunked(tokenTable.size(), chunkedTime);
+                return;
+            }
+            parseStatistics.recordFailedChunked(chunkedTime);
+        }
+        final var parser = new FerrousParser(tokenTable);
+        parser.removeErrorListeners(); // Remove default error listener
+        moduleData.setParser(parser);
+        final var grammarProfile = this.grammarProfile;
+        if (grammarProfile != null) {
+            parser.setProfile(true);
+        }
+        profiler.push("Parse");
+        final var startTime = System.nanoTime();
+        // Full LL diagnostics are only reported by the LL stage, so warnings skip the SLL stage
+        if (!reportParserWarnings) {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+            try {
+                moduleData.setFileContext(parser.file());
+                parseStatistics.recordSll(tokenTable.size(), System.nanoTime() - startTime);
+                if (grammarProfile != null) {
+                    grammarProfile.add(parser);
+                }
+                profiler.pop();
+                return;
+            }
+            catch (ParseCancellationException error) {
+                // SLL either hit a syntax error or a decision which needs full context, so parse again with LL
+                tokenTable.seek(0);
+                parser.reset();
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+            }
+        }
+        final var llStartTime = System.nanoTime();
+        parser.addErrorListener(new ErrorListener(context));
+        moduleData.setFileContext(parser.file());
+        final var llTime = System.nanoTime() - llStartTime;
+        if (!reportParserWarnings) {
+            parseStatistics.recordFallback(tokenTable.size(), llStartTime - startTime, llTime);
+        }
+        if (grammarProfile != null) {
+            grammarProfile.add(parser); // Includes the decisions of the failed SLL attempt
+        }
+        profiler.pop();
+    }
+
+    private boolean tokenize(final Path file, final CompileContext context) {
+        context.setCurrentSourceFile(file);
+        Logger.INSTANCE.debugln(STR."Input: \{file} (Thread \{Thread.currentThread().threadId()})");
+        if (memoryMappedSources) {
+            try {
+                return tokenize(KitchenSink.getRawFileName(file), MappedCharStream.open(file), context);
+            }
+            catch (IOException error) {
+                context.reportError(CompileErrorCode.E0003);
+                return false;
+            }
+        }
+        try (final var stream = Files.newInputStream(file); final var channel = Channels.newChannel(stream)) {
+            return tokenize(KitchenSink.getRawFileName(file), channel, context);
         }
         catch (IOException error) {
-            context.reportError(error.getMessage(), CompileErrorCode.E0002);
+            context.reportError(CompileErrorCode.E0003);
+            return false;
+        }
+    }
+
+    private void tokenizeAndParse(final Path file, final CompileContext context) {
+        if (tokenize(file, context)) {
+            parse(context);
         }
+        context.setCurrentSourceFile(null);
     }
 
-    private Module compile(final String name, final @Nullable Path sourcePath, final CompileContext context) {
+    private @Nullable String computeCacheKey(final Path file) {
+        if (moduleCache == null) {
+            return null;
+        }
+        try {
+            return moduleCache.computeKey(file, targetMachine, enableOpaquePointers, lazyLowering);
+        }
+        catch (IOException error) {
+            Logger.INSTANCE.warnln(STR."Could not compute cache key for \{file}: \{error}");
+            return null;
+        }
+    }
+
+    private @Nullable Module loadCached(final Path file, final @Nullable String cacheKey,
+                                        final CompileContext context, final LLVMContext llvmContext) {
+        if (moduleCache == null || cacheKey == null) {
+            return null;
+        }
+        final var name = KitchenSink.getRawFileName(file);
+        final var module = moduleCache.load(cacheKey, name, llvmContext.getAddress());
+        if (module != null) {
+            return module;
+        }
+        // The entry may have vanished since the analysis phase, so make sure we have a parse tree
+        if (context.getOrCreateModuleData(name).getFileContext() == null) {
+            tokenizeAndParse(file, context);
+        }
+        return null;
+    }
+
+    private void storeCached(final Path file, final @Nullable String cacheKey, final CompileContext context,
+                             final Module module) {
+        if (moduleCache == null || cacheKey == null || context.hasErrors(file)) {
+            return;
+        }
+        moduleCache.store(cacheKey, module);
+    }
+
+    private Module compileOrLoad(final Path file, final @Nullable String cacheKey, final CompileContext context,
+                                 final LLVMContext llvmContext) {
+        final var cachedModule = loadCached(file, cacheKey, context, llvmContext);
+        if (cachedModule != null) {
+            return cachedModule;
+        }
+        final var module = compile(KitchenSink.getRawFileName(file), file, context, llvmContext);
+        storeCached(file, cacheKey, context, module);
+        return module;
+    }
+
+    private Module compile(final String name, final @Nullable Path sourcePath, final CompileContext context,
+                           final LLVMContext llvmContext) {
         context.setCurrentModuleName(name);
         context.setCurrentSourceFile(sourcePath);
-        final var module = targetMachine.createModule(name);
+        final var module = targetMachine.createModule(name, llvmContext.getAddress());
         for (final var pass : passes) {
-            Logger.INSTANCE.debugln(STR."Invoking pass \{pass.getClass().getName()}");
-            context.setCurrentPass(pass);
-            pass.run(context, module, executorService);
-            context.setCurrentPass(null);
+            runPass(pass, context, module);
         }
         return module;
     }
 
+    private void runPass(final CompilePass pass, final CompileContext context, final Module module) {
+        Logger.INSTANCE.debugln(STR."Invoking pass \{pass.getClass().getName()} on \{module.getName()}");
+        context.setCurrentPass(pass);
+        pass.run(context, module, executorService);
+        context.setCurrentPass(null);
+        if (releaseParseState && pass instanceof EmitPass) {
+            // Nothing reads the parse tree once the module has been emitted
+            context.getOrCreateModuleData().releaseParseState();
+        }
+    }
+
     public CompileResult compile(final Path in, final Path out, final CompileContext context, final LinkModel linkModel,
                                  final LinkTargetType targetType) {
+        final var compileStartTime = System.nanoTime();
         context.setCompiler(this);
+        parseStatistics = new ParseStatistics();
+        loweringStatistics = new LoweringStatistics();
+        monomorphizationCache = new MonomorphizationCache();
+        grammarProfile = profileGrammar ? new GrammarProfile() : null;
         final var outDirectory = out.getParent();
         if (!Files.exists(outDirectory)) {
             try {
@@ -221,101 +482,516 @@ public final class Compiler implements AutoCloseable {
             }
         }
 
-        final var inputFiles = KitchenSink.findFilesWithExtensions(in, IN_EXTENSIONS);
+        // Every compilation materializes its types into its own context, so none of them outlive it
+        final var llvmContext = createLLVMContext();
+        final var previousContext = LLVMContext.getCurrent();
+        LLVMContext.setCurrent(llvmContext);
+        try {
+            return compile(in, out, context, linkModel, targetType, llvmContext, compileStartTime);
+        }
+        finally {
+            LLVMContext.setCurrent(previousContext);
+            llvmContext.dispose();
+            context.setCompiler(null);
+        }
+    }
+
+    private CompileResult compile(final Path in, final Path out, final CompileContext context,
+                                  final LinkModel linkModel, final LinkTargetType targetType,
+                                  final LLVMContext llvmContext, final long compileStartTime) {
+        final var moduleName = KitchenSink.getRawFileName(in);
+        final var projectModule = targetMachine.createModule(moduleName, llvmContext.getAddress());
+        projectModule.setSourceFileName(STR."\{moduleName}.o");
+
+        final var loweringStartTime = System.nanoTime();
+        // @formatter:off
+        final var numFiles = parallelLowering
+            ? compileStreaming(in, projectModule, context)
+            : compileSequential(in, projectModule, context, llvmContext);
+        // @formatter:on
+        final var loweringTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loweringStartTime);
+        Logger.INSTANCE.debugln(STR."Lowered \{numFiles} files in \{loweringTime}ms (parallel: \{parallelLowering})");
+        Logger.INSTANCE.debugln(STR."Type interner holds \{Types.getCacheSize()} types");
+        parseStatistics.print();
+        loweringStatistics.print();
+        monomorphizationCache.print();
+        if (grammarProfile != null) {
+            grammarProfile.print();
+        }
+        if (moduleCache != null) {
+            moduleCache.evict();
+            moduleCache.printStatistics();
+        }
+
+        // Only executables are known to never be referenced by anything but the runtime
+        final var isWholeProgram = wholeProgram && targetType == LinkTargetType.EXECUTABLE;
+        if (isWholeProgram) {
+            internalize(projectModule, context);
+        }
+        optimize(projectModule);
+
+        if (disassemble) {
+            Logger.INSTANCE.infoln(STR."Linked disassembly:\n\n\{projectModule.disassembleBitcode()}");
+            Logger.INSTANCE.infoln(STR."Native disassembly:\n\n\{projectModule.disassembleAssembly(targetMachine)}");
+        }
+
+        final var objectFile = out.getParent().resolve(STR."\{KitchenSink.getRawFileName(out)}.o");
+        final var codegenStartTime = System.nanoTime();
+        final List<Path> objectFiles;
+        if (codegenPartitions > 1) {
+            objectFiles = ModulePartitioner.generateObjects(projectModule,
+                targetMachine,
+                this::createLLVMContext,
+                codegenPartitions,
+                objectFile,
+                executorService);
+        }
+        else {
+            projectModule.generateAssembly(targetMachine, FileType.OBJECT, objectFile);
+            objectFiles = List.of(objectFile);
+        }
+        projectModule.dispose();
+        final var codegenTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - codegenStartTime);
+        Logger.INSTANCE.debugln(STR."Generated \{objectFiles.size()} object files in \{codegenTime}ms");
+
+        // @formatter:off
+        Logger.INSTANCE.infoln(Ansi.ansi()
+            .fg(Color.GREEN)
+            .a(KitchenSink.getProgressIndicator(1, 1))
+            .a(Attribute.RESET)
+            .a(" Linking module ")
+            .fg(Color.BLUE)
+            .a(Attribute.INTENSITY_BOLD)
+            .a(out)
+            .a(Attribute.RESET)
+            .toString());
+        // @formatter:on
+        linker.link(this, context, out, objectFiles, linkModel, targetMachine, targetType);
+        if (isWholeProgram) {
+            logBinarySize(out, compileStartTime);
+        }
+        return context.makeResult();
+    }
+
+    private int compileSequential(final Path in, final Module projectModule, final CompileContext context,
+                                  final LLVMContext llvmContext) {
+        final var inputFiles = KitchenSink.findFilesWithExtensions(in,
+            (directory, error) -> reportDirectoryError(directory, error, context),
+            IN_EXTENSIONS);
         final var numFiles = inputFiles.size();
         final var maxProgress = (numFiles << 1) + 1;
         final var futures = new ArrayDeque<CompletableFuture<Void>>();
+        final var cacheKeys = new String[numFiles];
 
         for (var i = 0; i < numFiles; ++i) {
             final var file = inputFiles.get(i);
-            final var rawFileName = KitchenSink.getRawFileName(file);
-
-            // @formatter:off
-            Logger.INSTANCE.infoln(Ansi.ansi()
-                .fg(Color.GREEN)
-                .a(KitchenSink.getProgressIndicator(maxProgress, i))
-                .a(Attribute.RESET)
-                .a(" Analyzing file ")
-                .fg(Color.BLUE)
-                .a(Attribute.INTENSITY_BOLD)
-                .a(file.toAbsolutePath().toString())
-                .a(Attribute.RESET)
-                .toString());
-            // @formatter:on
-
-            futures.add(CompletableFuture.runAsync(() -> {
-                context.setCurrentSourceFile(file);
-                Logger.INSTANCE.debugln(STR."Input: \{file} (Thread \{Thread.currentThread().threadId()})");
-                try (final var stream = Files.newInputStream(file); final var channel = Channels.newChannel(stream)) {
-                    tokenizeAndParse(rawFileName, channel, context);
-                }
-                catch (IOException error) {
-                    context.reportError(CompileErrorCode.E0003);
-                }
-                context.setCurrentSourceFile(null);
-            }, executorService));
+            logAnalyzingFile(file, maxProgress, i);
+            final var cacheKey = computeCacheKey(file);
+            cacheKeys[i] = cacheKey;
+            if (cacheKey != null && moduleCache.contains(cacheKey)) {
+                Logger.INSTANCE.debugln(STR."Skipping analysis of \{file}, module is cached");
+                continue;
+            }
+            futures.add(CompletableFuture.runAsync(() -> tokenizeAndParse(file, context), executorService));
         }
 
         for (final var future : futures) {
             future.join();
         }
 
-        final var moduleName = KitchenSink.getRawFileName(in);
-        final var projectModule = targetMachine.createModule(moduleName);
-        projectModule.setSourceFileName(STR."\{moduleName}.o");
-
         for (var i = 0; i < numFiles; ++i) {
             final var file = inputFiles.get(i);
             context.setCurrentSourceFile(file);
-            // @formatter:off
-            Logger.INSTANCE.infoln(Ansi.ansi()
-                .fg(Color.GREEN)
-                .a(KitchenSink.getProgressIndicator(maxProgress, numFiles + 1 + i))
-                .a(Attribute.RESET)
-                .a(" Compiling file ")
-                .fg(Color.BLUE)
-                .a(Attribute.INTENSITY_BOLD)
-                .a(file.toAbsolutePath().toString())
-                .a(Attribute.RESET)
-                .toString());
-            // @formatter:on
-            final var rawFileName = KitchenSink.getRawFileName(file);
+            logCompilingFile(file, maxProgress, numFiles + 1 + i);
+            final var module = compileOrLoad(file, cacheKeys[i], context, llvmContext);
+            projectModule.moveIn(module);
+            context.setCurrentSourceFile(null);
+        }
+        return numFiles;
+    }
+
+    private int compileStreaming(final Path in, final Module projectModule, final CompileContext context) {
+        final var units = new ConcurrentLinkedQueue<SourceUnit>();
+        final var loweringFutures = new ConcurrentLinkedQueue<CompletableFuture<PassScheduler.Report>>();
+        final var numStarted = new AtomicInteger();
+        final var numLowered = new AtomicInteger();
+        final var numWorkers = Math.max(1, numThreads >> 1);
+        final var budget = heapBudget > 0 ? new HeapBudget(heapBudget) : null;
+        final var pipeline = new SourcePipeline<SourceUnit>(executorService,
+            numWorkers,
+            numWorkers * PIPELINE_QUEUE_CAPACITY);
+        final var startTime = System.nanoTime();
 
-            projectModule.linkIn(compile(rawFileName, file, context));
+        pipeline.run(in, IN_EXTENSIONS, file -> {
+            logAnalyzingFile(file, Math.max(1, numStarted.incrementAndGet()), numLowered.get());
+            return readSource(file, context, units, budget);
+        }, unit -> {
+            context.setCurrentModuleName(unit.name());
+            context.setCurrentSourceFile(unit.file());
+            parse(context);
             context.setCurrentSourceFile(null);
+            // The passes of every module start as soon as it has been parsed
+            loweringFutures.add(lower(unit, context).whenComplete((report, error) -> {
+                numLowered.incrementAndGet();
+                if (budget != null) {
+                    budget.release();
+                }
+            }));
+        }, (directory, error) -> reportDirectoryError(directory, error, context));
+        if (budget != null) {
+            Logger.INSTANCE.debugln(STR."Heap budget of \{budget.getBudget() >> 20}MB throttled \{budget.getNumThrottled()} modules");
         }
 
-        if (disassemble) {
-            Logger.INSTANCE.infoln(STR."Linked disassembly:\n\n\{projectModule.disassembleBitcode()}");
-            Logger.INSTANCE.infoln(STR."Native disassembly:\n\n\{projectModule.disassembleAssembly(targetMachine)}");
+        final var reports = new ArrayList<PassScheduler.Report>();
+        for (final var future : loweringFutures) {
+            reports.add(future.join());
         }
+        lastScheduleReport = PassScheduler.Report.merge(System.nanoTime() - startTime, reports);
+        lastScheduleReport.print();
 
-        final var objectFile = out.getParent().resolve(STR."\{KitchenSink.getRawFileName(out)}.o");
-        projectModule.generateAssembly(targetMachine, FileType.OBJECT, objectFile);
-        projectModule.dispose();
+        // Files are discovered in no particular order, sort them so the output stays deterministic
+        final var sortedUnits = units.stream().sorted(Comparator.comparing(SourceUnit::file)).toList();
+        for (final var unit : sortedUnits) {
+            if (!unit.isCached()) {
+                storeCached(unit.file(), unit.cacheKey(), context, unit.module());
+            }
+        }
+        final var numFiles = sortedUnits.size();
+        if (numFiles == 0) {
+            return 0;
+        }
+        final var modules = sortedUnits.stream().map(SourceUnit::module).toArray(Module[]::new);
+        final var llvmContexts = sortedUnits.stream().map(SourceUnit::llvmContext).toArray(LLVMContext[]::new);
+        ModuleMerger.merge(projectModule, modules, llvmContexts);
+        return numFiles;
+    }
+
+    private @Nullable SourceUnit readSource(final Path file, final CompileContext context,
+                                            final ConcurrentLinkedQueue<SourceUnit> units,
+                                            final @Nullable HeapBudget budget) {
+        final var name = KitchenSink.getRawFileName(file);
+        final var cacheKey = computeCacheKey(file);
+        // Every file gets its own context, so no LLVM state is shared between workers
+        final var llvmContext = createLLVMContext();
+        if (moduleCache != null && cacheKey != null) {
+            final var cachedModule = moduleCache.load(cacheKey, name, llvmContext.getAddress());
+            if (cachedModule != null) {
+                Logger.INSTANCE.debugln(STR."Skipping analysis of \{file}, module is cached");
+                units.add(new SourceUnit(file, name, cacheKey, llvmContext, cachedModule, true));
+                return null;
+            }
+        }
+        if (budget != null) {
+            budget.acquire(); // Released once the module has been lowered
+        }
+        final var isTokenized = tokenize(file, context);
+        context.setCurrentSourceFile(null);
+        if (!isTokenized) {
+            if (budget != null) {
+                budget.release();
+            }
+            llvmContext.dispose();
+            return null;
+        }
+        final var unit = new SourceUnit(file,
+            name,
+            cacheKey,
+            llvmContext,
+            targetMachine.createModule(name, llvmContext.getAddress()),
+            false);
+        units.add(unit);
+        return unit;
+    }
+
+    private CompletableFuture<PassScheduler.Report> lower(final SourceUnit unit, final CompileContext context) {
+        // Every (module, pass) pair becomes a node, independent nodes run concurrently
+        return getScheduler().runAsync(List.of(unit.name()), executorService, (index, pass) -> {
+            // Restore instead of clearing, since blocked threads may run nodes inline
+            final var previousModuleName = context.getCurrentModuleName();
+            final var previousSourceFile = context.getCurrentSourceFile();
+            final var previousContext = LLVMContext.getCurrent();
+            context.setCurrentModuleName(unit.name());
+            context.setCurrentSourceFile(unit.file());
+            LLVMContext.setCurrent(unit.llvmContext());
+            try {
+                runPass(pass, context, unit.module());
+            }
+            finally {
+                LLVMContext.setCurrent(previousContext);
+                context.setCurrentSourceFile(previousSourceFile);
+                context.setCurrentModuleName(previousModuleName);
+            }
+        });
+    }
+
+    private static void reportDirectoryError(final Path directory, final IOException error,
+                                             final CompileContext context) {
+        context.reportError(KitchenSink.makeCompilerMessage(STR."\{directory}: \{error.getMessage()}"),
+            CompileErrorCode.E0006);
+    }
 
+    private void internalize(final Module module, final CompileContext context) {
+        final var startTime = System.nanoTime();
+        final var internalizable = new HashSet<String>();
+        for (final var moduleData : context.getModuleData()) {
+            for (final var overloadSet : moduleData.getFunctions().values()) {
+                for (final var function : overloadSet.values()) {
+                    if (function.isMonomorphic()) {
+                        addInternalizable(internalizable, function);
+                    }
+                    for (final var monomorphization : function.getMonomorphizations()) {
+                        addInternalizable(internalizable, monomorphization);
+                    }
+                }
+            }
+        }
+        // Modules loaded from the cache have no module data, so their functions keep their linkage
+        final var numFunctions = ModuleInternalizer.internalize(module, internalizable);
+        profiler.push("Whole-program optimization");
+        final var report = ModuleOptimizer.optimize(module, targetMachine, ModuleInternalizer.PIPELINE);
+        profiler.pop();
+        report.print();
+        final var time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Logger.INSTANCE.debugln(STR."Internalized \{numFunctions} functions, \{report.instructionsBefore()} -> \{report.instructionsAfter()} instructions in \{time}ms");
+    }
+
+    private static void addInternalizable(final HashSet<String> internalizable, final Function function) {
+        if (function.isExported()) {
+            return;
+        }
+        final var name = function.getMangledName();
+        if (MAIN_FUNCTION_NAME.equals(name)) {
+            return;
+        }
+        internalizable.add(name);
+    }
+
+    private void logBinarySize(final Path out, final long compileStartTime) {
+        final var time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - compileStartTime);
+        try {
+            Logger.INSTANCE.infoln(STR."Built whole-program executable of \{Files.size(out)} bytes in \{time}ms");
+        }
+        catch (IOException error) {
+            Logger.INSTANCE.warnln(STR."Could not determine size of \{out}: \{error}");
+        }
+    }
+
+    private void optimize(final Module module) {
+        final var level = targetMachine.getLevel();
+        if (optimizationPipeline == null && level == OptimizationLevel.NONE) {
+            return; // Keep unoptimized builds as close to the front-end output as possible
+        }
+        final var pipeline = optimizationPipeline != null ? optimizationPipeline : level.getPipeline();
+        profiler.push("Optimize module");
+        ModuleOptimizer.optimize(module, targetMachine, pipeline).print();
+        profiler.pop();
+    }
+
+    @API(status = Status.INTERNAL)
+    public LLVMContext createLLVMContext() {
+        final var llvmContext = LLVMContext.create();
+        final var address = llvmContext.getAddress();
+        LLVMContextSetOpaquePointers(address, enableOpaquePointers);
+        Manganese.attachDiagnosticHandler(address);
+        return llvmContext;
+    }
+
+    private void logAnalyzingFile(final Path file, final int maxProgress, final int progress) {
         // @formatter:off
         Logger.INSTANCE.infoln(Ansi.ansi()
             .fg(Color.GREEN)
-            .a(KitchenSink.getProgressIndicator(maxProgress, maxProgress))
+            .a(KitchenSink.getProgressIndicator(maxProgress, progress))
             .a(Attribute.RESET)
-            .a(" Linking module ")
+            .a(" Analyzing file ")
             .fg(Color.BLUE)
             .a(Attribute.INTENSITY_BOLD)
-            .a(out)
+            .a(file.toAbsolutePath().toString())
             .a(Attribute.RESET)
             .toString());
         // @formatter:on
-        linker.link(this, context, out, objectFile, linkModel, targetMachine, targetType);
+    }
 
-        context.setCompiler(null);
-        return context.makeResult();
+    private void logCompilingFile(final Path file, final int maxProgress, final int progress) {
+        // @formatter:off
+        Logger.INSTANCE.infoln(Ansi.ansi()
+            .fg(Color.GREEN)
+            .a(KitchenSink.getProgressIndicator(maxProgress, progress))
+            .a(Attribute.RESET)
+            .a(" Compiling file ")
+            .fg(Color.BLUE)
+            .a(Attribute.INTENSITY_BOLD)
+            .a(file.toAbsolutePath().toString())
+            .a(Attribute.RESET)
+            .toString());
+        // @formatter:on
     }
 
     public void setEnableOpaquePointers(final boolean enableOpaquePointers) {
+        this.enableOpaquePointers = enableOpaquePointers;
         LLVMContextSetOpaquePointers(LLVMGetGlobalContext(), enableOpaquePointers);
     }
 
+    public void setModuleCache(final @Nullable ModuleCache moduleCache) {
+        this.moduleCache = moduleCache;
+    }
+
+    public @Nullable ModuleCache getModuleCache() {
+        return moduleCache;
+    }
+
+    public void setParallelLowering(final boolean parallelLowering) {
+        this.parallelLowering = parallelLowering;
+    }
+
+    /**
+     * @param lazyLowering True if function bodies should only be parsed and emitted when they are reachable
+     *                     from the entry point, an exported function or a function referenced by those.
+     *                     Signatures are still declared for every function.
+     */
+    public void setLazyLowering(final boolean lazyLowering) {
+        this.lazyLowering = lazyLowering;
+    }
+
+    public boolean isLazyLowering() {
+        return lazyLowering;
+    }
+
+    /**
+     * @param codegenPartitions The number of partitions to split the linked module into,
+     *                          each of which is compiled into its own object file concurrently.
+     */
+    public void setCodegenPartitions(final int codegenPartitions) {
+        if (codegenPartitions < 1) {
+            throw new IllegalArgumentException("At least one partition is required");
+        }
+        this.codegenPartitions = codegenPartitions;
+    }
+
+    public int getCodegenPartitions() {
+        return codegenPartitions;
+    }
+
+    /**
+     * @param wholeProgram True if executables should be optimized as a whole,
+     *                     which internalizes all functions which are not exported
+     *                     so they can be inlined across files and removed when unused.
+     */
+    public void setWholeProgram(final boolean wholeProgram) {
+        this.wholeProgram = wholeProgram;
+    }
+
+    public boolean isWholeProgram() {
+        return wholeProgram;
+    }
+
+    /**
+     * @param optimizationPipeline A pass pipeline in the textual format of the new pass manager
+     *                             to run instead of the standard pipeline of the optimization level,
+     *                             or null to use the standard pipeline.
+     */
+    public void setOptimizationPipeline(final @Nullable String optimizationPipeline) {
+        this.optimizationPipeline = optimizationPipeline;
+    }
+
+    public @Nullable String getOptimizationPipeline() {
+        return optimizationPipeline;
+    }
+
+    /**
+     * @param memoryMappedSources True if source files should be lexed straight from
+     *                            a memory mapping instead of being decoded into memory first.
+     */
+    public void setMemoryMappedSources(final boolean memoryMappedSources) {
+        this.memoryMappedSources = memoryMappedSources;
+    }
+
+    public boolean isMemoryMappedSources() {
+        return memoryMappedSources;
+    }
+
+    /**
+     * @param releaseParseState True if the lexer, parser and parse tree of every module
+     *                          should be dropped once the module has been emitted.
+     */
+    public void setReleaseParseState(final boolean releaseParseState) {
+        this.releaseParseState = releaseParseState;
+    }
+
+    public boolean isReleaseParseState() {
+        return releaseParseState;
+    }
+
+    /**
+     * @param heapBudget The number of bytes of used heap above which parallel mode
+     *                   stops starting new modules until the ones in flight are lowered,
+     *                   or 0 to start modules regardless of heap usage.
+     */
+    public void setHeapBudget(final long heapBudget) {
+        if (heapBudget < 0) {
+            throw new IllegalArgumentException("Heap budget cannot be negative");
+        }
+        this.heapBudget = heapBudget;
+    }
+
+    public long getHeapBudget() {
+        return heapBudget;
+    }
+
+    /**
+     * @param useFastLexer    True if sources should be lexed by the table-driven {@link FastLexer},
+     *                        which falls back to the generated lexer for anything it cannot handle.
+     * @param verifyFastLexer True if every file should be lexed a second time by the generated lexer
+     *                        and compared against the tokens of the fast lexer.
+     */
+    public void setUseFastLexer(final boolean useFastLexer, final boolean verifyFastLexer) {
+        this.useFastLexer = useFastLexer;
+        this.verifyFastLexer = verifyFastLexer;
+    }
+
+    public boolean isUseFastLexer() {
+        return useFastLexer;
+    }
+
+    /**
+     * @param splitLargeFiles True if files with at least {@link ChunkedParser#MIN_FILE_TOKENS} tokens
+     *                        should be split at top-level declarations and parsed in parallel.
+     */
+    public void setSplitLargeFiles(final boolean splitLargeFiles) {
+        this.splitLargeFiles = splitLargeFiles;
+    }
+
+    public boolean isSplitLargeFiles() {
+        return splitLargeFiles;
+    }
+
+    /**
+     * @param profileGrammar True if files should be parsed with ANTLR's profiling simulator,
+     *                       printing a report of the most expensive grammar decisions after lowering.
+     */
+    public void setProfileGrammar(final boolean profileGrammar) {
+        this.profileGrammar = profileGrammar;
+    }
+
+    public boolean isProfileGrammar() {
+        return profileGrammar;
+    }
+
+    public @Nullable GrammarProfile getGrammarProfile() {
+        return grammarProfile;
+    }
+
+    public ParseStatistics getParseStatistics() {
+        return parseStatistics;
+    }
+
+    public LoweringStatistics getLoweringStatistics() {
+        return loweringStatistics;
+    }
+
+    public MonomorphizationCache getMonomorphizationCache() {
+        return monomorphizationCache;
+    }
+
     public void setTokenView(final boolean tokenView, final boolean extendedTokenView) {
         this.tokenView = tokenView;
         this.extendedTokenView = extendedTokenView;
@@ -341,6 +1017,18 @@ public final class Compiler implements AutoCloseable {
         return profiler;
     }
 
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    @API(status = Status.INTERNAL)
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    private record SourceUnit(Path file, String name, @Nullable String cacheKey, LLVMContext llvmContext,
+                              Module module, boolean isCached) {}
+
     private final class ErrorListener implements ANTLRErrorListener {
         private final CompileContext context;
 
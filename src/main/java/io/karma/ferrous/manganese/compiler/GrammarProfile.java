@@ -0,0 +1,170 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.compiler;
+
+import io.karma.ferrous.manganese.util.Logger;
+import org.antlr.v4.runtime.Parser;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates the decision statistics of ANTLR's profiling ATN simulator
+ * across all parsed files, so slow grammar decisions can be traced back to their rules.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class GrammarProfile {
+    private final ArrayList<DecisionStatistics> decisions = new ArrayList<>();
+    private int numFiles;
+
+    public synchronized void add(final Parser parser) {
+        final var parseInfo = parser.getParseInfo();
+        if (parseInfo == null) {
+            return; // Profiling was not enabled on this parser
+        }
+        final var ruleNames = parser.getRuleNames();
+        final var atn = parser.getATN();
+        for (final var info : parseInfo.getDecisionInfo()) {
+            if (info.invocations == 0) {
+                continue;
+            }
+            while (decisions.size() <= info.decision) {
+                decisions.add(null);
+            }
+            var statistics = decisions.get(info.decision);
+            if (statistics == null) {
+                final var ruleName = ruleNames[atn.getDecisionState(info.decision).ruleIndex];
+                statistics = new DecisionStatistics(info.decision, ruleName);
+                decisions.set(info.decision, statistics);
+            }
+            statistics.invocations += info.invocations;
+            statistics.time += info.timeInPrediction;
+            statistics.sllTotalLook += info.SLL_TotalLook;
+            statistics.sllMaxLook = Math.max(statistics.sllMaxLook, info.SLL_MaxLook);
+            statistics.llTotalLook += info.LL_TotalLook;
+            statistics.llMaxLook = Math.max(statistics.llMaxLook, info.LL_MaxLook);
+            statistics.llFallbacks += info.LL_Fallback;
+            statistics.ambiguities += info.ambiguities.size();
+            statistics.contextSensitivities += info.contextSensitivities.size();
+            statistics.errors += info.errors.size();
+        }
+        numFiles++;
+    }
+
+    /**
+     * @return The statistics of every decision which was invoked at least once,
+     * sorted by the time spent in prediction in descending order.
+     */
+    public synchronized List<DecisionStatistics> getDecisions() {
+        // @formatter:off
+        return decisions.stream()
+            .filter(statistics -> statistics != null)
+            .sorted(Comparator.comparingLong(DecisionStatistics::getTime).reversed())
+            .toList();
+        // @formatter:on
+    }
+
+    public synchronized void print() {
+        final var decisions = getDecisions();
+        final var totalTime = TimeUnit.NANOSECONDS.toMillis(decisions.stream().mapToLong(DecisionStatistics::getTime).sum());
+        Logger.INSTANCE.infoln(STR."Grammar profile of \{numFiles} files, \{totalTime}ms in prediction:");
+        for (final var statistics : decisions) {
+            Logger.INSTANCE.infoln(STR."  \{statistics}");
+        }
+    }
+
+    public static final class DecisionStatistics {
+        private final int decision;
+        private final String ruleName;
+        private long invocations;
+        private long time;
+        private long sllTotalLook;
+        private long sllMaxLook;
+        private long llTotalLook;
+        private long llMaxLook;
+        private long llFallbacks;
+        private long ambiguities;
+        private long contextSensitivities;
+        private long errors;
+
+        private DecisionStatistics(final int decision, final String ruleName) {
+            this.decision = decision;
+            this.ruleName = ruleName;
+        }
+
+        public int getDecision() {
+            return decision;
+        }
+
+        public String getRuleName() {
+            return ruleName;
+        }
+
+        public long getInvocations() {
+            return invocations;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public long getSllTotalLook() {
+            return sllTotalLook;
+        }
+
+        public long getSllMaxLook() {
+            return sllMaxLook;
+        }
+
+        public long getLlTotalLook() {
+            return llTotalLook;
+        }
+
+        public long getLlMaxLook() {
+            return llMaxLook;
+        }
+
+        public long getLlFallbacks() {
+            return llFallbacks;
+        }
+
+        public long getAmbiguities() {
+            return ambiguities;
+        }
+
+        public long getContextSensitivities() {
+            return contextSensitivities;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            final var time = TimeUnit.NANOSECONDS.toMicros(this.time);
+            final var averageLook = String.format("%.2f", (double) (sllTotalLook + llTotalLook) / invocations);
+            return STR."\{ruleName} (decision \{decision}): \{time}us, \{invocations} invocations, lookahead avg \{averageLook} max SLL \{sllMaxLook} LL \{llMaxLook}, \{llFallbacks} LL fallbacks, \{ambiguities} ambiguities, \{contextSensitivities} context sensitivities, \{errors} errors";
+        }
+    }
+}
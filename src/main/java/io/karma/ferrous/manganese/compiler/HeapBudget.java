@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.compiler;
+
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Limits how many modules may be in flight at once while the used heap
+ * exceeds a given budget. A single module is always admitted,
+ * so compilation keeps progressing even if the budget is too small.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class HeapBudget {
+    private static final long POLL_INTERVAL = 50; // Memory is freed by the GC, not by us, so waiters have to poll
+    private final Object lock = new Object();
+    private final long budget;
+    private int numInFlight;
+    private int numThrottled;
+
+    /**
+     * @param budget The number of bytes of used heap above which no more modules are admitted.
+     */
+    public HeapBudget(final long budget) {
+        this.budget = budget;
+    }
+
+    private static long getUsedHeap() {
+        final var runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private boolean tryAcquire() {
+        synchronized (lock) {
+            if (numInFlight > 0 && getUsedHeap() > budget) {
+                return false;
+            }
+            numInFlight++;
+            return true;
+        }
+    }
+
+    public void acquire() {
+        if (tryAcquire()) {
+            return;
+        }
+        synchronized (lock) {
+            numThrottled++;
+        }
+        try {
+            ForkJoinPool.managedBlock(new Blocker());
+        }
+        catch (InterruptedException interrupt) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(interrupt);
+        }
+    }
+
+    public void release() {
+        synchronized (lock) {
+            numInFlight--;
+            lock.notifyAll();
+        }
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public int getNumThrottled() {
+        synchronized (lock) {
+            return numThrottled;
+        }
+    }
+
+    private final class Blocker implements ForkJoinPool.ManagedBlocker {
+        private boolean isAcquired;
+
+        @Override
+        public boolean block() throws InterruptedException {
+            synchronized (lock) {
+                while (!isReleasable()) {
+                    lock.wait(POLL_INTERVAL);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (!isAcquired) {
+                isAcquired = tryAcquire();
+            }
+            return isAcquired;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.karma.ferrous.manganese.compiler;
+
+import io.karma.ferrous.manganese.util.Logger;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts how many function bodies were lowered and emitted in lazy mode,
+ * and how many were skipped since they are unreachable from any root.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class LoweringStatistics {
+    private final AtomicInteger numDefinedBodies = new AtomicInteger();
+    private final AtomicInteger numSkippedBodies = new AtomicInteger();
+    private final AtomicInteger numSkippedFunctions = new AtomicInteger();
+
+    public void recordBodies(final int numDefined, final int numSkipped) {
+        numDefinedBodies.addAndGet(numDefined);
+        numSkippedBodies.addAndGet(numSkipped);
+    }
+
+    public void recordSkippedFunctions(final int numSkipped) {
+        numSkippedFunctions.addAndGet(numSkipped);
+    }
+
+    public int getNumDefinedBodies() {
+        return numDefinedBodies.get();
+    }
+
+    public int getNumSkippedBodies() {
+        return numSkippedBodies.get();
+    }
+
+    public int getNumSkippedFunctions() {
+        return numSkippedFunctions.get();
+    }
+
+    public void print() {
+        final var numBodies = numDefinedBodies.get() + numSkippedBodies.get();
+        if (numBodies == 0) {
+            return;
+        }
+        Logger.INSTANCE.infoln(STR."Lowered \{numDefinedBodies.get()} of \{numBodies} function bodies, skipped \{numSkippedBodies.get()} unreachable bodies");
+        Logger.INSTANCE.infoln(STR."Skipped emitting \{numSkippedFunctions.get()} unreachable functions");
+    }
+}
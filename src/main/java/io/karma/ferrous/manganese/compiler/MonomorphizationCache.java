@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.karma.ferrous.manganese.compiler;
+
+import io.karma.ferrous.manganese.ocm.function.Function;
+import io.karma.ferrous.manganese.ocm.function.MonomorphizedFunction;
+import io.karma.ferrous.manganese.ocm.type.Type;
+import io.karma.ferrous.manganese.util.Logger;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the instantiations of generic functions made during a compilation,
+ * so every combination of generic function and type arguments is only lowered once.
+ * Instantiations are keyed by the generic function object they were made from, which belongs
+ * to the module declaring it, so entries are per module and never shared between modules.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class MonomorphizationCache {
+    private final ConcurrentHashMap<Key, MonomorphizedFunction> instantiations = new ConcurrentHashMap<>();
+    private final AtomicInteger numHits = new AtomicInteger();
+
+    public MonomorphizedFunction instantiate(final Function function, final List<Type> genericTypes) {
+        // Generic functions can't be mangled since their parameter types are incomplete
+        final var key = new Key(function, genericTypes);
+        final var existing = instantiations.get(key);
+        if (existing != null) {
+            numHits.incrementAndGet();
+            return existing;
+        }
+        final var isCreated = new boolean[1];
+        final var result = instantiations.computeIfAbsent(key, k -> {
+            isCreated[0] = true;
+            return MonomorphizedFunction.create(function, genericTypes);
+        });
+        if (!isCreated[0]) {
+            numHits.incrementAndGet(); // Another thread instantiated it in the meantime
+        }
+        return result;
+    }
+
+    public Collection<MonomorphizedFunction> getInstantiations() {
+        return instantiations.values();
+    }
+
+    public int getNumInstantiations() {
+        return instantiations.size();
+    }
+
+    public int getNumHits() {
+        return numHits.get();
+    }
+
+    public void print() {
+        final var numInstantiations = instantiations.size();
+        if (numInstantiations == 0) {
+            return;
+        }
+        Logger.INSTANCE.debugln(STR."Instantiated \{numInstantiations} generic functions, \{numHits.get()} requests were served from the cache");
+    }
+
+    private record Key(Function function, List<Type> genericTypes) {
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(function) + genericTypes.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            // Equal declarations in different modules are still different functions
+            return obj instanceof Key key && function == key.function && genericTypes.equals(key.genericTypes);
+        }
+    }
+}
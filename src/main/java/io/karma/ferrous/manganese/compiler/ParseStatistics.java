@@ -0,0 +1,108 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.compiler;
+
+import io.karma.ferrous.manganese.util.Logger;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how many files were parsed in parallel chunks, by the fast SLL stage
+ * and how many had to fall back to full LL prediction, along with the throughput of each.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class ParseStatistics {
+    private final AtomicInteger numChunkedFiles = new AtomicInteger();
+    private final AtomicLong numChunkedTokens = new AtomicLong();
+    private final AtomicLong chunkedTime = new AtomicLong();
+    private final AtomicLong wastedChunkedTime = new AtomicLong();
+    private final AtomicInteger numSllFiles = new AtomicInteger();
+    private final AtomicLong numSllTokens = new AtomicLong();
+    private final AtomicLong sllTime = new AtomicLong();
+    private final AtomicInteger numFallbackFiles = new AtomicInteger();
+    private final AtomicLong numFallbackTokens = new AtomicLong();
+    private final AtomicLong fallbackTime = new AtomicLong();
+    private final AtomicLong wastedSllTime = new AtomicLong();
+
+    private static String getThroughput(final long numTokens, final long time) {
+        if (time == 0) {
+            return "n/a";
+        }
+        return STR."\{numTokens * TimeUnit.MILLISECONDS.toNanos(1) / time} tokens/ms";
+    }
+
+    public void recordChunked(final int numTokens, final long time) {
+        numChunkedFiles.incrementAndGet();
+        numChunkedTokens.addAndGet(numTokens);
+        chunkedTime.addAndGet(time);
+    }
+
+    /**
+     * Records the time spent on a chunked parse which was rejected,
+     * the file itself is recorded once the sequential parse finishes.
+     */
+    public void recordFailedChunked(final long time) {
+        wastedChunkedTime.addAndGet(time);
+    }
+
+    public void recordSll(final int numTokens, final long time) {
+        numSllFiles.incrementAndGet();
+        numSllTokens.addAndGet(numTokens);
+        sllTime.addAndGet(time);
+    }
+
+    public void recordFallback(final int numTokens, final long sllTime, final long llTime) {
+        numFallbackFiles.incrementAndGet();
+        numFallbackTokens.addAndGet(numTokens);
+        wastedSllTime.addAndGet(sllTime);
+        fallbackTime.addAndGet(llTime);
+    }
+
+    public int getNumChunkedFiles() {
+        return numChunkedFiles.get();
+    }
+
+    public int getNumSllFiles() {
+        return numSllFiles.get();
+    }
+
+    public int getNumFallbackFiles() {
+        return numFallbackFiles.get();
+    }
+
+    public void print() {
+        final var numFiles = numChunkedFiles.get() + numSllFiles.get() + numFallbackFiles.get();
+        if (numFiles == 0) {
+            return;
+        }
+        final var chunkedTimeMs = TimeUnit.NANOSECONDS.toMillis(chunkedTime.get());
+        final var wastedChunkedTimeMs = TimeUnit.NANOSECONDS.toMillis(wastedChunkedTime.get());
+        final var sllTimeMs = TimeUnit.NANOSECONDS.toMillis(sllTime.get());
+        final var fallbackTimeMs = TimeUnit.NANOSECONDS.toMillis(fallbackTime.get());
+        final var wastedSllTimeMs = TimeUnit.NANOSECONDS.toMillis(wastedSllTime.get());
+        Logger.INSTANCE.debugln(STR."Parsed \{numFiles} files, \{numFallbackFiles.get()} needed the LL fallback");
+        Logger.INSTANCE.debugln(STR."  Chunked: \{numChunkedFiles.get()} files in \{chunkedTimeMs}ms (\{getThroughput(numChunkedTokens.get(), chunkedTime.get())}), \{wastedChunkedTimeMs}ms lost to rejected chunked attempts");
+        Logger.INSTANCE.debugln(STR."  SLL: \{numSllFiles.get()} files in \{sllTimeMs}ms (\{getThroughput(numSllTokens.get(), sllTime.get())})");
+        Logger.INSTANCE.debugln(STR."  LL: \{numFallbackFiles.get()} files in \{fallbackTimeMs}ms (\{getThroughput(numFallbackTokens.get(), fallbackTime.get())}), \{wastedSllTimeMs}ms lost to failed SLL attempts");
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.compiler;
+
+import io.karma.ferrous.manganese.compiler.pass.CompilePass;
+import io.karma.ferrous.manganese.util.Logger;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Schedules (module, pass) nodes onto an executor based on the artifacts
+ * every pass reads and produces. A pass depends on every earlier pass which
+ * produces something it reads, reads something it produces or produces
+ * the same artifacts, as well as on explicitly requested predecessors.
+ * Independent nodes, including all nodes of different modules, run concurrently.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class PassScheduler {
+    private final List<CompilePass> passes;
+    private final int[][] dependencies;
+    private final int[][] dependents;
+
+    public PassScheduler(final List<CompilePass> passes,
+                         final Map<CompilePass, ? extends Collection<CompilePass>> explicitDependencies) {
+        this.passes = new ArrayList<>(passes);
+        final var numPasses = this.passes.size();
+        dependencies = new int[numPasses][];
+        final var dependentLists = new ArrayList<ArrayList<Integer>>(numPasses);
+        for (var i = 0; i < numPasses; ++i) {
+            dependentLists.add(new ArrayList<>());
+        }
+        for (var i = 0; i < numPasses; ++i) {
+            final var pass = this.passes.get(i);
+            final var explicit = explicitDependencies.get(pass);
+            final var passDependencies = new ArrayList<Integer>();
+            for (var j = 0; j < numPasses; ++j) {
+                final var other = this.passes.get(j);
+                final var isOrdered = j < i && conflicts(other, pass);
+                final var isExplicit = explicit != null && explicit.contains(other);
+                if (i == j || !(isOrdered || isExplicit)) {
+                    continue;
+                }
+                passDependencies.add(j);
+                dependentLists.get(j).add(i);
+            }
+            dependencies[i] = passDependencies.stream().mapToInt(Integer::intValue).toArray();
+        }
+        dependents = new int[numPasses][];
+        for (var i = 0; i < numPasses; ++i) {
+            dependents[i] = dependentLists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        checkForCycles();
+    }
+
+    private static boolean conflicts(final CompilePass before, final CompilePass after) {
+        final var beforeProduces = before.getProduces();
+        final var afterProduces = after.getProduces();
+        // @formatter:off
+        return intersects(beforeProduces, after.getReads())
+            || intersects(before.getReads(), afterProduces)
+            || intersects(beforeProduces, afterProduces);
+        // @formatter:on
+    }
+
+    private static <T> boolean intersects(final Set<T> a, final Set<T> b) {
+        for (final var element : a) {
+            if (b.contains(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkForCycles() {
+        final var numPasses = passes.size();
+        final var pending = new int[numPasses];
+        final var queue = new ArrayDeque<Integer>();
+        for (var i = 0; i < numPasses; ++i) {
+            pending[i] = dependencies[i].length;
+            if (pending[i] == 0) {
+                queue.add(i);
+            }
+        }
+        var numVisited = 0;
+        while (!queue.isEmpty()) {
+            final int index = queue.poll();
+            ++numVisited;
+            for (final var dependent : dependents[index]) {
+                if (--pending[dependent] == 0) {
+                    queue.add(dependent);
+                }
+            }
+        }
+        if (numVisited != numPasses) {
+            throw new IllegalStateException("Compile pass dependencies contain a cycle");
+        }
+    }
+
+    public Report run(final List<String> moduleNames, final ExecutorService executor, final NodeRunner runner) {
+        return runAsync(moduleNames, executor, runner).join();
+    }
+
+    /**
+     * Like {@link #run(List, ExecutorService, NodeRunner)}, but doesn't block the calling thread,
+     * which allows scheduling the passes of every module as soon as it becomes available.
+     */
+    public CompletableFuture<Report> runAsync(final List<String> moduleNames, final ExecutorService executor,
+                                              final NodeRunner runner) {
+        final var execution = new Execution(moduleNames.size(), executor, runner);
+        final var startTime = System.nanoTime();
+        return execution.start().thenApply(ignored -> {
+            final var wallTime = System.nanoTime() - startTime;
+            return makeReport(moduleNames, execution.startTimes, execution.endTimes, wallTime);
+        });
+    }
+
+    private Report makeReport(final List<String> moduleNames, final long[] startTimes, final long[] endTimes,
+                              final long wallTime) {
+        final var numPasses = passes.size();
+        final var numNodes = startTimes.length;
+        final var passTimes = new long[numPasses];
+        var totalTime = 0L;
+        var lastNode = -1;
+        for (var node = 0; node < numNodes; ++node) {
+            final var time = endTimes[node] - startTimes[node];
+            passTimes[node % numPasses] += time;
+            totalTime += time;
+            if (lastNode == -1 || endTimes[node] > endTimes[lastNode]) {
+                lastNode = node;
+            }
+        }
+        // Walk back from the node which finished last, always following the predecessor which finished last
+        final var criticalPath = new ArrayList<NodeTiming>();
+        var criticalPathTime = 0L;
+        var node = lastNode;
+        while (node != -1) {
+            final var module = node / numPasses;
+            final var passIndex = node % numPasses;
+            final var time = endTimes[node] - startTimes[node];
+            criticalPath.add(new NodeTiming(moduleNames.get(module), passes.get(passIndex), time));
+            criticalPathTime += time;
+            var predecessor = -1;
+            for (final var dependency : dependencies[passIndex]) {
+                final var dependencyNode = module * numPasses + dependency;
+                if (predecessor == -1 || endTimes[dependencyNode] > endTimes[predecessor]) {
+                    predecessor = dependencyNode;
+                }
+            }
+            node = predecessor;
+        }
+        Collections.reverse(criticalPath);
+        final var passTimings = new LinkedHashMap<CompilePass, Long>();
+        for (var i = 0; i < numPasses; ++i) {
+            passTimings.put(passes.get(i), passTimes[i]);
+        }
+        return new Report(wallTime, totalTime, criticalPathTime, criticalPath, passTimings);
+    }
+
+    public List<CompilePass> getPasses() {
+        return Collections.unmodifiableList(passes);
+    }
+
+    private final class Execution {
+        private final ExecutorService executor;
+        private final NodeRunner runner;
+        private final int numNodes;
+        private final long[] startTimes;
+        private final long[] endTimes;
+        private final AtomicIntegerArray pending;
+        private final AtomicInteger remaining;
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        public Execution(final int numModules, final ExecutorService executor, final NodeRunner runner) {
+            this.executor = executor;
+            this.runner = runner;
+            numNodes = numModules * passes.size();
+            startTimes = new long[numNodes];
+            endTimes = new long[numNodes];
+            pending = new AtomicIntegerArray(numNodes);
+            remaining = new AtomicInteger(numNodes);
+            for (var node = 0; node < numNodes; ++node) {
+                pending.set(node, dependencies[node % passes.size()].length);
+            }
+        }
+
+        public CompletableFuture<Void> start() {
+            if (numNodes == 0) {
+                return CompletableFuture.completedFuture(null);
+            }
+            for (var node = 0; node < numNodes; ++node) {
+                if (pending.get(node) == 0) {
+                    submit(node);
+                }
+            }
+            // Timings are visible to dependents, every write happens before the last decrement of the remaining counter
+            return completion.thenApply(ignored -> {
+                if (error.get() != null) {
+                    throw new CompletionException(error.get());
+                }
+                return null;
+            });
+        }
+
+        private void submit(final int node) {
+            executor.execute(() -> run(node));
+        }
+
+        private void run(final int node) {
+            final var numPasses = passes.size();
+            final var module = node / numPasses;
+            final var passIndex = node % numPasses;
+            startTimes[node] = System.nanoTime();
+            if (error.get() == null) { // Skip all remaining work once a node failed
+                try {
+                    runner.run(module, passes.get(passIndex));
+                }
+                catch (Throwable throwable) {
+                    error.compareAndSet(null, throwable);
+                }
+            }
+            endTimes[node] = System.nanoTime();
+            for (final var dependent : dependents[passIndex]) {
+                final var dependentNode = module * numPasses + dependent;
+                if (pending.decrementAndGet(dependentNode) == 0) {
+                    submit(dependentNode);
+                }
+            }
+            if (remaining.decrementAndGet() == 0) {
+                completion.complete(null);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface NodeRunner {
+        void run(final int module, final CompilePass pass);
+    }
+
+    public record NodeTiming(String moduleName, CompilePass pass, long time) {}
+
+    public record Report(long wallTime, long totalTime, long criticalPathTime, List<NodeTiming> criticalPath,
+                         Map<CompilePass, Long> passTimes) {
+        /**
+         * Combines the reports of multiple independent runs which overlapped in time.
+         *
+         * @param wallTime The time between the start of the first and the end of the last run.
+         * @param reports  The reports to combine.
+         * @return A report with summed up times and the longest critical path of all runs.
+         */
+        public static Report merge(final long wallTime, final List<Report> reports) {
+            var totalTime = 0L;
+            Report longestReport = null;
+            final var passTimes = new LinkedHashMap<CompilePass, Long>();
+            for (final var report : reports) {
+                totalTime += report.totalTime;
+                if (longestReport == null || report.criticalPathTime > longestReport.criticalPathTime) {
+                    longestReport = report;
+                }
+                for (final var entry : report.passTimes.entrySet()) {
+                    passTimes.merge(entry.getKey(), entry.getValue(), Long::sum);
+                }
+            }
+            if (longestReport == null) {
+                return new Report(wallTime, 0L, 0L, Collections.emptyList(), passTimes);
+            }
+            return new Report(wallTime, totalTime, longestReport.criticalPathTime, longestReport.criticalPath, passTimes);
+        }
+
+        public double getParallelism() {
+            return wallTime == 0L ? 1.0 : (double) totalTime / wallTime;
+        }
+
+        public void print() {
+            final var wallTimeMs = TimeUnit.NANOSECONDS.toMillis(wallTime);
+            final var criticalPathTimeMs = TimeUnit.NANOSECONDS.toMillis(criticalPathTime);
+            Logger.INSTANCE.debugln(STR."Scheduled passes in \{wallTimeMs}ms, critical path \{criticalPathTimeMs}ms, parallelism \{String.format("%.2f", getParallelism())}");
+            for (final var timing : criticalPath) {
+                final var passName = timing.pass().getClass().getSimpleName();
+                final var time = TimeUnit.NANOSECONDS.toMicros(timing.time());
+                Logger.INSTANCE.debugln(STR."  \{timing.moduleName()}: \{passName} (\{time}us)");
+            }
+            for (final var entry : passTimes.entrySet()) {
+                final var passName = entry.getKey().getClass().getSimpleName();
+                final var time = TimeUnit.NANOSECONDS.toMillis(entry.getValue());
+                Logger.INSTANCE.debugln(STR."  \{passName} total: \{time}ms");
+            }
+        }
+    }
+}
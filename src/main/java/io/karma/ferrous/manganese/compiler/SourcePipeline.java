@@ -0,0 +1,261 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.compiler;
+
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Streams source files through three concurrent stages: a parallel directory walk,
+ * reader workers and parser workers. Stages are connected by bounded queues,
+ * so a stage blocks once the next one falls behind, which bounds the number
+ * of files held in memory at once no matter how large the source tree is.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class SourcePipeline<T> {
+    private static final Object END = new Object();
+
+    private final ExecutorService executor;
+    private final int numWorkers;
+    private final BlockingQueue<Object> files;
+    private final BlockingQueue<Object> readFiles;
+    private final AtomicInteger pendingDirectories = new AtomicInteger();
+    private final AtomicInteger activeReaders;
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private final CountDownLatch parsersDone;
+
+    /**
+     * @param executor      The executor to run all stages on.
+     * @param numWorkers    The number of reader and parser workers each.
+     * @param queueCapacity The maximum number of files waiting in front of each stage.
+     */
+    public SourcePipeline(final ExecutorService executor, final int numWorkers, final int queueCapacity) {
+        this.executor = executor;
+        this.numWorkers = numWorkers;
+        files = new ArrayBlockingQueue<>(queueCapacity);
+        readFiles = new ArrayBlockingQueue<>(queueCapacity);
+        activeReaders = new AtomicInteger(numWorkers);
+        parsersDone = new CountDownLatch(numWorkers);
+    }
+
+    /**
+     * Runs the pipeline and blocks until every discovered file has been parsed.
+     *
+     * @param root         A source file or a directory to search for source files recursively.
+     * @param extensions   The extensions of the files to pick up from directories.
+     * @param reader       Reads and tokenizes a file, or returns null if it needs no parsing.
+     * @param parser       Parses a file which was read before.
+     * @param errorHandler Receives every directory which could not be listed.
+     */
+    public void run(final Path root, final String[] extensions, final Reader<T> reader, final Parser<T> parser,
+                    final BiConsumer<Path, IOException> errorHandler) {
+        for (var i = 0; i < numWorkers; i++) {
+            executor.execute(() -> read(reader));
+            executor.execute(() -> parse(parser));
+        }
+        if (Files.isDirectory(root)) {
+            pendingDirectories.set(1);
+            executor.execute(() -> walk(root, extensions, errorHandler));
+        }
+        else {
+            put(files, root);
+            finishDiscovery();
+        }
+        try {
+            ForkJoinPool.managedBlock(new ManagedBlocker<>(() -> {
+                parsersDone.await();
+                return null;
+            }));
+        }
+        catch (InterruptedException interrupt) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(interrupt);
+        }
+        if (error.get() != null) {
+            throw new CompletionException(error.get());
+        }
+    }
+
+    private void walk(final Path directory, final String[] extensions,
+                      final BiConsumer<Path, IOException> errorHandler) {
+        try (final var entries = Files.newDirectoryStream(directory)) {
+            for (final var entry : entries) {
+                // Don't follow links, just like Files.walkFileTree
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    pendingDirectories.incrementAndGet();
+                    executor.execute(() -> walk(entry, extensions, errorHandler));
+                    continue;
+                }
+                if (hasExtension(entry, extensions)) {
+                    put(files, entry);
+                }
+            }
+        }
+        catch (IOException ioError) {
+            errorHandler.accept(directory, ioError);
+        }
+        catch (Throwable throwable) {
+            error.compareAndSet(null, throwable);
+        }
+        finally {
+            if (pendingDirectories.decrementAndGet() == 0) {
+                finishDiscovery();
+            }
+        }
+    }
+
+    private static boolean hasExtension(final Path file, final String[] extensions) {
+        final var fileName = file.getFileName().toString();
+        for (final var extension : extensions) {
+            if (fileName.endsWith(STR.".\{extension}")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void finishDiscovery() {
+        for (var i = 0; i < numWorkers; i++) {
+            put(files, END);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void read(final Reader<T> reader) {
+        while (true) {
+            final var file = take(files);
+            if (file == END) {
+                if (activeReaders.decrementAndGet() == 0) {
+                    for (var i = 0; i < numWorkers; i++) {
+                        put(readFiles, END);
+                    }
+                }
+                return;
+            }
+            if (error.get() != null) {
+                continue; // Keep draining so the pipeline shuts down regularly
+            }
+            try {
+                final var result = reader.read((Path) file);
+                if (result != null) {
+                    put(readFiles, result);
+                }
+            }
+            catch (Throwable throwable) {
+                error.compareAndSet(null, throwable);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void parse(final Parser<T> parser) {
+        while (true) {
+            final var file = take(readFiles);
+            if (file == END) {
+                parsersDone.countDown();
+                return;
+            }
+            if (error.get() != null) {
+                continue;
+            }
+            try {
+                parser.parse((T) file);
+            }
+            catch (Throwable throwable) {
+                error.compareAndSet(null, throwable);
+            }
+        }
+    }
+
+    private static void put(final BlockingQueue<Object> queue, final Object value) {
+        try {
+            // Let the pool compensate for blocked workers, so downstream stages can always make progress
+            ForkJoinPool.managedBlock(new ManagedBlocker<>(() -> {
+                queue.put(value);
+                return null;
+            }));
+        }
+        catch (InterruptedException interrupt) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(interrupt);
+        }
+    }
+
+    private static Object take(final BlockingQueue<Object> queue) {
+        try {
+            final var blocker = new ManagedBlocker<>(queue::take);
+            ForkJoinPool.managedBlock(blocker);
+            return blocker.result;
+        }
+        catch (InterruptedException interrupt) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(interrupt);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Reader<T> {
+        @Nullable T read(final Path file) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Parser<T> {
+        void parse(final T file) throws Exception;
+    }
+
+    private static final class ManagedBlocker<R> implements ForkJoinPool.ManagedBlocker {
+        private final Callable<R> action;
+        private R result;
+        private boolean isDone;
+
+        private ManagedBlocker(final Callable<R> action) {
+            this.action = action;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            try {
+                result = action.call();
+            }
+            catch (InterruptedException interrupt) {
+                throw interrupt;
+            }
+            catch (Exception error) {
+                throw new CompletionException(error);
+            }
+            isDone = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return isDone;
+        }
+    }
+}
@@ -19,6 +19,8 @@ import io.karma.ferrous.manganese.compiler.CompileContext;
 import io.karma.ferrous.manganese.module.Module;
 import org.apiguardian.api.API;
 
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -29,4 +31,19 @@ import java.util.concurrent.ExecutorService;
 @API(status = API.Status.INTERNAL)
 public interface CompilePass {
     void run(final CompileContext compileContext, final Module module, final ExecutorService executor);
+
+    /**
+     * @return The artifacts this pass reads. Passes which don't declare
+     *     anything are conservatively ordered against every other pass.
+     */
+    default Set<PassArtifact> getReads() {
+        return EnumSet.allOf(PassArtifact.class);
+    }
+
+    /**
+     * @return The artifacts this pass creates or modifies.
+     */
+    default Set<PassArtifact> getProduces() {
+        return EnumSet.allOf(PassArtifact.class);
+    }
 }
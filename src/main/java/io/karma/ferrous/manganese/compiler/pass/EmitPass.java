@@ -16,10 +16,20 @@
 package io.karma.ferrous.manganese.compiler.pass;
 
 import io.karma.ferrous.manganese.compiler.CompileContext;
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.module.Module;
+import io.karma.ferrous.manganese.module.ModuleMerger;
+import io.karma.ferrous.manganese.ocm.function.Function;
+import io.karma.ferrous.manganese.util.Logger;
 import org.apiguardian.api.API;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Alexander Hinze
@@ -27,22 +37,119 @@ import java.util.concurrent.ExecutorService;
  */
 @API(status = API.Status.INTERNAL)
 public final class EmitPass implements CompilePass {
+    /**
+     * Below this many functions per worker, the cost of an additional
+     * context and the bitcode round trip outweighs the parallel speedup.
+     */
+    public static final int MIN_FUNCTIONS_PER_WORKER = 16;
+
+    @Override
+    public Set<PassArtifact> getReads() {
+        return EnumSet.of(PassArtifact.RESOLVED_TYPES, PassArtifact.PROTOTYPES, PassArtifact.BODIES);
+    }
+
+    @Override
+    public Set<PassArtifact> getProduces() {
+        return EnumSet.of(PassArtifact.IR);
+    }
+
     @Override
     public void run(final CompileContext compileContext, final Module module, final ExecutorService executor) {
         final var compiler = compileContext.getCompiler();
         final var profiler = compiler.getProfiler();
         profiler.push();
+        final var functions = new ArrayList<Function>();
         final var moduleData = compileContext.getOrCreateModuleData();
-        final var overloadSets = moduleData.getFunctions().values();
-        for (final var overloadSet : overloadSets) {
-            final var functions = overloadSet.values();
-            for (final var function : functions) {
+        var numSkipped = 0;
+        for (final var overloadSet : moduleData.getFunctions().values()) {
+            for (final var function : overloadSet.values()) {
+                if (!moduleData.isReachable(function)) {
+                    numSkipped++; // Only happens in lazy mode, references are materialized on demand
+                    continue;
+                }
                 if (!function.isMonomorphic()) {
+                    // Instantiations are defined by the module declaring their generic function
+                    for (final var monomorphization : function.getMonomorphizations()) {
+                        if (monomorphization.getBody() == null) {
+                            continue;
+                        }
+                        functions.add(monomorphization);
+                    }
                     continue;
                 }
-                function.emit(compileContext, module, compiler.getTargetMachine());
+                functions.add(function);
             }
         }
+        if (numSkipped > 0) {
+            compiler.getLoweringStatistics().recordSkippedFunctions(numSkipped);
+        }
+        final var numWorkers = Math.min(compiler.getNumThreads(), functions.size() / MIN_FUNCTIONS_PER_WORKER);
+        if (numWorkers <= 1) {
+            emitFunctions(compileContext, module, functions);
+        }
+        else {
+            emitFunctionsParallel(compileContext, module, functions, numWorkers, executor);
+        }
         profiler.pop();
     }
+
+    private static void emitFunctions(final CompileContext compileContext, final Module module,
+                                      final List<Function> functions) {
+        final var targetMachine = compileContext.getCompiler().getTargetMachine();
+        for (final var function : functions) {
+            function.emit(compileContext, module, targetMachine);
+        }
+    }
+
+    private void emitFunctionsParallel(final CompileContext compileContext, final Module module,
+                                       final List<Function> functions,
+                                       final int numWorkers, final ExecutorService executor) {
+        final var compiler = compileContext.getCompiler();
+        final var moduleName = compileContext.getCurrentModuleName();
+        final var sourceFile = compileContext.getCurrentSourceFile();
+        final var startTime = System.nanoTime();
+
+        // Every worker emits into its own module on its own context, referenced functions become declarations
+        final var numFunctions = functions.size();
+        final var chunkSize = (numFunctions + numWorkers - 1) / numWorkers;
+        final var llvmContexts = new LLVMContext[numWorkers];
+        final var modules = new Module[numWorkers];
+        final var futures = new CompletableFuture<?>[numWorkers];
+        for (var i = 0; i < numWorkers; i++) {
+            final var workerIndex = i;
+            final var llvmContext = compiler.createLLVMContext();
+            llvmContexts[i] = llvmContext;
+            modules[i] = compiler.getTargetMachine()
+                .createModule(STR."\{module.getName()}.\{workerIndex}", llvmContext.getAddress());
+            final var chunk = functions.subList(workerIndex * chunkSize,
+                Math.min(numFunctions, (workerIndex + 1) * chunkSize));
+            futures[i] = CompletableFuture.runAsync(() -> {
+                // Restore instead of clearing, since joining threads may run this task inline
+                final var previousModuleName = compileContext.getCurrentModuleName();
+                final var previousSourceFile = compileContext.getCurrentSourceFile();
+                final var previousPass = compileContext.getCurrentPass();
+                final var previousContext = LLVMContext.getCurrent();
+                compileContext.setCurrentModuleName(moduleName);
+                compileContext.setCurrentSourceFile(sourceFile);
+                compileContext.setCurrentPass(this);
+                LLVMContext.setCurrent(llvmContext);
+                try {
+                    emitFunctions(compileContext, modules[workerIndex], chunk);
+                }
+                finally {
+                    LLVMContext.setCurrent(previousContext);
+                    compileContext.setCurrentPass(previousPass);
+                    compileContext.setCurrentSourceFile(previousSourceFile);
+                    compileContext.setCurrentModuleName(previousModuleName);
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(futures).join();
+        final var emitTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        // Merging preserves the worker order, so the output stays deterministic
+        ModuleMerger.merge(module, modules, llvmContexts);
+        final var totalTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Logger.INSTANCE.debugln(STR."Emitted \{numFunctions} functions of \{moduleName} on \{numWorkers} workers in \{emitTime}ms (\{totalTime}ms including linking)");
+    }
 }
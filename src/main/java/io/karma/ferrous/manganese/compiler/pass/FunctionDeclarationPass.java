@@ -24,6 +24,7 @@ import io.karma.ferrous.manganese.ocm.function.Function;
 import io.karma.ferrous.manganese.ocm.function.FunctionModifier;
 import io.karma.ferrous.manganese.ocm.function.Parameter;
 import io.karma.ferrous.manganese.ocm.generic.GenericParameter;
+import io.karma.ferrous.manganese.ocm.scope.ScopeStack;
 import io.karma.ferrous.manganese.parser.ParseAdapter;
 import io.karma.ferrous.manganese.util.FunctionUtils;
 import io.karma.ferrous.manganese.util.KitchenSink;
@@ -33,7 +34,9 @@ import io.karma.ferrous.vanadium.FerrousParser;
 import io.karma.ferrous.vanadium.FerrousParser.ProtoFunctionContext;
 import org.apiguardian.api.API;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -41,13 +44,29 @@ import java.util.concurrent.ExecutorService;
  * @since 16/11/2023
  */
 @API(status = API.Status.INTERNAL)
-public final class FunctionDeclarationPass implements CompilePass {
+public final class FunctionDeclarationPass implements ParseTreePass<FunctionDeclarationPass.ParseListenerImpl> {
     @Override
-    public void run(final CompileContext compileContext, final Module module, final ExecutorService executor) {
+    public Set<PassArtifact> getReads() {
+        return EnumSet.of(PassArtifact.PARSE_TREE, PassArtifact.RESOLVED_TYPES);
+    }
+
+    @Override
+    public Set<PassArtifact> getProduces() {
+        return EnumSet.of(PassArtifact.PROTOTYPES, PassArtifact.IR);
+    }
+
+    @Override
+    public ParseListenerImpl createParseListener(final CompileContext compileContext) {
+        return new ParseListenerImpl(compileContext);
+    }
+
+    @Override
+    public void run(final CompileContext compileContext, final ParseListenerImpl listener, final Module module,
+                    final ExecutorService executor) {
         final var compiler = compileContext.getCompiler();
         final var profiler = compiler.getProfiler();
         profiler.push();
-        compileContext.walkParseTree(new ParseListenerImpl(compileContext));
+        listener.declareFunctions();
         resolveFunctionTypes(compileContext);
         materializeFunctionTypes(compiler, compileContext, module);
         profiler.pop();
@@ -91,7 +110,9 @@ public final class FunctionDeclarationPass implements CompilePass {
         profiler.pop();
     }
 
-    private static final class ParseListenerImpl extends ParseAdapter {
+    static final class ParseListenerImpl extends ParseAdapter {
+        private final ArrayList<PendingPrototype> prototypes = new ArrayList<>();
+
         public ParseListenerImpl(final CompileContext compileContext) {
             super(compileContext);
         }
@@ -108,7 +129,20 @@ public final class FunctionDeclarationPass implements CompilePass {
 
         @Override
         public void enterProtoFunction(final ProtoFunctionContext context) {
-            if (checkIsFunctionAlreadyDefined(context)) {
+            // Prototypes can only be parsed once all types are resolved, which happens after the traversal
+            prototypes.add(new PendingPrototype(context, new ScopeStack(scopeStack)));
+            super.enterProtoFunction(context); // Make sure we pick up the default scope for function prototypes
+        }
+
+        public void declareFunctions() {
+            for (final var prototype : prototypes) {
+                declareFunction(prototype.context(), prototype.scopeStack());
+            }
+            prototypes.clear();
+        }
+
+        private void declareFunction(final ProtoFunctionContext context, final ScopeStack scopeStack) {
+            if (checkIsFunctionAlreadyDefined(context, scopeStack)) {
                 return;
             }
             final var name = FunctionUtils.parseFunctionName(context.functionIdent());
@@ -126,12 +160,11 @@ public final class FunctionDeclarationPass implements CompilePass {
                 params,
                 genericParams,
                 attributeUsages));
-            compileContext.getOrCreateModuleData().getFunctions().computeIfAbsent(function.getQualifiedName(),
-                n -> new HashMap<>()).put(function.getType(), function);
-            super.enterProtoFunction(context); // Make sure we pick up the default scope for function prototypes
+            compileContext.getOrCreateModuleData().putFunction(function);
         }
 
-        private boolean checkIsFunctionAlreadyDefined(final ProtoFunctionContext context) {
+        private boolean checkIsFunctionAlreadyDefined(final ProtoFunctionContext context,
+                                                      final ScopeStack scopeStack) {
             final var identContext = context.functionIdent();
             final var name = FunctionUtils.parseFunctionName(identContext);
             final var overloadSet = compileContext.getOrCreateModuleData().getFunctions().get(name);
@@ -147,4 +180,6 @@ public final class FunctionDeclarationPass implements CompilePass {
             return false;
         }
     }
+
+    private record PendingPrototype(ProtoFunctionContext context, ScopeStack scopeStack) {}
 }
@@ -16,51 +16,204 @@
 package io.karma.ferrous.manganese.compiler.pass;
 
 import io.karma.ferrous.manganese.compiler.CompileContext;
+import io.karma.ferrous.manganese.compiler.Compiler;
 import io.karma.ferrous.manganese.module.Module;
+import io.karma.ferrous.manganese.module.ModuleData;
+import io.karma.ferrous.manganese.ocm.function.Function;
+import io.karma.ferrous.manganese.ocm.function.MonomorphizedFunction;
+import io.karma.ferrous.manganese.ocm.scope.ScopeStack;
 import io.karma.ferrous.manganese.parser.FunctionParser;
 import io.karma.ferrous.manganese.parser.ParseAdapter;
+import io.karma.ferrous.manganese.util.Logger;
 import io.karma.ferrous.vanadium.FerrousParser.FunctionContext;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.apiguardian.api.API;
 
+import java.util.*;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Alexander Hinze
  * @since 16/11/2023
  */
 @API(status = API.Status.INTERNAL)
-public final class FunctionDefinitionPass implements CompilePass {
+public final class FunctionDefinitionPass implements ParseTreePass<FunctionDefinitionPass.ParseListenerImpl> {
     @Override
-    public void run(final CompileContext compileContext, final Module module, final ExecutorService executor) {
+    public Set<PassArtifact> getReads() {
+        return EnumSet.of(PassArtifact.PARSE_TREE, PassArtifact.RESOLVED_TYPES, PassArtifact.PROTOTYPES);
+    }
+
+    @Override
+    public Set<PassArtifact> getProduces() {
+        return EnumSet.of(PassArtifact.BODIES);
+    }
+
+    @Override
+    public ParseListenerImpl createParseListener(final CompileContext compileContext) {
+        return new ParseListenerImpl(compileContext);
+    }
+
+    @Override
+    public void run(final CompileContext compileContext, final ParseListenerImpl listener, final Module module,
+                    final ExecutorService executor) {
         final var profiler = compileContext.getCompiler().getProfiler();
         profiler.push();
-        compileContext.walkParseTree(new ParseListenerImpl(compileContext));
+        listener.defineFunctions();
         profiler.pop();
     }
 
-    private static final class ParseListenerImpl extends ParseAdapter {
+    static final class ParseListenerImpl extends ParseAdapter {
+        private final ArrayList<PendingDefinition> definitions = new ArrayList<>();
+        private final LinkedHashMap<Function, FunctionContext> genericDefinitions = new LinkedHashMap<>();
+        private final HashSet<MonomorphizedFunction> definedInstantiations = new HashSet<>();
+
         public ParseListenerImpl(final CompileContext compileContext) {
             super(compileContext);
         }
 
         @Override
         public void enterFunction(final FunctionContext context) {
-            final var function = getFunction(context.protoFunction());
-            if (function == null) {
-                super.enterFunction(context);
+            // Bodies can only be parsed once all functions are declared, which happens after the traversal
+            definitions.add(new PendingDefinition(context, new ScopeStack(scopeStack)));
+            super.enterFunction(context);
+        }
+
+        public void defineFunctions() {
+            if (compileContext.getCompiler().isLazyLowering()) {
+                defineReachableFunctions();
+            }
+            else {
+                for (final var definition : definitions) {
+                    final var function = getFunction(definition.context().protoFunction(), definition.scopeStack());
+                    if (function == null) {
+                        continue;
+                    }
+                    defineFunction(function, definition.context());
+                }
+                // Instantiation bodies may instantiate further generic functions
+                var instantiations = defineInstantiations();
+                while (!instantiations.isEmpty()) {
+                    instantiations = defineInstantiations();
+                }
+            }
+            definitions.clear();
+            genericDefinitions.clear();
+            definedInstantiations.clear();
+        }
+
+        private static boolean isRoot(final Function function) {
+            if (!function.isMonomorphic()) {
+                return false; // Generic functions are only ever emitted through their instantiations
+            }
+            return function.isExported() || Compiler.MAIN_FUNCTION_NAME.equals(function.getMangledName());
+        }
+
+        /**
+         * Parses the body of every instantiation created since the last call again,
+         * with the generic parameters of the function bound to its type arguments.
+         *
+         * @return The instantiations which were defined by this call.
+         */
+        private List<MonomorphizedFunction> defineInstantiations() {
+            final var defined = new ArrayList<MonomorphizedFunction>();
+            for (final var entry : genericDefinitions.entrySet()) {
+                for (final var instantiation : List.copyOf(entry.getKey().getMonomorphizations())) {
+                    if (!definedInstantiations.add(instantiation)) {
+                        continue;
+                    }
+                    defineFunction(instantiation, entry.getValue());
+                    defined.add(instantiation);
+                }
+            }
+            return defined;
+        }
+
+        private void defineReachableFunctions() {
+            final var startTime = System.nanoTime();
+            final var moduleData = compileContext.getOrCreateModuleData();
+            final var pending = new LinkedHashMap<Function, FunctionContext>();
+            for (final var definition : definitions) {
+                final var function = getFunction(definition.context().protoFunction(), definition.scopeStack());
+                if (function == null) {
+                    continue;
+                }
+                pending.put(function, definition.context());
+            }
+            final var reachable = new HashSet<Function>();
+            final var worklist = new ArrayDeque<Function>();
+            for (final var function : pending.keySet()) {
+                if (isRoot(function) && reachable.add(function)) {
+                    worklist.add(function);
+                }
+            }
+            for (final var overloadSet : moduleData.getFunctions().values()) {
+                for (final var function : overloadSet.values()) {
+                    if (isRoot(function)) {
+                        reachable.add(function); // Declarations without a body still have to be emitted
+                    }
+                }
+            }
+            var numDefined = 0;
+            List<MonomorphizedFunction> instantiations;
+            do {
+                while (!worklist.isEmpty()) {
+                    final var function = worklist.poll();
+                    final var context = pending.remove(function);
+                    if (context != null) {
+                        defineFunction(function, context);
+                        numDefined++;
+                    }
+                    // References are only known once the body of the function has been parsed
+                    addReferences(moduleData, function, reachable, worklist);
+                }
+                // Instantiations are created while parsing bodies, their own bodies may reference further functions
+                instantiations = defineInstantiations();
+                for (final var instantiation : instantiations) {
+                    addReferences(moduleData, instantiation, reachable, worklist);
+                    numDefined++;
+                }
+            } while (!instantiations.isEmpty());
+            moduleData.setReachableFunctions(reachable);
+            final var numSkipped = pending.size();
+            compileContext.getCompiler().getLoweringStatistics().recordBodies(numDefined, numSkipped);
+            final var time = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+            Logger.INSTANCE.debugln(STR."Defined \{numDefined} reachable functions of \{moduleData.getName()}, skipped \{numSkipped} in \{time}us");
+        }
+
+        private static void addReferences(final ModuleData moduleData, final Function function,
+                                          final HashSet<Function> reachable, final ArrayDeque<Function> worklist) {
+            for (final var reference : moduleData.getFunctionReferences(function)) {
+                if (reachable.add(reference)) {
+                    worklist.add(reference);
+                }
+            }
+        }
+
+        private void defineFunction(final Function function, final FunctionContext context) {
+            if (!function.isMonomorphic()) {
+                // Generic bodies are only parsed per instantiation, once their generic parameters are bound
+                genericDefinitions.put(function, context);
                 return;
             }
             final var bodyContext = context.functionBody();
             if (bodyContext == null) {
-                super.enterFunction(context);
                 return; // TODO: handle arrow functions
             }
-
-            super.enterFunction(context);
-            ParseTreeWalker.DEFAULT.walk(new FunctionParser(compileContext, function), bodyContext);
-            popScope();
-            pushScope(function.getBody());
+            if (!(function instanceof MonomorphizedFunction instantiation)) {
+                ParseTreeWalker.DEFAULT.walk(new FunctionParser(compileContext, function), bodyContext);
+                return;
+            }
+            final var previousBindings = compileContext.getGenericBindings();
+            compileContext.setGenericBindings(instantiation.getGenericBindings());
+            try {
+                ParseTreeWalker.DEFAULT.walk(new FunctionParser(compileContext, function), bodyContext);
+            }
+            finally {
+                compileContext.setGenericBindings(previousBindings);
+            }
         }
     }
+
+    private record PendingDefinition(FunctionContext context, ScopeStack scopeStack) {}
 }
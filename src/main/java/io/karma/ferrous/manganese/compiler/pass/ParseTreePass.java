@@ -0,0 +1,46 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.compiler.pass;
+
+import io.karma.ferrous.manganese.compiler.CompileContext;
+import io.karma.ferrous.manganese.module.Module;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.apiguardian.api.API;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A compile pass which observes the parse tree of a module.
+ * The listeners of all parse tree passes are driven by a single, shared traversal
+ * which happens before the first of them runs, so listeners may only rely on the
+ * results of passes which run before the traversal. Anything depending on earlier
+ * passes has to be deferred until the pass itself is run.
+ *
+ * @author Alexander Hinze
+ * @since 28/12/2023
+ */
+@API(status = API.Status.INTERNAL)
+public interface ParseTreePass<L extends ParseTreeListener> extends CompilePass {
+    L createParseListener(final CompileContext compileContext);
+
+    void run(final CompileContext compileContext, final L listener, final Module module,
+             final ExecutorService executor);
+
+    @Override
+    default void run(final CompileContext compileContext, final Module module, final ExecutorService executor) {
+        run(compileContext, compileContext.getParseListener(this), module, executor);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.compiler.pass;
+
+import org.apiguardian.api.API;
+
+/**
+ * The kinds of per-module state which compile passes read and produce.
+ * Used by the pass scheduler to derive the order in which passes have to run.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = API.Status.INTERNAL)
+public enum PassArtifact {
+    // @formatter:off
+    PARSE_TREE,
+    TYPES,
+    RESOLVED_TYPES,
+    PROTOTYPES,
+    BODIES,
+    IR
+    // @formatter:on
+}
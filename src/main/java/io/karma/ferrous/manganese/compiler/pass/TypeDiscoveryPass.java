@@ -36,7 +36,9 @@ import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.apiguardian.api.API;
 
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -44,17 +46,30 @@ import java.util.concurrent.ExecutorService;
  * @since 16/11/2023
  */
 @API(status = API.Status.INTERNAL)
-public final class TypeDiscoveryPass implements CompilePass {
+public final class TypeDiscoveryPass implements ParseTreePass<TypeDiscoveryPass.ParseListenerImpl> {
     @Override
-    public void run(final CompileContext compileContext, final Module module, final ExecutorService executor) {
-        final var profiler = compileContext.getCompiler().getProfiler();
-        profiler.push();
+    public Set<PassArtifact> getReads() {
+        return EnumSet.of(PassArtifact.PARSE_TREE);
+    }
+
+    @Override
+    public Set<PassArtifact> getProduces() {
+        return EnumSet.of(PassArtifact.TYPES);
+    }
+
+    @Override
+    public ParseListenerImpl createParseListener(final CompileContext compileContext) {
         BuiltinAttributes.inject(compileContext); // Inject builtin attributes
-        compileContext.walkParseTree(new ParseListenerImpl(compileContext));
-        profiler.pop();
+        return new ParseListenerImpl(compileContext);
+    }
+
+    @Override
+    public void run(final CompileContext compileContext, final ParseListenerImpl listener, final Module module,
+                    final ExecutorService executor) {
+        /* types are discovered during the shared parse tree traversal */
     }
 
-    private static final class ParseListenerImpl extends ParseAdapter {
+    static final class ParseListenerImpl extends ParseAdapter {
         public ParseListenerImpl(final CompileContext compileContext) {
             super(compileContext);
         }
@@ -72,7 +87,7 @@ public final class TypeDiscoveryPass implements CompilePass {
                 scopeStack::applyEnclosingScopes,
                 TokenSlice.from(compileContext, context),
                 genericParams);
-            compileContext.getOrCreateModuleData().getTypes().put(aliasedType.getQualifiedName(), aliasedType);
+            compileContext.getOrCreateModuleData().putType(aliasedType);
         }
 
         @Override
@@ -154,7 +169,7 @@ public final class TypeDiscoveryPass implements CompilePass {
                 tokenSlice,
                 fieldTypes);
             final var udt = new UserDefinedType(kind, type, fields, attributeUsages, tokenSlice);
-            compileContext.getOrCreateModuleData().getTypes().put(type.getQualifiedName(), udt);
+            compileContext.getOrCreateModuleData().putType(udt);
 
             Logger.INSTANCE.debugln(STR."Captured field layout for type '\{type.getQualifiedName()}'");
             return udt;
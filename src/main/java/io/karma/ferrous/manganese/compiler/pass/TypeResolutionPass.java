@@ -41,6 +41,16 @@ import java.util.stream.Collectors;
  */
 @API(status = API.Status.INTERNAL)
 public final class TypeResolutionPass implements CompilePass {
+    @Override
+    public Set<PassArtifact> getReads() {
+        return EnumSet.of(PassArtifact.TYPES);
+    }
+
+    @Override
+    public Set<PassArtifact> getProduces() {
+        return EnumSet.of(PassArtifact.TYPES, PassArtifact.RESOLVED_TYPES, PassArtifact.IR);
+    }
+
     @Override
     public void run(final CompileContext compileContext, final Module module, final ExecutorService executor) {
         final var profiler = compileContext.getCompiler().getProfiler();
@@ -251,8 +261,7 @@ public final class TypeResolutionPass implements CompilePass {
             sortedMap.put(qualifiedName, namedTypes.get(qualifiedName));
         }
 
-        namedTypes.clear();
-        namedTypes.putAll(sortedMap);
+        compileContext.getOrCreateModuleData().setTypes(sortedMap);
         profiler.pop();
     }
 
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.daemon;
+
+import io.karma.ferrous.manganese.Manganese;
+import io.karma.ferrous.manganese.compiler.CompileStatus;
+import io.karma.ferrous.manganese.compiler.Compiler;
+import io.karma.ferrous.manganese.linker.LinkerType;
+import io.karma.ferrous.manganese.target.*;
+import io.karma.ferrous.manganese.util.Logger;
+import io.karma.ferrous.manganese.util.Logger.LogLevel;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running compile server which keeps the JVM, the initialized LLVM targets,
+ * target machines, compilers and the shared ANTLR DFA cache warm between requests.
+ * Requests are forwarded by the {@link DaemonClient} over a Unix-domain socket
+ * and are served one after another, each with its own compile context.
+ *
+ * @author Alexander Hinze
+ * @since 28/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class Daemon implements AutoCloseable {
+    static final byte FRAME_OUTPUT = 0;
+    static final byte FRAME_EXIT = 1;
+
+    private final Path socketPath;
+    private final RequestHandler handler;
+    private final HashMap<MachineKey, TargetMachine> targetMachines = new HashMap<>();
+    private final HashMap<CompilerKey, Compiler> compilers = new HashMap<>();
+    private final ServerSocketChannel serverChannel;
+    private final LogLevel logLevel;
+    private long numRequests;
+    private long totalRequestTime;
+    private boolean isDisposed;
+
+    public Daemon(final Path socketPath, final LogLevel logLevel, final RequestHandler handler) throws IOException {
+        this.socketPath = socketPath;
+        this.logLevel = logLevel;
+        this.handler = handler;
+        Files.deleteIfExists(socketPath); // Clean up after daemons which didn't shut down properly
+        serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        serverChannel.bind(UnixDomainSocketAddress.of(socketPath));
+        Runtime.getRuntime().addShutdownHook(new Thread(this::dispose));
+    }
+
+    public static Path getDefaultSocketPath() {
+        return Path.of(System.getProperty("java.io.tmpdir"), STR."manganese-\{System.getProperty("user.name")}.sock");
+    }
+
+    public void serve() {
+        Logger.INSTANCE.infoln(STR."Listening for compile requests on \{socketPath}");
+        while (serverChannel.isOpen()) {
+            try (final var channel = serverChannel.accept()) {
+                handle(channel);
+            }
+            catch (IOException error) {
+                if (!serverChannel.isOpen()) {
+                    break; // We are shutting down
+                }
+                Logger.INSTANCE.errorln(STR."Could not serve compile request: \{error}");
+            }
+        }
+    }
+
+    private void handle(final SocketChannel channel) throws IOException {
+        final var input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        final var output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        final var workingDirectory = Path.of(input.readUTF());
+        final var numArgs = input.readInt();
+        final var args = new String[numArgs];
+        for (var i = 0; i < numArgs; ++i) {
+            args[i] = input.readUTF();
+        }
+
+        final var requestId = ++numRequests;
+        Logger.INSTANCE.debugln(STR."Received request #\{requestId} from \{workingDirectory}");
+        final var startTime = System.nanoTime();
+        final var stream = new PrintStream(new FrameOutputStream(output), true, StandardCharsets.UTF_8);
+        var status = CompileStatus.UNKNOWN_ERROR;
+        Logger.INSTANCE.setLogConsumer(stream::print);
+        try {
+            status = handler.handle(this, args, workingDirectory, stream);
+        }
+        catch (Throwable error) {
+            Logger.INSTANCE.errorln(error.toString());
+        }
+        finally {
+            stream.flush();
+            resetLogger();
+        }
+        final var requestTime = System.nanoTime() - startTime;
+        totalRequestTime += requestTime;
+
+        output.writeByte(FRAME_EXIT);
+        output.writeInt(status.getExitCode());
+        output.flush();
+
+        final var time = TimeUnit.NANOSECONDS.toMillis(requestTime);
+        final var averageTime = TimeUnit.NANOSECONDS.toMillis(totalRequestTime / numRequests);
+        Logger.INSTANCE.infoln(STR."Request #\{requestId} finished in \{time}ms with status \{status} (average \{averageTime}ms over \{numRequests} requests)");
+    }
+
+    private void resetLogger() {
+        // Requests may change the log level or silence the logger entirely
+        Logger.INSTANCE.setLogConsumer(System.out::print);
+        Logger.INSTANCE.setLogLevel(logLevel);
+        for (final var level : LogLevel.values()) {
+            Logger.INSTANCE.enableLogLevel(level);
+        }
+    }
+
+    public TargetMachine getOrCreateTargetMachine(final Target target, final String features,
+                                                  final OptimizationLevel level, final Relocation reloc,
+                                                  final CodeModel model, final String cpu) {
+        final var key = new MachineKey(target.getNormalizedTriple(), features, level, reloc, model, cpu);
+        return targetMachines.computeIfAbsent(key, k -> {
+            Logger.INSTANCE.debugln(STR."Creating target machine for \{k.triple()}");
+            return Manganese.createTargetMachine(target, features, level, reloc, model, cpu);
+        });
+    }
+
+    public Compiler getOrCreateCompiler(final TargetMachine machine, final LinkerType linkerType,
+                                        final String linkerOptions, final int numThreads,
+                                        final boolean enableProfiler) {
+        final var key = new CompilerKey(machine, linkerType, linkerOptions, numThreads, enableProfiler);
+        return compilers.computeIfAbsent(key, k -> {
+            final var linker = linkerType.create();
+            linker.addRawOptions(linkerOptions);
+            return Manganese.createCompiler(machine, linker, numThreads, enableProfiler);
+        });
+    }
+
+    public long getNumRequests() {
+        return numRequests;
+    }
+
+    public Path getSocketPath() {
+        return socketPath;
+    }
+
+    public synchronized void dispose() {
+        if (isDisposed) {
+            return;
+        }
+        try {
+            serverChannel.close();
+            Files.deleteIfExists(socketPath);
+        }
+        catch (IOException error) {
+            Logger.INSTANCE.warnln(STR."Could not close daemon socket: \{error}");
+        }
+        for (final var compiler : compilers.values()) {
+            try {
+                compiler.close();
+            }
+            catch (Exception error) {
+                Logger.INSTANCE.warnln(STR."Could not dispose compiler: \{error}");
+            }
+        }
+        compilers.clear();
+        targetMachines.values().forEach(TargetMachine::dispose);
+        targetMachines.clear();
+        isDisposed = true;
+    }
+
+    @Override
+    public void close() {
+        dispose();
+    }
+
+    @FunctionalInterface
+    public interface RequestHandler {
+        CompileStatus handle(final Daemon daemon, final String[] args, final Path workingDirectory,
+                             final PrintStream out) throws Exception;
+    }
+
+    private record MachineKey(String triple, String features, OptimizationLevel level, Relocation reloc,
+                              CodeModel model, String cpu) {}
+
+    private record CompilerKey(TargetMachine machine, LinkerType linkerType, String linkerOptions, int numThreads,
+                               boolean enableProfiler) {}
+
+    private static final class FrameOutputStream extends OutputStream {
+        private final DataOutputStream output;
+
+        public FrameOutputStream(final DataOutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            synchronized (output) {
+                output.writeByte(FRAME_OUTPUT);
+                output.writeInt(len);
+                output.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (output) {
+                output.flush();
+            }
+        }
+    }
+}
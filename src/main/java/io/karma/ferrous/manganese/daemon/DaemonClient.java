@@ -0,0 +1,98 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.daemon;
+
+import io.karma.ferrous.manganese.compiler.CompileStatus;
+import io.karma.ferrous.manganese.util.Logger;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.io.*;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * Thin client which forwards its arguments to a running {@link Daemon}
+ * and replays the output of the compilation without initializing LLVM.
+ *
+ * @author Alexander Hinze
+ * @since 28/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class DaemonClient {
+    public static final String REMOTE_OPTION = "--remote";
+    public static final String SOCKET_OPTION = "--socket";
+
+    // @formatter:off
+    private DaemonClient() {}
+    // @formatter:on
+
+    public static boolean isRemoteInvocation(final String[] args) {
+        for (final var arg : args) {
+            if (arg.equals(REMOTE_OPTION)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static int run(final String[] args) {
+        var socketPath = Daemon.getDefaultSocketPath();
+        final var forwardedArgs = new ArrayList<String>();
+        for (var i = 0; i < args.length; ++i) {
+            final var arg = args[i];
+            if (arg.equals(REMOTE_OPTION)) {
+                continue;
+            }
+            if (arg.equals(SOCKET_OPTION) && i + 1 < args.length) {
+                socketPath = Path.of(args[++i]);
+                continue;
+            }
+            forwardedArgs.add(arg);
+        }
+
+        try (final var channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            final var output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            output.writeUTF(Path.of("").toAbsolutePath().toString());
+            output.writeInt(forwardedArgs.size());
+            for (final var arg : forwardedArgs) {
+                output.writeUTF(arg);
+            }
+            output.flush();
+
+            final var input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            while (true) {
+                switch (input.readByte()) {
+                    case Daemon.FRAME_OUTPUT -> {
+                        System.out.write(input.readNBytes(input.readInt()));
+                        System.out.flush();
+                    }
+                    case Daemon.FRAME_EXIT -> {
+                        return input.readInt();
+                    }
+                    default -> throw new IOException("Malformed response from compile daemon");
+                }
+            }
+        }
+        catch (IOException error) {
+            Logger.INSTANCE.errorln(STR."Could not reach compile daemon at \{socketPath}: \{error.getMessage()}");
+            return CompileStatus.IO_ERROR.getExitCode();
+        }
+    }
+}
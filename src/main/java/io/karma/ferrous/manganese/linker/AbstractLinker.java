@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
@@ -46,7 +47,7 @@ public abstract class AbstractLinker implements Linker {
     }
 
     protected abstract void buildCommand(final ArrayList<String> buffer, final String command, final Path outFile,
-                                         final Path objectFile, final LinkModel linkModel,
+                                         final List<Path> objectFiles, final LinkModel linkModel,
                                          final TargetMachine targetMachine, final CompileContext compileContext,
                                          final LinkTargetType targetType);
 
@@ -54,6 +55,13 @@ public abstract class AbstractLinker implements Linker {
     public void link(final Compiler compiler, final CompileContext compileContext, final Path outFile,
                      final Path objectFile, final LinkModel linkModel, final TargetMachine targetMachine,
                      final LinkTargetType targetType) {
+        link(compiler, compileContext, outFile, List.of(objectFile), linkModel, targetMachine, targetType);
+    }
+
+    @Override
+    public void link(final Compiler compiler, final CompileContext compileContext, final Path outFile,
+                     final List<Path> objectFiles, final LinkModel linkModel, final TargetMachine targetMachine,
+                     final LinkTargetType targetType) {
         if (!supportedArchitectures.contains(compiler.getTargetMachine().getTarget().getArchitecture())) {
             compileContext.reportError(CompileErrorCode.E6004);
             return;
@@ -68,7 +76,7 @@ public abstract class AbstractLinker implements Linker {
             buildCommand(commandBuffer,
                 command,
                 outFile,
-                objectFile,
+                objectFiles,
                 linkModel,
                 targetMachine,
                 compileContext,
@@ -30,6 +30,7 @@ import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
 import java.util.regex.Pattern;
@@ -149,8 +150,9 @@ public final class ELFLinker extends AbstractLinker {
 
     @Override
     protected void buildCommand(final ArrayList<String> buffer, final String command, final Path outFile,
-                                final Path objectFile, final LinkModel linkModel, final TargetMachine targetMachine,
-                                final CompileContext compileContext, final LinkTargetType targetType) {
+                                final List<Path> objectFiles, final LinkModel linkModel,
+                                final TargetMachine targetMachine, final CompileContext compileContext,
+                                final LinkTargetType targetType) {
         final var isDynamic = targetMachine.getRelocation().isDynamic();
         final var usesSystemRuntime = linkModel == LinkModel.FULL;
         if (usesSystemRuntime && !isDynamic) {
@@ -188,7 +190,9 @@ public final class ELFLinker extends AbstractLinker {
         buffer.add(outFile.toAbsolutePath().normalize().toString());
         handlePreObject(compileContext, buffer, linkModel, architecture, usesSystemRuntime);
         handleLibraries(buffer, linkModel, architecture, usesSystemRuntime);
-        buffer.add(objectFile.toAbsolutePath().normalize().toString());
+        for (final var objectFile : objectFiles) {
+            buffer.add(objectFile.toAbsolutePath().normalize().toString());
+        }
         handlePostObject(compileContext, buffer, linkModel, architecture, usesSystemRuntime);
     }
 
@@ -24,6 +24,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.nio.file.Path;
 import java.util.EnumSet;
+import java.util.List;
 
 /**
  * @author Alexander Hinze
@@ -34,6 +35,19 @@ public interface Linker {
     void link(final Compiler compiler, final CompileContext compileContext, final Path outFile, final Path objectFile,
               final LinkModel linkModel, final TargetMachine target, final LinkTargetType targetType);
 
+    /**
+     * Links multiple object files, as produced by partitioned code generation.
+     * Linkers which don't override this can only link a single object file.
+     */
+    default void link(final Compiler compiler, final CompileContext compileContext, final Path outFile,
+                      final List<Path> objectFiles, final LinkModel linkModel, final TargetMachine target,
+                      final LinkTargetType targetType) {
+        if (objectFiles.size() != 1) {
+            throw new UnsupportedOperationException(STR."Linker \{getType()} cannot link \{objectFiles.size()} object files");
+        }
+        link(compiler, compileContext, outFile, objectFiles.getFirst(), linkModel, target, targetType);
+    }
+
     @Nullable Path getDynamicLinkerPath();
 
     void setDynamicLinkerPath(final Path path);
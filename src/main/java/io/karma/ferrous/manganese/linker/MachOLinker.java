@@ -26,6 +26,7 @@ import org.apiguardian.api.API;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 
 /**
  * @author Alexander Hinze
@@ -71,8 +72,9 @@ public final class MachOLinker extends AbstractLinker {
 
     @Override
     protected void buildCommand(final ArrayList<String> buffer, final String command, final Path outFile,
-                                final Path objectFile, final LinkModel linkModel, final TargetMachine targetMachine,
-                                final CompileContext compileContext, final LinkTargetType targetType) {
+                                final List<Path> objectFiles, final LinkModel linkModel,
+                                final TargetMachine targetMachine, final CompileContext compileContext,
+                                final LinkTargetType targetType) {
         final var target = targetMachine.getTarget();
         if (linkModel == LinkModel.FULL && target.getPlatform() != Platform.MACOS) {
             compileContext.reportError("Full link model not supported when cross-compiling", CompileErrorCode.E6005);
@@ -90,7 +92,9 @@ public final class MachOLinker extends AbstractLinker {
         buffer.addAll(options);
         buffer.add("-o");
         buffer.add(outFile.toAbsolutePath().normalize().toString());
-        buffer.add(objectFile.toAbsolutePath().normalize().toString());
+        for (final var objectFile : objectFiles) {
+            buffer.add(objectFile.toAbsolutePath().normalize().toString());
+        }
     }
 
     @Override
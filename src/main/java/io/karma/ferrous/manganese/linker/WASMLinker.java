@@ -23,6 +23,7 @@ import org.apiguardian.api.API;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 
 /**
  * @author Alexander Hinze
@@ -36,13 +37,16 @@ public final class WASMLinker extends AbstractLinker {
 
     @Override
     protected void buildCommand(final ArrayList<String> buffer, final String command, final Path outFile,
-                                final Path objectFile, final LinkModel linkModel, final TargetMachine targetMachine,
-                                final CompileContext compileContext, final LinkTargetType targetType) {
+                                final List<Path> objectFiles, final LinkModel linkModel,
+                                final TargetMachine targetMachine, final CompileContext compileContext,
+                                final LinkTargetType targetType) {
         buffer.add(command);
         buffer.addAll(options);
         buffer.add("-o");
         buffer.add(outFile.toAbsolutePath().normalize().toString());
-        buffer.add(objectFile.toAbsolutePath().normalize().toString());
+        for (final var objectFile : objectFiles) {
+            buffer.add(objectFile.toAbsolutePath().normalize().toString());
+        }
     }
 
     @Override
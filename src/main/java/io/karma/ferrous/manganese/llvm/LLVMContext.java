@@ -0,0 +1,143 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.llvm;
+
+import io.karma.ferrous.manganese.ocm.type.Type;
+import io.karma.ferrous.manganese.util.Logger;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongUnaryOperator;
+
+import static org.lwjgl.llvm.LLVMCore.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * Thin wrapper around an LLVM context which also owns all type
+ * handles materialized within it, since those cannot be shared
+ * between different contexts.
+ *
+ * @author Alexander Hinze
+ * @since 27/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class LLVMContext implements AutoCloseable {
+    private static final ThreadLocal<LLVMContext> CURRENT = new ThreadLocal<>();
+    private static LLVMContext globalContext;
+
+    private final IdentityHashMap<Type, Long> materializedTypes = new IdentityHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long address;
+    private final boolean isGlobal;
+    private boolean isDisposed;
+
+    private LLVMContext(final long address, final boolean isGlobal) {
+        this.address = address;
+        this.isGlobal = isGlobal;
+    }
+
+    public static synchronized LLVMContext getGlobal() {
+        if (globalContext == null) {
+            globalContext = new LLVMContext(LLVMGetGlobalContext(), true);
+        }
+        return globalContext;
+    }
+
+    public static LLVMContext create() {
+        final var address = LLVMContextCreate();
+        if (address == NULL) {
+            throw new RuntimeException("Could not allocate context");
+        }
+        Logger.INSTANCE.debugln(STR."Allocated context at \{String.format("0x%08X", address)}");
+        return new LLVMContext(address, false);
+    }
+
+    /**
+     * @return The context bound to the calling thread, or the global
+     * context if no context was bound explicitly.
+     */
+    public static LLVMContext getCurrent() {
+        final var context = CURRENT.get();
+        if (context == null) {
+            return getGlobal();
+        }
+        return context;
+    }
+
+    public static void setCurrent(final @Nullable LLVMContext context) {
+        CURRENT.set(context);
+    }
+
+    public long materialize(final Type type, final LongUnaryOperator factory) {
+        // The lock is held while materializing so named structs are only created once,
+        // it is reentrant since factories recurse for derived types
+        lock.lock();
+        try {
+            final var result = materializedTypes.get(type);
+            if (result != null) {
+                return result;
+            }
+            final var typeAddress = factory.applyAsLong(address);
+            materializedTypes.put(type, typeAddress);
+            return typeAddress;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaterializedType(final Type type) {
+        lock.lock();
+        try {
+            final var result = materializedTypes.get(type);
+            return result != null ? result : NULL;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public void dispose() {
+        if (isDisposed || isGlobal) {
+            return;
+        }
+        materializedTypes.clear();
+        LLVMContextDispose(address);
+        Logger.INSTANCE.debugln(STR."Disposed context at \{String.format("0x%08X", address)}");
+        isDisposed = true;
+    }
+
+    @Override
+    public void close() {
+        dispose();
+    }
+
+    public boolean isGlobal() {
+        return isGlobal;
+    }
+
+    public long getAddress() {
+        return address;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Context 0x%08X", address);
+    }
+}
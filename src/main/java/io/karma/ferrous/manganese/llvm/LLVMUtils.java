@@ -35,8 +35,7 @@ import static io.karma.ferrous.manganese.llvm.TargetMips.*;
 import static io.karma.ferrous.manganese.llvm.TargetPowerPC.*;
 import static io.karma.ferrous.manganese.llvm.TargetRISCV.*;
 import static io.karma.ferrous.manganese.llvm.TargetWebAssembly.*;
-import static org.lwjgl.llvm.LLVMCore.LLVMGetVersion;
-import static org.lwjgl.llvm.LLVMCore.nLLVMDisposeMessage;
+import static org.lwjgl.llvm.LLVMCore.*;
 import static org.lwjgl.llvm.LLVMTargetX86.*;
 import static org.lwjgl.system.MemoryUtil.NULL;
 
@@ -133,6 +132,16 @@ public final class LLVMUtils {
         LLVMInitializeWebAssemblyDisassembler();
     }
 
+    public static int getInstructionCount(final long function) {
+        var count = 0;
+        for (var block = LLVMGetFirstBasicBlock(function); block != NULL; block = LLVMGetNextBasicBlock(block)) {
+            for (var inst = LLVMGetFirstInstruction(block); inst != NULL; inst = LLVMGetNextInstruction(inst)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     public static @Nullable Path getLLVMPath() {
         if (SystemInfo.isWindows()) {
             return Path.of("C:\\Program Files\\LLVM\\bin");
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.llvm;
+
+import org.lwjgl.llvm.LLVMCore;
+
+import static org.lwjgl.system.APIUtil.apiGetFunctionAddress;
+import static org.lwjgl.system.JNI.*;
+
+/**
+ * Bindings for the new pass manager C API (llvm-c/Transforms/PassBuilder.h),
+ * which is available since LLVM 13.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+public final class PassBuilder {
+    PassBuilder() {
+        throw new UnsupportedOperationException();
+    }
+
+    public static long LLVMRunPasses(final long module, final long passes, final long targetMachine,
+                                     final long options) {
+        long __functionAddress = PassBuilder.Functions.RunPasses;
+        return invokePPPPP(module, passes, targetMachine, options, __functionAddress);
+    }
+
+    public static long LLVMCreatePassBuilderOptions() {
+        long __functionAddress = PassBuilder.Functions.CreatePassBuilderOptions;
+        return invokeP(__functionAddress);
+    }
+
+    public static void LLVMDisposePassBuilderOptions(final long options) {
+        long __functionAddress = PassBuilder.Functions.DisposePassBuilderOptions;
+        invokePV(options, __functionAddress);
+    }
+
+    public static long LLVMGetErrorMessage(final long error) {
+        long __functionAddress = PassBuilder.Functions.GetErrorMessage;
+        return invokePP(error, __functionAddress);
+    }
+
+    public static void LLVMDisposeErrorMessage(final long message) {
+        long __functionAddress = PassBuilder.Functions.DisposeErrorMessage;
+        invokePV(message, __functionAddress);
+    }
+
+    public static final class Functions {
+        // @formatter:off
+        public static final long
+                RunPasses                 = apiGetFunctionAddress(LLVMCore.getLibrary(), "LLVMRunPasses"),
+                CreatePassBuilderOptions  = apiGetFunctionAddress(LLVMCore.getLibrary(), "LLVMCreatePassBuilderOptions"),
+                DisposePassBuilderOptions = apiGetFunctionAddress(LLVMCore.getLibrary(), "LLVMDisposePassBuilderOptions"),
+                GetErrorMessage           = apiGetFunctionAddress(LLVMCore.getLibrary(), "LLVMGetErrorMessage"),
+                DisposeErrorMessage       = apiGetFunctionAddress(LLVMCore.getLibrary(), "LLVMDisposeErrorMessage");
+
+        private Functions() {
+        }
+        // @formatter:on
+    }
+}
@@ -15,7 +15,9 @@
 
 package io.karma.ferrous.manganese.module;
 
+import io.karma.ferrous.manganese.Manganese;
 import io.karma.ferrous.manganese.llvm.LLVMUtils;
+import io.karma.ferrous.manganese.ocm.function.Function;
 import io.karma.ferrous.manganese.target.FileType;
 import io.karma.ferrous.manganese.target.TargetMachine;
 import io.karma.ferrous.manganese.util.Logger;
@@ -31,10 +33,13 @@ import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.lwjgl.llvm.LLVMAnalysis.LLVMReturnStatusAction;
 import static org.lwjgl.llvm.LLVMAnalysis.LLVMVerifyModule;
+import static org.lwjgl.llvm.LLVMBitReader.LLVMParseBitcodeInContext2;
 import static org.lwjgl.llvm.LLVMBitWriter.LLVMWriteBitcodeToMemoryBuffer;
 import static org.lwjgl.llvm.LLVMCore.*;
 import static org.lwjgl.llvm.LLVMIRReader.LLVMParseIRInContext;
@@ -51,6 +56,7 @@ import static org.lwjgl.system.MemoryUtil.NULL;
 public final class Module {
     private final long context;
     private final long address;
+    private final Set<Function> materializedFunctions = ConcurrentHashMap.newKeySet();
     private boolean isDisposed = false;
 
     public Module(final String name, final long context) {
@@ -103,6 +109,56 @@ public final class Module {
         }
     }
 
+    public static Module fromBitcode(final long context, final String name, final Path path) throws RuntimeException {
+        try (final var stack = MemoryStack.stackPush()) {
+            final var buffer = stack.callocPointer(1);
+            final var messageBuffer = stack.callocPointer(1);
+            if (LLVMCreateMemoryBufferWithContentsOfFile(path.toAbsolutePath().normalize().toString(),
+                buffer,
+                messageBuffer)) {
+                LLVMUtils.checkStatus(messageBuffer);
+            }
+            final var memBuffAddr = buffer.get(0);
+            try {
+                final var module = parseBitcode(context, memBuffAddr);
+                module.setName(name);
+                return module;
+            }
+            finally {
+                LLVMDisposeMemoryBuffer(memBuffAddr);
+            }
+        }
+    }
+
+    public static Module fromBitcode(final long context, final String name, final ByteBuffer bitcode) throws RuntimeException {
+        final var memBuffAddr = LLVMCreateMemoryBufferWithMemoryRange(bitcode, name, false);
+        if (memBuffAddr == NULL) {
+            throw new RuntimeException("Could not allocate bitcode buffer");
+        }
+        try {
+            final var module = parseBitcode(context, memBuffAddr);
+            module.setName(name);
+            return module;
+        }
+        finally {
+            LLVMDisposeMemoryBuffer(memBuffAddr);
+        }
+    }
+
+    private static Module parseBitcode(final long context, final long memBuffAddr) throws RuntimeException {
+        try (final var stack = MemoryStack.stackPush()) {
+            final var buffer = stack.callocPointer(1);
+            if (LLVMParseBitcodeInContext2(context, memBuffAddr, buffer)) {
+                throw new RuntimeException(STR."Could not parse bitcode: \{Manganese.getLastLLVMError()}");
+            }
+            final var moduleAddr = buffer.get(0);
+            if (moduleAddr == NULL) {
+                throw new RuntimeException("Could not retrieve module address");
+            }
+            return new Module(context, moduleAddr);
+        }
+    }
+
     public static Module loadEmbedded(final long context, final String name) throws IOException {
         // @formatter:off
         try(final var stream = Module.class.getResourceAsStream(STR."/\{name}.ll");
@@ -129,10 +185,56 @@ public final class Module {
         }
     }
 
+    /**
+     * Moves a copy of this module into the given context by round-tripping it through bitcode,
+     * since modules from different contexts cannot be linked directly.
+     * The calling thread must have exclusive access to both contexts.
+     *
+     * @param context The address of the context to move the module into.
+     * @return A new module living in the given context.
+     */
+    public Module transferTo(final long context) {
+        final var bitcode = LLVMWriteBitcodeToMemoryBuffer(address);
+        if (bitcode == NULL) {
+            throw new RuntimeException(STR."Could not write bitcode for module \{getName()}");
+        }
+        try {
+            return parseBitcode(context, bitcode);
+        }
+        finally {
+            LLVMDisposeMemoryBuffer(bitcode);
+        }
+    }
+
     public void linkIn(final Module module) {
         LLVMLinkModules2(address, LLVMCloneModule(module.address));
     }
 
+    /**
+     * Links the given module into this module without copying it first.
+     * LLVM destroys the source module in the process, so the given
+     * module is disposed afterwards and must not be used anymore.
+     *
+     * @param module The module to consume. Must live in the same context as this module.
+     */
+    public void moveIn(final Module module) {
+        if (module.context != context) {
+            throw new IllegalArgumentException(STR."Module \{module.getName()} lives in a different context");
+        }
+        if (module.isDisposed) {
+            throw new IllegalStateException("Cannot link disposed module");
+        }
+        final var name = module.getName();
+        // Linking destroys the source and replaces declarations in this module, so cached prototypes go stale
+        module.invalidatePrototypes();
+        invalidatePrototypes();
+        final var failed = LLVMLinkModules2(address, module.address);
+        module.isDisposed = true; // The linker owns the module now, no matter if it succeeded
+        if (failed) {
+            throw new RuntimeException(STR."Could not link module \{name} into \{getName()}: \{Manganese.getLastLLVMError()}");
+        }
+    }
+
     public String disassembleBitcode() {
         return LLVMPrintModuleToString(address);
     }
@@ -169,10 +271,37 @@ public final class Module {
         LLVMSetTarget(address, triple);
     }
 
+    public long getInstructionCount() {
+        var count = 0L;
+        for (var function = LLVMGetFirstFunction(address); function != NULL; function = LLVMGetNextFunction(function)) {
+            count += LLVMUtils.getInstructionCount(function);
+        }
+        return count;
+    }
+
+    /**
+     * Records that the given function cached a prototype living in this module.
+     */
+    public void addMaterializedFunction(final Function function) {
+        materializedFunctions.add(function);
+    }
+
+    /**
+     * Makes every function forget the prototype it materialized in this module.
+     * Has to happen while this module is still alive, since its identity changes once it is disposed.
+     */
+    public void invalidatePrototypes() {
+        for (final var function : materializedFunctions) {
+            function.invalidatePrototype(this);
+        }
+        materializedFunctions.clear();
+    }
+
     public void dispose() {
         if (isDisposed) {
             return;
         }
+        invalidatePrototypes();
         Logger.INSTANCE.debugln(STR."Disposing module '\{getName()}' at \{String.format("0x%08X",
             address)} in context \{String.format("0x%08X", context)}");
         LLVMDisposeModule(address);
@@ -229,7 +358,10 @@ public final class Module {
         }
         final var size = (int) LLVMGetBufferSize(buffer);
         final var address = nLLVMGetBufferStart(buffer);
-        final var result = MemoryUtil.memByteBuffer(address, size);
+        // Copy the data out before disposing the buffer, the view would dangle otherwise
+        final var result = ByteBuffer.allocateDirect(size);
+        result.put(MemoryUtil.memByteBuffer(address, size));
+        result.flip();
         LLVMDisposeMemoryBuffer(buffer);
         return result;
     }
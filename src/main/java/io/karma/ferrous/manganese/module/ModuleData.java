@@ -15,25 +15,29 @@
 
 package io.karma.ferrous.manganese.module;
 
+import io.karma.ferrous.manganese.compiler.MonomorphizationCache;
+import io.karma.ferrous.manganese.compiler.pass.CompilePass;
 import io.karma.ferrous.manganese.ocm.field.Field;
+import io.karma.ferrous.manganese.ocm.function.CallSignature;
 import io.karma.ferrous.manganese.ocm.function.Function;
+import io.karma.ferrous.manganese.ocm.function.OverloadSet;
 import io.karma.ferrous.manganese.ocm.statement.LetStatement;
 import io.karma.ferrous.manganese.ocm.type.AliasedType;
 import io.karma.ferrous.manganese.ocm.type.FunctionType;
 import io.karma.ferrous.manganese.ocm.type.Type;
 import io.karma.ferrous.manganese.util.Identifier;
-import io.karma.ferrous.manganese.util.ScopeUtils;
+import io.karma.ferrous.manganese.util.SymbolTable;
+import io.karma.ferrous.manganese.util.TokenTable;
 import io.karma.ferrous.vanadium.FerrousLexer;
 import io.karma.ferrous.vanadium.FerrousParser;
 import io.karma.ferrous.vanadium.FerrousParser.FileContext;
-import org.antlr.v4.runtime.BufferedTokenStream;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
 import org.apiguardian.api.API;
 import org.apiguardian.api.API.Status;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Alexander Hinze
@@ -43,18 +47,31 @@ import java.util.List;
 public final class ModuleData {
     private final String name;
     private final LinkedHashMap<Identifier, Type> types = new LinkedHashMap<>();
+    private final SymbolTable<Type> typeSymbols = new SymbolTable<>();
     private final HashMap<Identifier, HashMap<FunctionType, Function>> functions = new HashMap<>();
+    private final SymbolTable<OverloadSet> functionSymbols = new SymbolTable<>();
+    private final ConcurrentHashMap<CallSite, Function> resolvedCalls = new ConcurrentHashMap<>();
     private final HashMap<Function, LinkedHashMap<Identifier, LetStatement>> locals = new HashMap<>();
+    private final HashMap<Function, SymbolTable<LetStatement>> localSymbols = new HashMap<>();
+    private final HashMap<Function, LinkedHashSet<Function>> functionReferences = new HashMap<>();
     private final LinkedHashMap<Identifier, Field> globalFields = new LinkedHashMap<>();
-    private BufferedTokenStream tokenStream;
+    private final SymbolTable<Field> globalFieldSymbols = new SymbolTable<>();
+    private final IdentityHashMap<CompilePass, ParseTreeListener> parseListeners = new IdentityHashMap<>();
+    private TokenTable tokenTable;
     private FileContext fileContext;
     private FerrousLexer lexer;
     private FerrousParser parser;
+    private @Nullable Set<Function> reachableFunctions;
 
     public ModuleData(final String name) {
         this.name = name;
     }
 
+    @API(status = Status.INTERNAL)
+    public IdentityHashMap<CompilePass, ParseTreeListener> getParseListeners() {
+        return parseListeners;
+    }
+
     public synchronized FerrousLexer getLexer() {
         return lexer;
     }
@@ -82,19 +99,34 @@ public final class ModuleData {
         this.fileContext = fileContext;
     }
 
-    public synchronized BufferedTokenStream getTokenStream() {
-        return tokenStream;
+    public synchronized TokenTable getTokenTable() {
+        return tokenTable;
     }
 
     @API(status = Status.INTERNAL)
-    public synchronized void setTokenStream(final BufferedTokenStream tokenStream) {
-        this.tokenStream = tokenStream;
+    public synchronized void setTokenTable(final TokenTable tokenTable) {
+        this.tokenTable = tokenTable;
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * Drops the lexer, parser, parse tree and parse listeners of this module
+     * once it has been lowered. The token table is kept for late diagnostics.
+     */
+    @API(status = Status.INTERNAL)
+    public synchronized void releaseParseState() {
+        lexer = null;
+        parser = null;
+        fileContext = null;
+        parseListeners.clear();
+        if (tokenTable != null) {
+            tokenTable.releaseTokenSource();
+        }
+    }
+
     // Non-synchronized data
 
     public void addType(final Type type) {
@@ -102,37 +134,111 @@ public final class ModuleData {
         if (types.containsKey(name)) {
             throw new IllegalStateException("Type already exists");
         }
+        putType(type);
+    }
+
+    public void putType(final Type type) {
+        final var name = type.getQualifiedName();
         types.put(name, type);
+        typeSymbols.put(name, type);
+    }
+
+    /**
+     * Replaces all types of this module, keeping the iteration order of the given map.
+     */
+    public void setTypes(final Map<Identifier, Type> types) {
+        this.types.clear();
+        this.types.putAll(types);
+        typeSymbols.clear();
+        for (final var entry : types.entrySet()) {
+            typeSymbols.put(entry.getKey(), entry.getValue());
+        }
     }
 
     public void addFunction(final Function function) {
-        final var name = function.getQualifiedName();
-        final var type = function.getType();
-        final var overloadSet = functions.computeIfAbsent(name, n -> new HashMap<>());
-        if (overloadSet.containsKey(type)) {
+        final var overloadSet = getOverloadSet(function.getQualifiedName());
+        if (overloadSet.contains(function.getType())) {
             throw new IllegalStateException("Function already exists");
         }
-        overloadSet.put(type, function);
+        overloadSet.put(function);
+        resolvedCalls.clear();
     }
 
-    public LinkedHashMap<Identifier, Type> getTypes() {
-        return types;
+    public void putFunction(final Function function) {
+        getOverloadSet(function.getQualifiedName()).put(function);
+        resolvedCalls.clear(); // A new overload may change what previous calls resolve to
     }
 
-    public HashMap<Identifier, HashMap<FunctionType, Function>> getFunctions() {
-        return functions;
+    private OverloadSet getOverloadSet(final Identifier name) {
+        var overloadSet = functionSymbols.get(name);
+        if (overloadSet == null) {
+            overloadSet = new OverloadSet();
+            functionSymbols.put(name, overloadSet);
+            functions.put(name, overloadSet.getFunctions());
+        }
+        return overloadSet;
     }
 
-    public LinkedHashMap<Identifier, Field> getGlobalFields() {
-        return globalFields;
+    public void addGlobalField(final Field field) {
+        final var name = field.getQualifiedName();
+        globalFields.put(name, field);
+        globalFieldSymbols.put(name, field);
     }
 
-    public HashMap<Function, LinkedHashMap<Identifier, LetStatement>> getLocals() {
-        return locals;
+    public void addLocal(final Function function, final LetStatement local) {
+        final var name = local.getQualifiedName();
+        locals.computeIfAbsent(function, fn -> new LinkedHashMap<>()).put(name, local);
+        localSymbols.computeIfAbsent(function, fn -> new SymbolTable<>()).put(name, local);
+    }
+
+    /**
+     * Records that the body of the given function refers to the named function.
+     * Every overload is recorded, since the one being called may only be known once the arguments are.
+     */
+    public void addFunctionReference(final Function function, final Identifier name, final Identifier scopeName) {
+        final var overloadSet = functionSymbols.find(name, scopeName);
+        if (overloadSet == null) {
+            return;
+        }
+        functionReferences.computeIfAbsent(function, fn -> new LinkedHashSet<>()).addAll(overloadSet.getFunctions().values());
+    }
+
+    public Set<Function> getFunctionReferences(final Function function) {
+        final var references = functionReferences.get(function);
+        return references != null ? references : Collections.emptySet();
+    }
+
+    /**
+     * @param reachableFunctions The functions whose bodies were lowered in lazy mode,
+     *                           or null if every function is to be emitted.
+     */
+    @API(status = Status.INTERNAL)
+    public void setReachableFunctions(final @Nullable Set<Function> reachableFunctions) {
+        this.reachableFunctions = reachableFunctions;
+    }
+
+    public boolean isReachable(final Function function) {
+        return reachableFunctions == null || reachableFunctions.contains(function);
+    }
+
+    public Map<Identifier, Type> getTypes() {
+        return Collections.unmodifiableMap(types);
+    }
+
+    public Map<Identifier, HashMap<FunctionType, Function>> getFunctions() {
+        return Collections.unmodifiableMap(functions);
+    }
+
+    public Map<Identifier, Field> getGlobalFields() {
+        return Collections.unmodifiableMap(globalFields);
+    }
+
+    public Map<Function, LinkedHashMap<Identifier, LetStatement>> getLocals() {
+        return Collections.unmodifiableMap(locals);
     }
 
     public @Nullable Type findCompleteType(final Identifier name, final Identifier scopeName) {
-        Type type = ScopeUtils.findInScope(types, name, scopeName);
+        Type type = typeSymbols.find(name, scopeName);
         if (type == null) {
             return null;
         }
@@ -141,7 +247,7 @@ public final class ModuleData {
         }
         if (!type.isComplete()) {
             final var typeName = type.getQualifiedName();
-            type = ScopeUtils.findInScope(types, typeName, scopeName);
+            type = typeSymbols.find(typeName, scopeName);
         }
         return type;
     }
@@ -154,22 +260,47 @@ public final class ModuleData {
     }
 
     public @Nullable Type findType(final Identifier name, final Identifier scopeName) {
-        return ScopeUtils.findInScope(types, name, scopeName);
+        return typeSymbols.find(name, scopeName);
     }
 
     // TODO: implement matching against C-variadic functions
     public @Nullable Function findFunction(final Identifier name, final Identifier scopeName,
                                            final List<Type> paramTypes) {
-        final var overloadSet = ScopeUtils.findInScope(functions, name, scopeName);
+        final var callSite = new CallSite(name, scopeName, CallSignature.of(paramTypes));
+        final var function = resolvedCalls.get(callSite);
+        if (function != null) {
+            return function;
+        }
+        final var overloadSet = functionSymbols.find(name, scopeName);
         if (overloadSet == null) {
             return null;
         }
-        final var types = overloadSet.keySet();
-        for (final var type : types) {
-            if (!type.getParamTypes().equals(paramTypes)) {
+        final var result = overloadSet.find(callSite.signature());
+        if (result != null) {
+            resolvedCalls.put(callSite, result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the generic overload accepting the given type arguments and parameter types,
+     * and instantiates it through the given cache.
+     */
+    public @Nullable Function findFunction(final Identifier name, final Identifier scopeName,
+                                           final List<Type> genericTypes, final List<Type> paramTypes,
+                                           final MonomorphizationCache cache) {
+        final var overloadSet = functionSymbols.find(name, scopeName);
+        if (overloadSet == null) {
+            return null;
+        }
+        for (final var function : overloadSet.getFunctions().values()) {
+            if (function.isMonomorphic() || function.getGenericParameters().size() != genericTypes.size()) {
                 continue;
             }
-            return overloadSet.get(type);
+            if (!function.getParamTypes(genericTypes).equals(paramTypes)) {
+                continue;
+            }
+            return function.monomorphize(cache, genericTypes);
         }
         return null;
     }
@@ -179,18 +310,23 @@ public final class ModuleData {
     }
 
     public boolean functionExists(final Identifier name, final Identifier scopeName) {
-        return ScopeUtils.findInScope(functions, name, scopeName) != null;
+        return functionSymbols.find(name, scopeName) != null;
     }
 
     public @Nullable Field findGlobalFieldInScope(final Identifier name, final Identifier scopeName) {
-        return ScopeUtils.findInScope(globalFields, name, scopeName);
+        return globalFieldSymbols.find(name, scopeName);
     }
 
-    public LinkedHashMap<Identifier, LetStatement> getLocalsFor(final Function function) {
-        return locals.computeIfAbsent(function, fn -> new LinkedHashMap<>());
+    public Map<Identifier, LetStatement> getLocalsFor(final Function function) {
+        final var functionLocals = locals.get(function);
+        return functionLocals != null ? Collections.unmodifiableMap(functionLocals) : Collections.emptyMap();
     }
 
-    public LetStatement findLocalIn(final Function function, final Identifier name, final Identifier scopeName) {
-        return ScopeUtils.findInScope(getLocalsFor(function), name, scopeName);
+    public @Nullable LetStatement findLocalIn(final Function function, final Identifier name,
+                                              final Identifier scopeName) {
+        final var symbols = localSymbols.get(function);
+        return symbols != null ? symbols.find(name, scopeName) : null;
     }
+
+    private record CallSite(Identifier name, Identifier scopeName, CallSignature signature) {}
 }
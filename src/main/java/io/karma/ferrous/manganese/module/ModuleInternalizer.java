@@ -0,0 +1,65 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.module;
+
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.util.Set;
+
+import static org.lwjgl.llvm.LLVMComdat.LLVMSetComdat;
+import static org.lwjgl.llvm.LLVMCore.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * Gives functions of a fully linked program internal linkage,
+ * so the optimizer may inline them across former module boundaries
+ * and drop them entirely once they are unused.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class ModuleInternalizer {
+    /**
+     * A standalone pipeline which drops dead symbols and inlines across
+     * former module boundaries, independent of the optimization level.
+     */
+    public static final String PIPELINE = "globaldce,cgscc(inline),globaldce";
+
+    // @formatter:off
+    private ModuleInternalizer() {}
+    // @formatter:on
+
+    /**
+     * @param module         The fully linked module to internalize.
+     * @param internalizable The names of all functions which are not referenced from outside the program.
+     * @return The number of functions which were internalized.
+     */
+    public static int internalize(final Module module, final Set<String> internalizable) {
+        var count = 0;
+        for (var function = LLVMGetFirstFunction(module.getAddress()); function != NULL; function = LLVMGetNextFunction(function)) {
+            if (LLVMIsDeclaration(function) || !internalizable.contains(LLVMGetValueName2(function))) {
+                continue;
+            }
+            LLVMSetLinkage(function, LLVMInternalLinkage);
+            LLVMSetVisibility(function, LLVMDefaultVisibility); // Local symbols need default visibility
+            LLVMSetComdat(function, NULL);
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.module;
+
+import io.karma.ferrous.manganese.llvm.LLVMContext;
+import io.karma.ferrous.manganese.util.Logger;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves modules living in separate contexts into a single target module.
+ * Every module is copied into the target context exactly once and released
+ * right after, so at most one copy of a single input is alive at any time.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class ModuleMerger {
+    // @formatter:off
+    private ModuleMerger() {}
+    // @formatter:on
+
+    /**
+     * Merges all given modules into the target module, in input order.
+     * Every module must live in its own context which is owned by the caller,
+     * all given modules and contexts are disposed afterwards.
+     *
+     * @param target   The module to merge into.
+     * @param modules  The modules to merge.
+     * @param contexts The context of each module, in the same order.
+     */
+    public static void merge(final Module target, final Module[] modules, final LLVMContext[] contexts) {
+        final var numModules = modules.length;
+        if (numModules != contexts.length) {
+            throw new IllegalArgumentException("Every module requires exactly one context");
+        }
+        final var startTime = System.nanoTime();
+        for (var i = 0; i < numModules; i++) {
+            // Modules in different contexts cannot be linked directly, so the one copy is the bitcode round-trip
+            final var module = modules[i];
+            // Prototypes cached by functions must not outlive the module they live in
+            module.invalidatePrototypes();
+            final var transferredModule = module.transferTo(target.getContext());
+            module.dispose();
+            contexts[i].dispose();
+            modules[i] = null;
+            target.moveIn(transferredModule);
+        }
+        // Linking replaces declarations in the target module, so previously cached prototypes may be stale
+        target.invalidatePrototypes();
+        final var time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Logger.INSTANCE.debugln(STR."Merged \{numModules} modules into \{target.getName()} in \{time}ms");
+    }
+}
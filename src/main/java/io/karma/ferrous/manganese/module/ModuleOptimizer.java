@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.module;
+
+import io.karma.ferrous.manganese.target.TargetMachine;
+import io.karma.ferrous.manganese.util.Logger;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.karma.ferrous.manganese.llvm.PassBuilder.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * Runs IR optimization pipelines of the new pass manager on a module.
+ * Every top-level element of a pipeline is run and timed on its own,
+ * so custom pipelines like {@code mem2reg,instcombine,gvn} yield timings per pass
+ * while standard pipelines like {@code default<O3>} are timed as a whole.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class ModuleOptimizer {
+    // @formatter:off
+    private ModuleOptimizer() {}
+    // @formatter:on
+
+    public static Report optimize(final Module module, final TargetMachine targetMachine, final String pipeline) {
+        final var passes = splitPipeline(pipeline);
+        final var passTimings = new ArrayList<PassTiming>(passes.size());
+        final var instructionsBefore = module.getInstructionCount();
+        final var startTime = System.nanoTime();
+        final var options = LLVMCreatePassBuilderOptions();
+        try {
+            var instructionCount = instructionsBefore;
+            for (final var pass : passes) {
+                final var passStartTime = System.nanoTime();
+                runPasses(module, targetMachine, pass, options);
+                final var time = System.nanoTime() - passStartTime;
+                final var newInstructionCount = module.getInstructionCount();
+                passTimings.add(new PassTiming(pass, time, instructionCount, newInstructionCount));
+                instructionCount = newInstructionCount;
+            }
+        }
+        finally {
+            LLVMDisposePassBuilderOptions(options);
+        }
+        final var time = System.nanoTime() - startTime;
+        return new Report(pipeline, time, instructionsBefore, module.getInstructionCount(), passTimings);
+    }
+
+    private static void runPasses(final Module module, final TargetMachine targetMachine, final String passes,
+                                  final long options) {
+        try (final var stack = MemoryStack.stackPush()) {
+            final var error = LLVMRunPasses(module.getAddress(),
+                MemoryUtil.memAddress(stack.UTF8(passes)),
+                targetMachine.getAddress(),
+                options);
+            if (error == NULL) {
+                return;
+            }
+            final var messageAddress = LLVMGetErrorMessage(error); // Consumes the error
+            final var message = MemoryUtil.memUTF8(messageAddress);
+            LLVMDisposeErrorMessage(messageAddress);
+            throw new IllegalArgumentException(STR."Could not run pass pipeline '\{passes}': \{message}");
+        }
+    }
+
+    /**
+     * Splits a pipeline at its top-level commas, leaving nested pipelines
+     * like {@code function(instcombine,gvn)} or {@code default<O2>} intact.
+     */
+    static List<String> splitPipeline(final String pipeline) {
+        final var passes = new ArrayList<String>();
+        var depth = 0;
+        var start = 0;
+        final var length = pipeline.length();
+        for (var i = 0; i < length; i++) {
+            switch (pipeline.charAt(i)) {
+                case '(', '<' -> depth++;
+                case ')', '>' -> depth--;
+                case ',' -> {
+                    if (depth == 0) {
+                        addPass(passes, pipeline.substring(start, i));
+                        start = i + 1;
+                    }
+                }
+            }
+        }
+        addPass(passes, pipeline.substring(start));
+        return passes;
+    }
+
+    private static void addPass(final List<String> passes, final String pass) {
+        final var trimmedPass = pass.trim();
+        if (trimmedPass.isEmpty()) {
+            return;
+        }
+        passes.add(trimmedPass);
+    }
+
+    public record PassTiming(String pass, long time, long instructionsBefore, long instructionsAfter) {
+    }
+
+    public record Report(String pipeline, long time, long instructionsBefore, long instructionsAfter,
+                         List<PassTiming> passTimings) {
+        public void print() {
+            final var totalTime = TimeUnit.NANOSECONDS.toMillis(time);
+            Logger.INSTANCE.debugln(STR."Optimized module with '\{pipeline}' in \{totalTime}ms, \{instructionsBefore} -> \{instructionsAfter} instructions");
+            for (final var timing : passTimings) {
+                final var passTime = TimeUnit.NANOSECONDS.toMicros(timing.time);
+                Logger.INSTANCE.debugln(STR."  \{timing.pass}: \{passTime}us, \{timing.instructionsBefore} -> \{timing.instructionsAfter} instructions");
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.module;
+
+import io.karma.ferrous.manganese.llvm.LLVMContext;
+import io.karma.ferrous.manganese.llvm.LLVMUtils;
+import io.karma.ferrous.manganese.target.FileType;
+import io.karma.ferrous.manganese.target.TargetMachine;
+import io.karma.ferrous.manganese.util.KitchenSink;
+import io.karma.ferrous.manganese.util.Logger;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.lwjgl.llvm.LLVMComdat.LLVMSetComdat;
+import static org.lwjgl.llvm.LLVMCore.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * Splits a linked module into partitions by function, so that machine
+ * code for every partition can be generated on its own thread.
+ * Every function is defined in exactly one partition and declared
+ * in all others, module-local symbols are promoted to hidden symbols
+ * so they stay visible across the resulting object files.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class ModulePartitioner {
+    // @formatter:off
+    private ModulePartitioner() {}
+    // @formatter:on
+
+    /**
+     * Generates one object file per partition next to the given object file.
+     * The given module is only read from and may be disposed afterwards.
+     *
+     * @param module          The linked module to generate code for.
+     * @param targetMachine   The target machine to copy for every partition.
+     * @param contextFactory  Creates the isolated context of every partition.
+     * @param numPartitions   The maximum number of partitions to create.
+     * @param objectFile      The path of the object file a single partition would be written to.
+     * @param executor        The executor to generate partitions on.
+     * @return The paths of all generated object files, in partition order.
+     */
+    public static List<Path> generateObjects(final Module module, final TargetMachine targetMachine,
+                                             final Supplier<LLVMContext> contextFactory, final int numPartitions,
+                                             final Path objectFile, final ExecutorService executor) {
+        final var startTime = System.nanoTime();
+        nameAnonymousSymbols(module);
+        final var assignments = assignFunctions(module, numPartitions);
+        final var bitcode = module.getBitcode();
+        if (bitcode == null) {
+            throw new RuntimeException(STR."Could not write bitcode for module \{module.getName()}");
+        }
+
+        final var directory = objectFile.toAbsolutePath().getParent();
+        final var baseName = KitchenSink.getRawFileName(objectFile);
+        final var objectFiles = new ArrayList<Path>(numPartitions);
+        final var futures = new ArrayList<CompletableFuture<Void>>(numPartitions);
+        for (var i = 0; i < numPartitions; i++) {
+            final var partition = i;
+            final var partitionFile = directory.resolve(STR."\{baseName}.\{partition}.o");
+            objectFiles.add(partitionFile);
+            futures.add(CompletableFuture.runAsync(() -> {
+                final var llvmContext = contextFactory.get();
+                final var partitionMachine = targetMachine.copy();
+                // Every worker parses its own copy, so no context is shared between threads
+                final var partitionModule = Module.fromBitcode(llvmContext.getAddress(),
+                    STR."\{module.getName()}.\{partition}",
+                    bitcode.duplicate());
+                try {
+                    restrictToPartition(partitionModule, assignments, partition);
+                    partitionModule.generateAssembly(partitionMachine, FileType.OBJECT, partitionFile);
+                }
+                finally {
+                    partitionModule.dispose();
+                    partitionMachine.dispose();
+                    llvmContext.dispose();
+                }
+            }, executor));
+        }
+        for (final var future : futures) {
+            future.join();
+        }
+
+        final var time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Logger.INSTANCE.debugln(STR."Generated \{numPartitions} object files for \{module.getName()} in \{time}ms");
+        return objectFiles;
+    }
+
+    private static void nameAnonymousSymbols(final Module module) {
+        // Unnamed symbols can't be referenced from other object files
+        final var moduleAddress = module.getAddress();
+        var index = 0;
+        for (var function = LLVMGetFirstFunction(moduleAddress); function != NULL; function = LLVMGetNextFunction(function)) {
+            if (isAnonymous(function)) {
+                LLVMSetValueName2(function, STR."__partition_anon.\{index++}");
+            }
+        }
+        for (var global = LLVMGetFirstGlobal(moduleAddress); global != NULL; global = LLVMGetNextGlobal(global)) {
+            if (isAnonymous(global)) {
+                LLVMSetValueName2(global, STR."__partition_anon.\{index++}");
+            }
+        }
+    }
+
+    private static boolean isAnonymous(final long value) {
+        final var name = LLVMGetValueName2(value);
+        return name == null || name.isEmpty();
+    }
+
+    private static int[] assignFunctions(final Module module, final int numPartitions) {
+        final var moduleAddress = module.getAddress();
+        final var sizes = new ArrayList<Integer>();
+        for (var function = LLVMGetFirstFunction(moduleAddress); function != NULL; function = LLVMGetNextFunction(function)) {
+            sizes.add(LLVMIsDeclaration(function) ? -1 : LLVMUtils.getInstructionCount(function));
+        }
+        final var numFunctions = sizes.size();
+        final var assignments = new int[numFunctions];
+        final var loads = new long[numPartitions];
+        // Place the largest functions first, every function goes into the least loaded partition
+        final var order = IntStream.range(0, numFunctions)
+            .boxed()
+            .sorted(Comparator.<Integer>comparingInt(sizes::get).reversed())
+            .toList();
+        for (final int index : order) {
+            final int size = sizes.get(index);
+            if (size < 0) {
+                assignments[index] = -1;
+                continue;
+            }
+            var partition = 0;
+            for (var i = 1; i < numPartitions; i++) {
+                if (loads[i] < loads[partition]) {
+                    partition = i;
+                }
+            }
+            assignments[index] = partition;
+            loads[partition] += size;
+        }
+        return assignments;
+    }
+
+    private static void restrictToPartition(final Module module, final int[] assignments, final int partition) {
+        final var moduleAddress = module.getAddress();
+        var index = 0;
+        for (var function = LLVMGetFirstFunction(moduleAddress); function != NULL; function = LLVMGetNextFunction(function)) {
+            final var assignment = assignments[index++];
+            if (assignment < 0) {
+                continue; // Declarations stay as they are
+            }
+            promoteLocalSymbol(function);
+            if (assignment == partition && LLVMGetLinkage(function) == LLVMLinkOnceODRLinkage) {
+                // Other partitions may refer to it, so the optimizer must not discard it
+                LLVMSetLinkage(function, LLVMWeakODRLinkage);
+            }
+            if (assignment != partition) {
+                deleteBody(function);
+                LLVMSetLinkage(function, LLVMExternalLinkage);
+                LLVMSetComdat(function, NULL); // Declarations may not be part of a COMDAT
+            }
+        }
+        for (var global = LLVMGetFirstGlobal(moduleAddress); global != NULL; global = LLVMGetNextGlobal(global)) {
+            if (LLVMIsDeclaration(global)) {
+                continue;
+            }
+            if (isLocal(global) && LLVMIsGlobalConstant(global)) {
+                continue; // Local constants are simply duplicated into every partition
+            }
+            promoteLocalSymbol(global);
+            // Mutable globals are owned by the first partition
+            if (partition != 0) {
+                LLVMSetInitializer(global, NULL);
+                LLVMSetLinkage(global, LLVMExternalLinkage);
+                LLVMSetComdat(global, NULL);
+            }
+        }
+    }
+
+    private static boolean isLocal(final long value) {
+        final var linkage = LLVMGetLinkage(value);
+        return linkage == LLVMInternalLinkage || linkage == LLVMPrivateLinkage;
+    }
+
+    private static void promoteLocalSymbol(final long value) {
+        if (!isLocal(value)) {
+            return;
+        }
+        LLVMSetLinkage(value, LLVMExternalLinkage);
+        LLVMSetVisibility(value, LLVMHiddenVisibility);
+    }
+
+    private static void deleteBody(final long function) {
+        // Drop all uses of instruction results first, so instructions can be erased in any order
+        for (var block = LLVMGetFirstBasicBlock(function); block != NULL; block = LLVMGetNextBasicBlock(block)) {
+            for (var inst = LLVMGetFirstInstruction(block); inst != NULL; inst = LLVMGetNextInstruction(inst)) {
+                final var type = LLVMTypeOf(inst);
+                if (LLVMGetTypeKind(type) != LLVMVoidTypeKind) {
+                    LLVMReplaceAllUsesWith(inst, LLVMGetUndef(type));
+                }
+            }
+        }
+        // Blocks are only referenced by terminators, so they can be deleted once all instructions are gone
+        for (var block = LLVMGetFirstBasicBlock(function); block != NULL; block = LLVMGetNextBasicBlock(block)) {
+            for (var inst = LLVMGetFirstInstruction(block); inst != NULL; inst = LLVMGetFirstInstruction(block)) {
+                LLVMInstructionEraseFromParent(inst);
+            }
+        }
+        for (var block = LLVMGetFirstBasicBlock(function); block != NULL; block = LLVMGetFirstBasicBlock(function)) {
+            LLVMDeleteBasicBlock(block);
+        }
+    }
+}
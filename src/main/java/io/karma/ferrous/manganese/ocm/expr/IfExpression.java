@@ -55,6 +55,10 @@ public final class IfExpression implements Expression, Scope {
         this.tokenSlice = tokenSlice;
     }
 
+    public List<Pair<Expression, List<Statement>>> getBranches() {
+        return branches;
+    }
+
     // Scoped
 
     @Override
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.karma.ferrous.manganese.ocm.function;
+
+import io.karma.ferrous.manganese.ocm.type.Type;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The parameter types a function is called with, hashed once so it can be used as a lookup key.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class CallSignature {
+    private final Type[] paramTypes;
+    private final int hash;
+
+    private CallSignature(final Type[] paramTypes) {
+        this.paramTypes = paramTypes;
+        hash = Arrays.hashCode(paramTypes);
+    }
+
+    public static CallSignature of(final List<Type> paramTypes) {
+        return new CallSignature(paramTypes.toArray(Type[]::new));
+    }
+
+    public int getArity() {
+        return paramTypes.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CallSignature signature) || hash != signature.hash) {
+            return false;
+        }
+        final var otherTypes = signature.paramTypes;
+        final var numTypes = paramTypes.length;
+        if (numTypes != otherTypes.length) {
+            return false;
+        }
+        for (var i = 0; i < numTypes; i++) {
+            final var type = paramTypes[i];
+            // Types are interned, so most equal types are identical as well
+            if (type != otherTypes[i] && !type.equals(otherTypes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(paramTypes);
+    }
+}
@@ -16,6 +16,7 @@
 package io.karma.ferrous.manganese.ocm.function;
 
 import io.karma.ferrous.manganese.compiler.CompileContext;
+import io.karma.ferrous.manganese.compiler.MonomorphizationCache;
 import io.karma.ferrous.manganese.mangler.Mangler;
 import io.karma.ferrous.manganese.module.Module;
 import io.karma.ferrous.manganese.ocm.AttributeUsage;
@@ -27,6 +28,7 @@ import io.karma.ferrous.manganese.ocm.statement.Statement;
 import io.karma.ferrous.manganese.ocm.type.BuiltinAttributes;
 import io.karma.ferrous.manganese.ocm.type.FunctionType;
 import io.karma.ferrous.manganese.ocm.type.Type;
+import io.karma.ferrous.manganese.ocm.type.Types;
 import io.karma.ferrous.manganese.target.TargetMachine;
 import io.karma.ferrous.manganese.util.Identifier;
 import io.karma.ferrous.manganese.util.TokenSlice;
@@ -37,6 +39,7 @@ import org.jetbrains.annotations.Nullable;
 import org.lwjgl.llvm.LLVMCore;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.lwjgl.llvm.LLVMCore.*;
@@ -56,11 +59,11 @@ public class Function implements Scoped, Mangleable {
     protected final List<AttributeUsage> attributeUsages;
     protected final TokenSlice tokenSlice;
     protected final FunctionType type;
-    protected final HashMap<String, MonomorphizedFunction> monomorphizationCache = new HashMap<>();
+    protected final Set<MonomorphizedFunction> monomorphizations = ConcurrentHashMap.newKeySet();
+    protected final ConcurrentHashMap<Module, Long> materializedPrototypes = new ConcurrentHashMap<>();
     protected final Map<Identifier, ParameterStorage> paramStorages;
     protected FunctionBody body;
     protected Scope enclosingScope;
-    protected long materializedPrototype;
 
     public Function(final Identifier name, final CallingConvention callConv, final FunctionType type,
                     final EnumSet<FunctionModifier> modifiers, final TokenSlice tokenSlice,
@@ -78,10 +81,9 @@ public class Function implements Scoped, Mangleable {
         // @formatter:off
         paramStorages = parameters.stream()
             .map(param -> Pair.of(param.getName(), new ParameterStorage(param,
-                compileContext -> {
-                    final var module = compileContext.getModule(compileContext.getCurrentModuleName());
-                    final var targetMachine = compileContext.getCompiler().getTargetMachine();
-                    final var fnAddress = materialize(module, targetMachine);
+                irContext -> {
+                    final var targetMachine = irContext.getCompileContext().getCompiler().getTargetMachine();
+                    final var fnAddress = materialize(irContext.getModule(), targetMachine);
                     return LLVMCore.LLVMGetParam(fnAddress, parameters.indexOf(param));
                 }))
             )
@@ -155,41 +157,90 @@ public class Function implements Scoped, Mangleable {
     }
 
     public long materialize(final Module module, final TargetMachine targetMachine) {
-        if (materializedPrototype != NULL) {
-            return materializedPrototype;
+        final var prototype = materializedPrototypes.get(module);
+        if (prototype != null) {
+            return prototype;
         }
-        final var address = LLVMAddFunction(module.getAddress(), getMangledName(), type.materialize(targetMachine));
-        final var numParams = parameters.size();
-        for (var i = 0; i < numParams; i++) {
-            LLVMSetValueName2(LLVMGetParam(address, i), parameters.get(i).getName().toString());
+        // A module is only ever populated by one thread at a time, so the lookup can't race with the insertion
+        final var mangledName = getMangledName();
+        var address = LLVMGetNamedFunction(module.getAddress(), mangledName);
+        if (address == NULL) {
+            address = LLVMAddFunction(module.getAddress(), mangledName, type.materialize(targetMachine));
+            final var numParams = parameters.size();
+            for (var i = 0; i < numParams; i++) {
+                LLVMSetValueName2(LLVMGetParam(address, i), parameters.get(i).getName().toString());
+            }
+            LLVMSetLinkage(address, modifiers.contains(FunctionModifier.EXTERN) ? LLVMExternalLinkage : 0);
+            LLVMSetFunctionCallConv(address, callConv.getLLVMValue(targetMachine));
         }
-        LLVMSetLinkage(address, modifiers.contains(FunctionModifier.EXTERN) ? LLVMExternalLinkage : 0);
-        LLVMSetFunctionCallConv(address, callConv.getLLVMValue(targetMachine));
-        return materializedPrototype = address;
+        materializedPrototypes.put(module, address);
+        module.addMaterializedFunction(this);
+        return address;
     }
 
     public long emit(final CompileContext compileContext, final Module module, final TargetMachine targetMachine) {
         if (body != null) {
             body.append(compileContext, module, targetMachine);
-            return materializedPrototype; // This won't be NULL at this point
         }
         return materialize(module, targetMachine);
     }
 
+    /**
+     * Forgets the prototype materialized in the given module.
+     * Called by the module itself before it is disposed or linked into another module.
+     */
+    public void invalidatePrototype(final Module module) {
+        materializedPrototypes.remove(module);
+        for (final var function : monomorphizations) {
+            function.invalidatePrototype(module);
+        }
+    }
+
     public void delete() {
-        if (materializedPrototype == NULL) {
-            return;
+        for (final var prototype : materializedPrototypes.values()) {
+            LLVMDeleteFunction(prototype);
         }
-        LLVMDeleteFunction(materializedPrototype);
-        materializedPrototype = NULL;
+        materializedPrototypes.clear();
     }
 
-    public MonomorphizedFunction monomorphize(final List<Type> genericTypes) {
+    public Collection<MonomorphizedFunction> getMonomorphizations() {
+        return monomorphizations;
+    }
+
+    /**
+     * @return True if this function has to keep its symbol visible outside
+     * of the module it is defined in, since it may be referenced by name.
+     */
+    public boolean isExported() {
+        return !shouldMangle() || modifiers.contains(FunctionModifier.EXTERN);
+    }
+
+    /**
+     * Instantiates this function through the given cache, so every combination
+     * of type arguments is only instantiated once per compilation.
+     */
+    public MonomorphizedFunction monomorphize(final MonomorphizationCache cache, final List<Type> genericTypes) {
         if (isMonomorphic()) {
             throw new IllegalStateException("Monomorphic function cannot be monomorphized again");
         }
-        return monomorphizationCache.computeIfAbsent(Mangler.mangleSequence(genericTypes),
-            key -> new MonomorphizedFunction(this, genericTypes));
+        return cache.instantiate(this, genericTypes);
+    }
+
+    public Map<Identifier, Type> bindGenericTypes(final List<Type> genericTypes) {
+        final var numTypes = Math.min(genericParams.size(), genericTypes.size());
+        final var bindings = new HashMap<Identifier, Type>(numTypes);
+        for (var i = 0; i < numTypes; i++) {
+            bindings.put(genericParams.get(i).getName(), genericTypes.get(i));
+        }
+        return bindings;
+    }
+
+    /**
+     * @return The parameter types this function has once instantiated with the given type arguments.
+     */
+    public List<Type> getParamTypes(final List<Type> genericTypes) {
+        final var bindings = bindGenericTypes(genericTypes);
+        return type.getParamTypes().stream().map(paramType -> Types.substitute(paramType, bindings)).toList();
     }
 
     // Mangleable
@@ -29,6 +29,7 @@ import org.apiguardian.api.API;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Alexander Hinze
@@ -38,7 +39,7 @@ import java.util.List;
 public final class FunctionBody implements Scope {
     private final Function function;
     private final List<Statement> statements;
-    private boolean isAppended;
+    private final AtomicBoolean isAppended = new AtomicBoolean(false);
 
     public FunctionBody(final Function function, final List<Statement> statements) {
         this.function = function;
@@ -53,9 +54,15 @@ public final class FunctionBody implements Scope {
         return statements;
     }
 
-    public void append(final CompileContext compileContext, final Module module, final TargetMachine targetMachine) {
-        if (isAppended) {
-            return;
+    /**
+     * @return True if the body was appended to the given module by this call,
+     * false if it was already claimed by an earlier call.
+     */
+    public boolean append(final CompileContext compileContext, final Module module,
+                          final TargetMachine targetMachine) {
+        // Claim the body before emitting it, so recursive calls and other emitters only reference the prototype
+        if (!isAppended.compareAndSet(false, true)) {
+            return false;
         }
         try (final var context = new FunctionIRContext(compileContext, module, targetMachine, function)) {
             context.reset();
@@ -83,7 +90,7 @@ public final class FunctionBody implements Scope {
                 }
             }
         }
-        isAppended = true;
+        return true;
     }
 
     // Scope
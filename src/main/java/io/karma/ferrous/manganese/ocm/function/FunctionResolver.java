@@ -26,5 +26,5 @@ import java.util.List;
  */
 @FunctionalInterface
 public interface FunctionResolver {
-    @Nullable Function resolve(final List<Type> paramTypes);
+    @Nullable Function resolve(final List<Type> genericTypes, final List<Type> paramTypes);
 }
@@ -15,11 +15,25 @@
 
 package io.karma.ferrous.manganese.ocm.function;
 
+import io.karma.ferrous.manganese.compiler.CompileContext;
+import io.karma.ferrous.manganese.compiler.MonomorphizationCache;
 import io.karma.ferrous.manganese.mangler.Mangler;
+import io.karma.ferrous.manganese.module.Module;
+import io.karma.ferrous.manganese.ocm.type.FunctionType;
 import io.karma.ferrous.manganese.ocm.type.Type;
+import io.karma.ferrous.manganese.ocm.type.Types;
+import io.karma.ferrous.manganese.target.TargetMachine;
+import io.karma.ferrous.manganese.util.Identifier;
+import io.karma.kommons.function.Functions;
 import org.apiguardian.api.API;
 
 import java.util.List;
+import java.util.Map;
+
+import static org.lwjgl.llvm.LLVMComdat.LLVMGetOrInsertComdat;
+import static org.lwjgl.llvm.LLVMComdat.LLVMSetComdat;
+import static org.lwjgl.llvm.LLVMCore.LLVMLinkOnceODRLinkage;
+import static org.lwjgl.llvm.LLVMCore.LLVMSetLinkage;
 
 /**
  * @author Alexander Hinze
@@ -28,17 +42,55 @@ import java.util.List;
 @API(status = API.Status.INTERNAL)
 public final class MonomorphizedFunction extends Function {
     private final List<Type> genericTypes;
+    private final Map<Identifier, Type> genericBindings;
 
-    MonomorphizedFunction(final Function function, final List<Type> genericTypes) {
+    private MonomorphizedFunction(final Function function, final List<Type> genericTypes,
+                                  final Map<Identifier, Type> bindings) {
         super(function.getName(),
             function.getCallConv(),
-            function.getType(),
+            substitute(function.getType(), bindings),
             function.getModifiers(),
             function.getTokenSlice(),
-            function.getParameters(),
+            substitute(function.getParameters(), bindings),
             function.getGenericParameters(),
             function.getAttributeUsages());
         this.genericTypes = genericTypes;
+        genericBindings = bindings;
+    }
+
+    /**
+     * Creates a new instantiation of the given generic function, with its generic parameters
+     * replaced by the given types. Only {@link MonomorphizationCache} is supposed to call this,
+     * use {@link Function#monomorphize(MonomorphizationCache, List)} instead.
+     */
+    public static MonomorphizedFunction create(final Function function, final List<Type> genericTypes) {
+        final var instantiation = new MonomorphizedFunction(function,
+            genericTypes,
+            function.bindGenericTypes(genericTypes));
+        instantiation.setEnclosingScope(function.getEnclosingScope());
+        function.monomorphizations.add(instantiation);
+        return instantiation;
+    }
+
+    private static FunctionType substitute(final FunctionType type, final Map<Identifier, Type> bindings) {
+        // @formatter:off
+        return Types.function(Types.substitute(type.getReturnType(), bindings),
+            type.getParamTypes().stream().map(paramType -> Types.substitute(paramType, bindings)).toList(),
+            type.isVarArg(),
+            Functions.castingIdentity(),
+            type.getTokenSlice());
+        // @formatter:on
+    }
+
+    private static List<Parameter> substitute(final List<Parameter> params, final Map<Identifier, Type> bindings) {
+        // @formatter:off
+        return params.stream()
+            .map(param -> new Parameter(param.getName(),
+                Types.substitute(param.getType(), bindings),
+                param.isMutable(),
+                param.getDefaultValue()))
+            .toList();
+        // @formatter:on
     }
 
     @Override
@@ -47,10 +99,23 @@ public final class MonomorphizedFunction extends Function {
     }
 
     @Override
-    public MonomorphizedFunction monomorphize(final List<Type> genericTypes) {
+    public MonomorphizedFunction monomorphize(final MonomorphizationCache cache, final List<Type> genericTypes) {
         return this;
     }
 
+    @Override
+    public long emit(final CompileContext compileContext, final Module module, final TargetMachine targetMachine) {
+        if (body == null || !body.append(compileContext, module, targetMachine)) {
+            // Defined in another module, which may be another worker of the same module
+            return materialize(module, targetMachine);
+        }
+        // Cached modules of separate compilations may each define this instantiation, the linker keeps one of them
+        final var address = materialize(module, targetMachine);
+        LLVMSetLinkage(address, LLVMLinkOnceODRLinkage);
+        LLVMSetComdat(address, LLVMGetOrInsertComdat(module.getAddress(), getMangledName()));
+        return address;
+    }
+
     // Mangleable
 
     @Override
@@ -63,4 +128,11 @@ public final class MonomorphizedFunction extends Function {
     public List<Type> getGenericTypes() {
         return genericTypes;
     }
+
+    /**
+     * @return The type arguments of this instantiation by the name of the generic parameter they are bound to.
+     */
+    public Map<Identifier, Type> getGenericBindings() {
+        return genericBindings;
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.karma.ferrous.manganese.ocm.function;
+
+import io.karma.ferrous.manganese.ocm.type.FunctionType;
+import io.karma.ferrous.manganese.ocm.type.Type;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * All overloads of one function name, indexed by their parameter types
+ * so an exact match is a single hash lookup.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class OverloadSet {
+    private final HashMap<FunctionType, Function> functions = new HashMap<>();
+    private final HashMap<CallSignature, Function> signatures = new HashMap<>();
+
+    public void put(final Function function) {
+        final var type = function.getType();
+        final var previous = functions.put(type, function);
+        final var signature = CallSignature.of(type.getParamTypes());
+        if (previous != null) {
+            signatures.remove(signature, previous);
+        }
+        signatures.putIfAbsent(signature, function);
+    }
+
+    public boolean contains(final FunctionType type) {
+        return functions.containsKey(type);
+    }
+
+    public @Nullable Function find(final CallSignature signature) {
+        return signatures.get(signature);
+    }
+
+    public @Nullable Function find(final List<Type> paramTypes) {
+        return find(CallSignature.of(paramTypes));
+    }
+
+    /**
+     * @return The overloads of this set by their function type. Must not be modified directly.
+     */
+    public HashMap<FunctionType, Function> getFunctions() {
+        return functions;
+    }
+
+    public int size() {
+        return functions.size();
+    }
+}
@@ -15,7 +15,6 @@
 
 package io.karma.ferrous.manganese.ocm.function;
 
-import io.karma.ferrous.manganese.compiler.CompileContext;
 import io.karma.ferrous.manganese.ocm.ValueStorage;
 import io.karma.ferrous.manganese.ocm.expr.Expression;
 import io.karma.ferrous.manganese.ocm.ir.IRContext;
@@ -36,13 +35,13 @@ import static org.lwjgl.system.MemoryUtil.NULL;
 @API(status = API.Status.INTERNAL)
 public final class ParameterStorage implements ValueStorage {
     private final Parameter parameter;
-    private final ToLongFunction<CompileContext> addressProvider;
+    private final ToLongFunction<IRContext> addressProvider;
     private Expression value;
     private long mutableAddress;
     private boolean isInitialized;
     private boolean isMutated;
 
-    public ParameterStorage(final Parameter parameter, final ToLongFunction<CompileContext> addressProvider) {
+    public ParameterStorage(final Parameter parameter, final ToLongFunction<IRContext> addressProvider) {
         this.parameter = parameter;
         this.addressProvider = addressProvider;
         final var defaultValue = parameter.getDefaultValue();
@@ -108,7 +107,7 @@ public final class ParameterStorage implements ValueStorage {
         if (mutableAddress == NULL) {
             final var builder = irContext.getCurrentOrCreate();
             mutableAddress = builder.alloca(getType().materialize(targetMachine));
-            builder.store(addressProvider.applyAsLong(irContext.getCompileContext()), mutableAddress);
+            builder.store(addressProvider.applyAsLong(irContext), mutableAddress);
         }
         return mutableAddress;
     }
@@ -119,6 +118,6 @@ public final class ParameterStorage implements ValueStorage {
             // If the parameter was mutated, load from address
             return ValueStorage.super.load(targetMachine, irContext);
         }
-        return addressProvider.applyAsLong(irContext.getCompileContext());
+        return addressProvider.applyAsLong(irContext);
     }
 }
@@ -19,7 +19,9 @@ import io.karma.ferrous.manganese.ocm.type.Type;
 import org.apiguardian.api.API;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * @author Alexander Hinze
@@ -28,7 +30,9 @@ import java.util.List;
 @API(status = API.Status.INTERNAL)
 public final class UnresolvedFunctionReference implements FunctionReference {
     private final FunctionResolver resolver;
+    private List<Type> genericTypes = Collections.emptyList();
     private List<Type> contextualParamTypes;
+    private Function resolvedFunction;
 
     public UnresolvedFunctionReference(final FunctionResolver resolver) {
         this.resolver = resolver;
@@ -39,7 +43,10 @@ public final class UnresolvedFunctionReference implements FunctionReference {
         if (contextualParamTypes == null) {
             throw new IllegalStateException("Cannot resolve function without contextual type information");
         }
-        return resolver.resolve(contextualParamTypes);
+        if (resolvedFunction == null) {
+            resolvedFunction = resolver.resolve(genericTypes, contextualParamTypes);
+        }
+        return resolvedFunction;
     }
 
     public List<Type> getContextualParamTypes() {
@@ -47,9 +54,23 @@ public final class UnresolvedFunctionReference implements FunctionReference {
     }
 
     public void setContextualParamTypes(final List<Type> contextualParamTypes) {
+        if (!Objects.equals(this.contextualParamTypes, contextualParamTypes)) {
+            resolvedFunction = null; // Resolved against different argument types
+        }
         this.contextualParamTypes = contextualParamTypes;
     }
 
+    public List<Type> getGenericTypes() {
+        return genericTypes;
+    }
+
+    public void setGenericTypes(final List<Type> genericTypes) {
+        if (!this.genericTypes.equals(genericTypes)) {
+            resolvedFunction = null; // Resolved against different type arguments
+        }
+        this.genericTypes = genericTypes;
+    }
+
     public FunctionResolver getResolver() {
         return resolver;
     }
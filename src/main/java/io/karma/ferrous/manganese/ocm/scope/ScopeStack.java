@@ -19,6 +19,7 @@ import io.karma.ferrous.manganese.util.Identifier;
 import org.apiguardian.api.API;
 import org.apiguardian.api.API.Status;
 
+import java.util.ArrayList;
 import java.util.Stack;
 
 /**
@@ -27,6 +28,9 @@ import java.util.Stack;
  */
 @API(status = Status.INTERNAL)
 public final class ScopeStack extends Stack<Scope> {
+    private final ArrayList<Identifier> scopeNames = new ArrayList<>(); // Scope name at every depth
+    private int scopeNamesModCount;
+
     public ScopeStack() {
     }
 
@@ -43,15 +47,47 @@ public final class ScopeStack extends Stack<Scope> {
         return provider;
     }
 
-    public Identifier getScopeName() {
-        var result = Identifier.EMPTY.copy();
+    private Identifier joinScopeName(final Identifier parentName, final Scope scope) {
+        if (scope.getScopeType() == ScopeType.GLOBAL) {
+            return parentName;
+        }
+        return parentName.join(scope.getName());
+    }
+
+    private void syncScopeNames() {
+        if (scopeNamesModCount == modCount && scopeNames.size() == size()) {
+            return;
+        }
+        // Modified through anything but push and pop, so rebuild all names
+        scopeNames.clear();
+        var result = Identifier.EMPTY;
         for (final var scope : this) {
-            final var type = scope.getScopeType();
-            if (type == ScopeType.GLOBAL) {
-                continue;
-            }
-            result = result.join(scope.getName());
+            result = joinScopeName(result, scope);
+            scopeNames.add(result);
         }
-        return result;
+        scopeNamesModCount = modCount;
+    }
+
+    @Override
+    public synchronized Scope push(final Scope scope) {
+        syncScopeNames();
+        super.push(scope);
+        scopeNames.add(joinScopeName(scopeNames.isEmpty() ? Identifier.EMPTY : scopeNames.getLast(), scope));
+        scopeNamesModCount = modCount;
+        return scope;
+    }
+
+    @Override
+    public synchronized Scope pop() {
+        syncScopeNames();
+        final var scope = super.pop();
+        scopeNames.removeLast();
+        scopeNamesModCount = modCount;
+        return scope;
+    }
+
+    public synchronized Identifier getScopeName() {
+        syncScopeNames();
+        return scopeNames.isEmpty() ? Identifier.EMPTY : scopeNames.getLast();
     }
 }
@@ -15,6 +15,7 @@
 
 package io.karma.ferrous.manganese.ocm.type;
 
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.ocm.constant.BoolConstant;
 import io.karma.ferrous.manganese.ocm.expr.Expression;
 import io.karma.ferrous.manganese.ocm.ir.IRContext;
@@ -100,7 +101,7 @@ public final class BoolType implements Type {
 
     @Override
     public long materialize(final TargetMachine machine) {
-        return LLVMCore.LLVMInt1Type();
+        return LLVMCore.LLVMInt1TypeInContext(LLVMContext.getCurrent().getAddress());
     }
 
     @Override
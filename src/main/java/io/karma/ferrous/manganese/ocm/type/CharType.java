@@ -15,6 +15,7 @@
 
 package io.karma.ferrous.manganese.ocm.type;
 
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.ocm.Mangleable;
 import io.karma.ferrous.manganese.ocm.constant.CharConstant;
 import io.karma.ferrous.manganese.ocm.expr.Expression;
@@ -79,7 +80,7 @@ public final class CharType implements Type, Mangleable {
 
     @Override
     public long materialize(final TargetMachine machine) {
-        return LLVMCore.LLVMInt8Type();
+        return LLVMCore.LLVMInt8TypeInContext(LLVMContext.getCurrent().getAddress());
     }
 
     @Override
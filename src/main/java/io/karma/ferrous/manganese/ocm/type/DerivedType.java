@@ -15,6 +15,7 @@
 
 package io.karma.ferrous.manganese.ocm.type;
 
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.ocm.constant.NullConstant;
 import io.karma.ferrous.manganese.ocm.expr.Expression;
 import io.karma.ferrous.manganese.ocm.generic.GenericParameter;
@@ -25,7 +26,6 @@ import io.karma.ferrous.manganese.util.TokenSlice;
 import org.apiguardian.api.API;
 import org.apiguardian.api.API.Status;
 import org.lwjgl.llvm.LLVMCore;
-import org.lwjgl.system.MemoryUtil;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -42,7 +42,6 @@ public final class DerivedType implements Type {
     private final TypeAttribute attribute;
     private final EnumSet<TypeModifier> modifiers;
     private final TokenSlice tokenSlice;
-    private long materializedType = MemoryUtil.NULL;
 
     DerivedType(final Type baseType, final TypeAttribute attribute, final EnumSet<TypeModifier> modifiers) {
         this.baseType = baseType;
@@ -126,10 +125,8 @@ public final class DerivedType implements Type {
 
     @Override
     public long materialize(final TargetMachine machine) {
-        if (materializedType != MemoryUtil.NULL) {
-            return materializedType;
-        }
-        return materializedType = LLVMCore.LLVMPointerType(baseType.materialize(machine), 0);
+        return LLVMContext.getCurrent().materialize(this,
+            context -> LLVMCore.LLVMPointerType(baseType.materialize(machine), 0));
     }
 
     @Override
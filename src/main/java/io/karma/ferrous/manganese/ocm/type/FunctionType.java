@@ -15,6 +15,7 @@
 
 package io.karma.ferrous.manganese.ocm.type;
 
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.ocm.expr.Expression;
 import io.karma.ferrous.manganese.ocm.scope.DefaultScope;
 import io.karma.ferrous.manganese.ocm.scope.Scope;
@@ -26,7 +27,6 @@ import org.apiguardian.api.API.Status;
 import org.jetbrains.annotations.Nullable;
 import org.lwjgl.llvm.LLVMCore;
 import org.lwjgl.system.MemoryStack;
-import org.lwjgl.system.MemoryUtil;
 
 import java.util.List;
 import java.util.Objects;
@@ -41,7 +41,6 @@ public class FunctionType implements Type {
     private final List<Type> paramTypes;
     private final boolean isVarArg;
     private final TokenSlice tokenSlice;
-    private long materializedType = MemoryUtil.NULL;
 
     public FunctionType(final Type returnType, final boolean isVarArg, final TokenSlice tokenSlice,
                         final List<Type> paramTypes) {
@@ -133,14 +132,13 @@ public class FunctionType implements Type {
 
     @Override
     public long materialize(final TargetMachine machine) {
-        if (materializedType != MemoryUtil.NULL) {
-            return materializedType;
-        }
-        try (final var stack = MemoryStack.stackPush()) {
-            final var returnType = this.returnType.materialize(machine);
-            final var paramTypes = this.paramTypes.stream().mapToLong(type -> type.materialize(machine)).toArray();
-            return materializedType = LLVMCore.LLVMFunctionType(returnType, stack.pointers(paramTypes), isVarArg);
-        }
+        return LLVMContext.getCurrent().materialize(this, context -> {
+            try (final var stack = MemoryStack.stackPush()) {
+                final var returnType = this.returnType.materialize(machine);
+                final var paramTypes = this.paramTypes.stream().mapToLong(type -> type.materialize(machine)).toArray();
+                return LLVMCore.LLVMFunctionType(returnType, stack.pointers(paramTypes), isVarArg);
+            }
+        });
     }
 
     // Object
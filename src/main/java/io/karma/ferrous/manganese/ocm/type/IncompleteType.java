@@ -15,6 +15,7 @@
 
 package io.karma.ferrous.manganese.ocm.type;
 
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.ocm.expr.Expression;
 import io.karma.ferrous.manganese.ocm.scope.Scope;
 import io.karma.ferrous.manganese.target.TargetMachine;
@@ -23,9 +24,6 @@ import io.karma.ferrous.manganese.util.TokenSlice;
 import org.apiguardian.api.API;
 import org.apiguardian.api.API.Status;
 import org.lwjgl.llvm.LLVMCore;
-import org.lwjgl.system.MemoryUtil;
-
-import static org.lwjgl.llvm.LLVMCore.LLVMGetGlobalContext;
 
 /**
  * @author Alexander Hinze
@@ -35,7 +33,6 @@ import static org.lwjgl.llvm.LLVMCore.LLVMGetGlobalContext;
 public final class IncompleteType implements Type {
     private final Identifier name;
     private final TokenSlice tokenSlice;
-    private long materializedType = MemoryUtil.NULL;
     private Scope enclosingType;
 
     IncompleteType(final Identifier name, final TokenSlice tokenSlice) {
@@ -86,11 +83,8 @@ public final class IncompleteType implements Type {
 
     @Override
     public long materialize(final TargetMachine machine) {
-        if (materializedType != MemoryUtil.NULL) {
-            return materializedType;
-        }
-        final var name = getQualifiedName().toInternalName();
-        return materializedType = LLVMCore.LLVMStructCreateNamed(LLVMGetGlobalContext(), name);
+        return LLVMContext.getCurrent().materialize(this,
+            context -> LLVMCore.LLVMStructCreateNamed(context, getQualifiedName().toInternalName()));
     }
 
     @Override
@@ -15,6 +15,7 @@
 
 package io.karma.ferrous.manganese.ocm.type;
 
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.ocm.Mangleable;
 import io.karma.ferrous.manganese.ocm.constant.BigIntConstant;
 import io.karma.ferrous.manganese.ocm.constant.IntConstant;
@@ -28,9 +29,9 @@ import io.karma.ferrous.manganese.util.TokenSlice;
 import io.karma.kommons.function.Functions;
 import org.apiguardian.api.API;
 import org.lwjgl.llvm.LLVMCore;
-import org.lwjgl.system.MemoryUtil;
 
 import java.math.BigInteger;
+import java.util.Objects;
 
 /**
  * @author Alexander Hinze
@@ -53,7 +54,6 @@ public final class IntType implements Type, Mangleable {
     private final boolean isUnsigned;
     private final Identifier name;
     private final String mangledName;
-    private long materializedType;
 
     public IntType(final int width, final boolean isUnsigned) {
         this.width = width;
@@ -162,10 +162,7 @@ public final class IntType implements Type, Mangleable {
 
     @Override
     public long materialize(final TargetMachine machine) {
-        if (materializedType == MemoryUtil.NULL) {
-            materializedType = LLVMCore.LLVMIntType(width);
-        }
-        return materializedType;
+        return LLVMContext.getCurrent().materialize(this, context -> LLVMCore.LLVMIntTypeInContext(context, width));
     }
 
     @Override
@@ -181,6 +178,19 @@ public final class IntType implements Type, Mangleable {
         return new BigIntConstant(this, BigInteger.ZERO, TokenSlice.EMPTY);
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(width, isUnsigned);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj instanceof IntType type) {
+            return width == type.width && isUnsigned == type.isUnsigned;
+        }
+        return false;
+    }
+
     @Override
     public String toString() {
         return getName().toString();
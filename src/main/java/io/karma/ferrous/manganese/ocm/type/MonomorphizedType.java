@@ -24,6 +24,7 @@ import org.apiguardian.api.API;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.Objects;
 
 /**
  * @author Alexander Hinze
@@ -74,4 +75,26 @@ public final class MonomorphizedType implements Type {
     public Expression makeDefaultValue(final TargetMachine targetMachine) {
         return null;
     }
+
+    // Object
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(baseType, genericTypes, enclosingScope);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj instanceof MonomorphizedType type) { // @formatter:off
+            return baseType.equals(type.baseType)
+                && genericTypes.equals(type.genericTypes)
+                && Objects.equals(enclosingScope, type.enclosingScope);
+        } // @formatter:on
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return STR."\{baseType}<\{genericTypes}>";
+    }
 }
@@ -15,6 +15,7 @@
 
 package io.karma.ferrous.manganese.ocm.type;
 
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.ocm.Mangleable;
 import io.karma.ferrous.manganese.ocm.constant.BigRealConstant;
 import io.karma.ferrous.manganese.ocm.constant.RealConstant;
@@ -31,7 +32,7 @@ import org.apiguardian.api.API;
 import org.lwjgl.llvm.LLVMCore;
 
 import java.math.BigDecimal;
-import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
 import java.util.function.Supplier;
 
 /**
@@ -41,10 +42,10 @@ import java.util.function.Supplier;
 @API(status = API.Status.INTERNAL)
 public enum RealType implements Type, Mangleable {
     // @formatter:off
-    F16 (16,  FerrousLexer.KW_F16,  "H", LLVMCore::LLVMHalfType,   RealType::makeDefaultHalfValue),
-    F32 (32,  FerrousLexer.KW_F32,  "F", LLVMCore::LLVMFloatType,  RealType::makeDefaultSingleValue),
-    F64 (64,  FerrousLexer.KW_F64,  "D", LLVMCore::LLVMDoubleType, RealType::makeDefaultDoubleValue),
-    F128(128, FerrousLexer.KW_F128, "Q", LLVMCore::LLVMFP128Type,  RealType::makeDefaultQuadValue);
+    F16 (16,  FerrousLexer.KW_F16,  "H", LLVMCore::LLVMHalfTypeInContext,   RealType::makeDefaultHalfValue),
+    F32 (32,  FerrousLexer.KW_F32,  "F", LLVMCore::LLVMFloatTypeInContext,  RealType::makeDefaultSingleValue),
+    F64 (64,  FerrousLexer.KW_F64,  "D", LLVMCore::LLVMDoubleTypeInContext, RealType::makeDefaultDoubleValue),
+    F128(128, FerrousLexer.KW_F128, "Q", LLVMCore::LLVMFP128TypeInContext,  RealType::makeDefaultQuadValue);
     // @formatter:on
 
     public static final char SEQUENCE_PREFIX = '\'';
@@ -52,10 +53,10 @@ public enum RealType implements Type, Mangleable {
     private final int width;
     private final Identifier name;
     private final String mangledName;
-    private final LongSupplier factory;
+    private final LongUnaryOperator factory;
     private final Supplier<Expression> defaultSupplier;
 
-    RealType(final int width, final int token, final String mangledName, final LongSupplier factory,
+    RealType(final int width, final int token, final String mangledName, final LongUnaryOperator factory,
              final Supplier<Expression> defaultSupplier) {
         this.width = width;
         name = new Identifier(TokenUtils.getLiteral(token));
@@ -140,7 +141,7 @@ public enum RealType implements Type, Mangleable {
 
     @Override
     public long materialize(final TargetMachine machine) {
-        return factory.getAsLong();
+        return factory.applyAsLong(LLVMContext.getCurrent().getAddress());
     }
 
     @Override
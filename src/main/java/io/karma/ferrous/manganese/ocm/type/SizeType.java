@@ -15,6 +15,7 @@
 
 package io.karma.ferrous.manganese.ocm.type;
 
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.ocm.Mangleable;
 import io.karma.ferrous.manganese.ocm.constant.BigIntConstant;
 import io.karma.ferrous.manganese.ocm.constant.IntConstant;
@@ -28,7 +29,6 @@ import io.karma.ferrous.manganese.util.TokenUtils;
 import io.karma.ferrous.vanadium.FerrousLexer;
 import org.apiguardian.api.API;
 import org.lwjgl.llvm.LLVMCore;
-import org.lwjgl.system.MemoryUtil;
 
 import java.math.BigInteger;
 
@@ -48,7 +48,6 @@ public enum SizeType implements Type, Mangleable {
     private final boolean isUnsigned;
     private final Identifier name;
     private final String mangledName;
-    private long materializedType;
 
     SizeType(final int token, final String mangledName, final boolean isUnsigned) {
         name = new Identifier(TokenUtils.getLiteral(token));
@@ -91,10 +90,8 @@ public enum SizeType implements Type, Mangleable {
 
     @Override
     public long materialize(final TargetMachine machine) {
-        if (materializedType == MemoryUtil.NULL) {
-            materializedType = LLVMCore.LLVMIntType(machine.getPointerSize() << 3);
-        }
-        return materializedType;
+        return LLVMContext.getCurrent().materialize(this,
+            context -> LLVMCore.LLVMIntTypeInContext(context, machine.getPointerSize() << 3));
     }
 
     @Override
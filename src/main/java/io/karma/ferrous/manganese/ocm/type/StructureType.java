@@ -15,6 +15,7 @@
 
 package io.karma.ferrous.manganese.ocm.type;
 
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.mangler.Mangler;
 import io.karma.ferrous.manganese.ocm.constant.StructConstant;
 import io.karma.ferrous.manganese.ocm.expr.Expression;
@@ -27,13 +28,10 @@ import org.apiguardian.api.API;
 import org.apiguardian.api.API.Status;
 import org.lwjgl.llvm.LLVMCore;
 import org.lwjgl.system.MemoryStack;
-import org.lwjgl.system.MemoryUtil;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Objects;
-
-import static org.lwjgl.llvm.LLVMCore.LLVMGetGlobalContext;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Alexander Hinze
@@ -46,8 +44,7 @@ public final class StructureType implements Type {
     private final List<Type> fieldTypes;
     private final List<GenericParameter> genericParams;
     private final TokenSlice tokenSlice;
-    private final HashMap<String, MonomorphizedType> monomorphizationCache = new HashMap<>();
-    private long materializedType = MemoryUtil.NULL;
+    private final ConcurrentHashMap<String, MonomorphizedType> monomorphizationCache = new ConcurrentHashMap<>();
     private Scope enclosingScope;
 
     StructureType(final Identifier name, final boolean isPacked, final List<GenericParameter> genericParams,
@@ -76,7 +73,7 @@ public final class StructureType implements Type {
     }
 
     public long getMaterializedType() {
-        return materializedType;
+        return LLVMContext.getCurrent().getMaterializedType(this);
     }
 
     // NameProvider
@@ -154,20 +151,19 @@ public final class StructureType implements Type {
 
     @Override
     public long materialize(final TargetMachine machine) {
-        if (materializedType != MemoryUtil.NULL) {
-            return materializedType;
-        }
-        try (final var stack = MemoryStack.stackPush()) {
-            final var numFields = fieldTypes.size();
-            final var fields = stack.callocPointer(numFields);
-            for (var i = 0; i < numFields; i++) {
-                fields.put(i, fieldTypes.get(i).materialize(machine));
+        return LLVMContext.getCurrent().materialize(this, context -> {
+            try (final var stack = MemoryStack.stackPush()) {
+                final var numFields = fieldTypes.size();
+                final var fields = stack.callocPointer(numFields);
+                for (var i = 0; i < numFields; i++) {
+                    fields.put(i, fieldTypes.get(i).materialize(machine));
+                }
+                final var name = getQualifiedName().toInternalName();
+                final var address = LLVMCore.LLVMStructCreateNamed(context, name);
+                LLVMCore.LLVMStructSetBody(address, fields, isPacked);
+                return address;
             }
-            final var name = getQualifiedName().toInternalName();
-            materializedType = LLVMCore.LLVMStructCreateNamed(LLVMGetGlobalContext(), name);
-            LLVMCore.LLVMStructSetBody(materializedType, fields, isPacked);
-            return materializedType;
-        }
+        });
     }
 
     // Object
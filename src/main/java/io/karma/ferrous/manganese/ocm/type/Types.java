@@ -18,12 +18,13 @@ package io.karma.ferrous.manganese.ocm.type;
 import io.karma.ferrous.manganese.compiler.CompileContext;
 import io.karma.ferrous.manganese.ocm.generic.GenericParameter;
 import io.karma.ferrous.manganese.ocm.scope.ScopeStack;
+import io.karma.ferrous.manganese.parser.PruningParseTreeWalker;
 import io.karma.ferrous.manganese.parser.TypeParser;
 import io.karma.ferrous.manganese.target.TargetMachine;
 import io.karma.ferrous.manganese.util.Identifier;
 import io.karma.ferrous.manganese.util.TokenSlice;
+import io.karma.ferrous.manganese.util.WeakInterner;
 import io.karma.ferrous.vanadium.FerrousParser;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.apiguardian.api.API;
 import org.apiguardian.api.API.Status;
 import org.jetbrains.annotations.Nullable;
@@ -37,25 +38,22 @@ import java.util.function.Function;
  */
 @API(status = Status.INTERNAL)
 public final class Types {
-    private static final HashMap<String, Type> CACHE = new HashMap<>();
+    private static final WeakInterner<Type> INTERNER = new WeakInterner<>();
 
     // @formatter:off
     private Types() {}
     // @formatter:on
 
     public static void invalidateCache() {
-        CACHE.clear();
+        INTERNER.clear();
+    }
+
+    public static int getCacheSize() {
+        return INTERNER.size();
     }
 
-    @SuppressWarnings("unchecked")
     static <T extends Type> T cached(final T type) {
-        final var key = type.toString();
-        final var result = CACHE.get(key);
-        if (result != null) {
-            return (T) result;
-        }
-        CACHE.put(key, type);
-        return type;
+        return INTERNER.intern(type);
     }
 
     public static IntType integer(final int width, final boolean isUnsigned,
@@ -112,6 +110,27 @@ public final class Types {
         return cached(callback.apply(new IncompleteType(name, tokenSlice)));
     }
 
+    /**
+     * Replaces the generic parameters referenced by the given type with the types bound to their names.
+     * Generic parameters are unresolved when a prototype is parsed, so they show up as incomplete types.
+     */
+    public static Type substitute(final Type type, final Map<Identifier, Type> bindings) {
+        if (type instanceof IncompleteType) {
+            final var boundType = bindings.get(type.getName());
+            return boundType != null ? boundType : type;
+        }
+        if (type instanceof DerivedType) {
+            final var baseType = type.getBaseType();
+            final var substitutedType = substitute(baseType, bindings);
+            if (substitutedType == baseType) {
+                return type;
+            }
+            return substitutedType.derive(type.getAttributes().getLast(),
+                type.getModifiers().toArray(TypeModifier[]::new));
+        }
+        return type;
+    }
+
     public static @Nullable Type findCommonType(final TargetMachine targetMachine, final Type... types) {
         return findCommonType(targetMachine, Arrays.asList(types));
     }
@@ -162,7 +181,7 @@ public final class Types {
             return null;
         }
         final TypeParser parser = new TypeParser(compileContext, scopeStack);
-        ParseTreeWalker.DEFAULT.walk(parser, context);
+        PruningParseTreeWalker.INSTANCE.walk(parser, context);
         return parser.getType();
     }
 }
@@ -15,6 +15,7 @@
 
 package io.karma.ferrous.manganese.ocm.type;
 
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.ocm.expr.AllocExpression;
 import io.karma.ferrous.manganese.ocm.expr.Expression;
 import io.karma.ferrous.manganese.ocm.generic.GenericParameter;
@@ -28,8 +29,6 @@ import org.lwjgl.llvm.LLVMCore;
 import java.util.List;
 import java.util.Objects;
 
-import static org.lwjgl.system.MemoryUtil.NULL;
-
 /**
  * @author Alexander Hinze
  * @since 21/10/2023
@@ -40,7 +39,6 @@ public final class VectorType implements Type {
     private final int elementCount;
     private final TokenSlice tokenSlice;
     private final List<GenericParameter> genericParams;
-    private long materializedType = NULL;
     private Scope enclosingScope;
 
     public VectorType(final Type type, final int elementCount, final TokenSlice tokenSlice,
@@ -91,10 +89,8 @@ public final class VectorType implements Type {
 
     @Override
     public long materialize(final TargetMachine machine) {
-        if (materializedType == NULL) {
-            materializedType = LLVMCore.LLVMVectorType(type.materialize(machine), elementCount);
-        }
-        return materializedType;
+        return LLVMContext.getCurrent().materialize(this,
+            context -> LLVMCore.LLVMVectorType(type.materialize(machine), elementCount));
     }
 
     @Override
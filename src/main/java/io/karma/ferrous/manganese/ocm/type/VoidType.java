@@ -15,6 +15,7 @@
 
 package io.karma.ferrous.manganese.ocm.type;
 
+import io.karma.ferrous.manganese.llvm.LLVMContext;
 import io.karma.ferrous.manganese.ocm.Mangleable;
 import io.karma.ferrous.manganese.ocm.constant.VoidConstant;
 import io.karma.ferrous.manganese.ocm.expr.Expression;
@@ -78,7 +79,7 @@ public final class VoidType implements Type, Mangleable {
 
     @Override
     public long materialize(final TargetMachine machine) {
-        return LLVMCore.LLVMVoidType();
+        return LLVMCore.LLVMVoidTypeInContext(LLVMContext.getCurrent().getAddress());
     }
 
     @Override
@@ -35,7 +35,6 @@ import io.karma.kommons.function.Functions;
 import io.karma.kommons.tuple.Pair;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.antlr.v4.runtime.tree.TerminalNodeImpl;
 import org.apiguardian.api.API;
@@ -92,7 +91,7 @@ public final class ExpressionParser extends ParseAdapter {
             return null;
         }
         final var parser = new ExpressionParser(compileContext, scopeStack, parent);
-        ParseTreeWalker.DEFAULT.walk(parser, context);
+        PruningParseTreeWalker.INSTANCE.walk(parser, context);
         return parser.expression;
     }
 
@@ -104,7 +103,7 @@ public final class ExpressionParser extends ParseAdapter {
             return null;
         }
         final var parser = new ExpressionParser(compileContext, scopeStack, parent);
-        ParseTreeWalker.DEFAULT.walk(parser, context.expr());
+        PruningParseTreeWalker.INSTANCE.walk(parser, context.expr());
         return Pair.of(Identifier.parse(context.ident()), parser.expression);
     }
 
@@ -141,6 +140,11 @@ public final class ExpressionParser extends ParseAdapter {
         this.expression = expression;
     }
 
+    @Override
+    public boolean shouldSkipChildren() {
+        return super.shouldSkipChildren() || isAtEnd; // Nested parsers already consumed the subtree
+    }
+
     private StringConstant parseStringConstant(final ParserRuleContext context) {
         return new StringConstant("", TokenSlice.from(compileContext, context));
     }
@@ -302,12 +306,12 @@ public final class ExpressionParser extends ParseAdapter {
             return null;
         }
         final var genericListOpt = children.stream().filter(GenericListContext.class::isInstance).findFirst();
-        if (genericListOpt.isPresent()) {
-            // TODO: parse generic list
-        }
+        final var genericTypes = genericListOpt.map(tree -> parseGenericTypes((GenericListContext) tree))
+            .orElse(Collections.emptyList());
         final var args = parse(compileContext, capturedScopeStack, argsContext, parent);
         final var function = switch (refExpr.getReference()) {
             case UnresolvedFunctionReference unresolvedRef -> {
+                unresolvedRef.setGenericTypes(genericTypes);
                 unresolvedRef.setContextualParamTypes(args.stream().map(e -> e.getType(compileContext.getCompiler().getTargetMachine())).toList());
                 yield unresolvedRef.get();
             }
@@ -323,6 +327,19 @@ public final class ExpressionParser extends ParseAdapter {
             args.toArray(Expression[]::new));
     }
 
+    private List<Type> parseGenericTypes(final GenericListContext context) {
+        final var typeListContext = context.getRuleContext(TypeListContext.class, 0);
+        if (typeListContext != null) {
+            return Types.parse(compileContext, capturedScopeStack, typeListContext);
+        }
+        // @formatter:off
+        return context.getRuleContexts(TypeContext.class).stream()
+            .map(typeContext -> Types.parse(compileContext, capturedScopeStack, typeContext))
+            .filter(Objects::nonNull)
+            .toList();
+        // @formatter:on
+    }
+
     private @Nullable CallExpression parseNamedArgCallExpr(final List<ParseTree> children) {
         final var genericListOpt = children.stream().filter(GenericListContext.class::isInstance).findFirst();
         if (genericListOpt.isPresent()) {
@@ -389,7 +406,15 @@ public final class ExpressionParser extends ParseAdapter {
             compileContext.reportError(context.start, CompileErrorCode.E4007);
             return null;
         }
-        final FunctionResolver resolver = paramTypes -> moduleData.findFunction(name, scopeName, paramTypes);
+        if (parent instanceof Function function) {
+            moduleData.addFunctionReference(function, name, scopeName); // Makes the callee reachable in lazy mode
+        }
+        final var monomorphizationCache = compileContext.getCompiler().getMonomorphizationCache();
+        // @formatter:off
+        final FunctionResolver resolver = (genericTypes, paramTypes) -> genericTypes.isEmpty()
+            ? moduleData.findFunction(name, scopeName, paramTypes)
+            : moduleData.findFunction(name, scopeName, genericTypes, paramTypes, monomorphizationCache);
+        // @formatter:on
         return new ReferenceExpression(new UnresolvedFunctionReference(resolver),
             false,
             TokenSlice.from(compileContext, context));
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.parser;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A hand-written, table-driven lexer which produces the same tokens as a generated lexer.
+ * The input is split into maximal runs of identifier, whitespace and punctuation characters.
+ * Every distinct run, together with the character following it, is lexed once by the
+ * generated lexer and the resulting token shape is cached. Runs with a cached shape are
+ * emitted straight from the table, everything else, like numeric literals, strings and
+ * all input outside of the default mode, is delegated to the generated lexer.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class FastLexer implements TokenSource {
+    private static final int CLASS_OTHER = 0;
+    private static final int CLASS_IDENT = 1;
+    private static final int CLASS_WHITESPACE = 2;
+    private static final int CLASS_PUNCTUATION = 3;
+    private static final byte[] CHAR_CLASSES = new byte[128];
+
+    static {
+        for (var c = 0x21; c < 0x7F; c++) {
+            CHAR_CLASSES[c] = CLASS_PUNCTUATION;
+        }
+        for (var c = 'a'; c <= 'z'; c++) {
+            CHAR_CLASSES[c] = CLASS_IDENT;
+        }
+        for (var c = 'A'; c <= 'Z'; c++) {
+            CHAR_CLASSES[c] = CLASS_IDENT;
+        }
+        for (var c = '0'; c <= '9'; c++) {
+            CHAR_CLASSES[c] = CLASS_IDENT;
+        }
+        CHAR_CLASSES['_'] = CLASS_IDENT;
+        CHAR_CLASSES[' '] = CLASS_WHITESPACE;
+        CHAR_CLASSES['\t'] = CLASS_WHITESPACE;
+        CHAR_CLASSES['\r'] = CLASS_WHITESPACE;
+        CHAR_CLASSES['\n'] = CLASS_WHITESPACE;
+        // Quotes and escapes start or continue literals which span multiple runs
+        CHAR_CLASSES['"'] = CLASS_OTHER;
+        CHAR_CLASSES['\''] = CLASS_OTHER;
+        CHAR_CLASSES['`'] = CLASS_OTHER;
+        CHAR_CLASSES['\\'] = CLASS_OTHER;
+    }
+
+    private final CharStream input;
+    private final Lexer delegate;
+    private final ShapeCache shapeCache;
+    private TokenFactory<?> tokenFactory = CommonTokenFactory.DEFAULT;
+    private int line = 1;
+    private int column;
+    private @Nullable Shape pendingShape;
+    private String pendingText;
+    private int pendingStart;
+    private int pendingIndex;
+    private int pendingCursor;
+    private int numFastTokens;
+    private int numDelegatedTokens;
+
+    /**
+     * @param input      The input to lex.
+     * @param delegate   The generated lexer operating on the same input,
+     *                   used for everything which cannot be lexed from the table.
+     * @param shapeCache The token shapes shared between all lexers of the same grammar.
+     */
+    public FastLexer(final CharStream input, final Lexer delegate, final ShapeCache shapeCache) {
+        this.input = input;
+        this.delegate = delegate;
+        this.shapeCache = shapeCache;
+    }
+
+    private static int getCharClass(final int c) {
+        return c >= 0 && c < CHAR_CLASSES.length ? CHAR_CLASSES[c] : CLASS_OTHER;
+    }
+
+    private boolean isInDefaultMode() {
+        return delegate._mode == Lexer.DEFAULT_MODE && delegate._modeStack.isEmpty();
+    }
+
+    @Override
+    public Token nextToken() {
+        while (true) {
+            if (pendingShape != null) {
+                return emitPending();
+            }
+            if (!isInDefaultMode()) {
+                return delegateToken();
+            }
+            final var first = input.LA(1);
+            final var charClass = getCharClass(first);
+            // Runs starting with a digit are numeric literals, which may span multiple runs
+            if (charClass == CLASS_OTHER || (first >= '0' && first <= '9')) {
+                return delegateToken();
+            }
+            var length = 1;
+            while (getCharClass(input.LA(length + 1)) == charClass) {
+                length++;
+            }
+            final var next = input.LA(length + 1);
+            if (next >= CHAR_CLASSES.length) {
+                return delegateToken();
+            }
+            final var start = input.index();
+            final var text = input.getText(Interval.of(start, start + length - 1));
+            final var shape = shapeCache.get(text, next);
+            if (shape == null) {
+                return delegateToken();
+            }
+            pendingShape = shape;
+            pendingText = text;
+            pendingStart = start;
+            pendingIndex = 0;
+            pendingCursor = 0;
+        }
+    }
+
+    private void advance(final int offset) {
+        for (; pendingCursor < offset; pendingCursor++) {
+            if (pendingText.charAt(pendingCursor) == '\n') {
+                line++;
+                column = 0;
+                continue;
+            }
+            column++;
+        }
+    }
+
+    private Token emitPending() {
+        final var shape = pendingShape;
+        if (pendingIndex == shape.types.length) {
+            // The whole run has been emitted, continue after it
+            advance(pendingText.length());
+            input.seek(pendingStart + pendingText.length());
+            pendingShape = null;
+            pendingText = null;
+            return nextToken();
+        }
+        final var index = pendingIndex++;
+        advance(shape.startOffsets[index]);
+        final var token = tokenFactory.create(new Pair<>(this, input),
+            shape.types[index],
+            null,
+            shape.channels[index],
+            pendingStart + shape.startOffsets[index],
+            pendingStart + shape.stopOffsets[index],
+            line,
+            column);
+        numFastTokens++;
+        return token;
+    }
+
+    private Token delegateToken() {
+        delegate.setLine(line);
+        delegate.setCharPositionInLine(column);
+        final var token = delegate.nextToken();
+        line = delegate.getLine();
+        column = delegate.getCharPositionInLine();
+        numDelegatedTokens++;
+        return token;
+    }
+
+    public int getNumFastTokens() {
+        return numFastTokens;
+    }
+
+    public int getNumDelegatedTokens() {
+        return numDelegatedTokens;
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+        return column;
+    }
+
+    @Override
+    public CharStream getInputStream() {
+        return input;
+    }
+
+    @Override
+    public String getSourceName() {
+        return input.getSourceName();
+    }
+
+    @Override
+    public void setTokenFactory(final TokenFactory<?> factory) {
+        tokenFactory = factory;
+    }
+
+    @Override
+    public TokenFactory<?> getTokenFactory() {
+        return tokenFactory;
+    }
+
+    /**
+     * Caches the tokens the generated lexer produces for every distinct run.
+     * A run is only cached if lexing it in isolation cannot differ from lexing it in context:
+     * no token may extend past the run into the following character, no errors may occur
+     * and the lexer has to end up in the default mode again.
+     */
+    public static final class ShapeCache {
+        private static final int MAX_SHAPES = 1 << 16;
+        private static final Shape REJECTED = new Shape(new int[0], new int[0], new int[0], new int[0]);
+        private final ConcurrentHashMap<String, Shape> shapes = new ConcurrentHashMap<>();
+        private final Function<CharStream, ? extends Lexer> lexerFactory;
+
+        public ShapeCache(final Function<CharStream, ? extends Lexer> lexerFactory) {
+            this.lexerFactory = lexerFactory;
+        }
+
+        private @Nullable Shape get(final String text, final int next) {
+            // The run is maximal, so the following character never belongs to it and keys are unique
+            final var key = next == IntStream.EOF ? text : text + (char) next;
+            var shape = shapes.get(key);
+            if (shape == null) {
+                if (shapes.size() >= MAX_SHAPES) {
+                    return null;
+                }
+                shape = probe(key, text.length());
+                shapes.putIfAbsent(key, shape);
+            }
+            return shape == REJECTED ? null : shape;
+        }
+
+        private Shape probe(final String text, final int length) {
+            final var lexer = lexerFactory.apply(CharStreams.fromString(text));
+            final var hasErrors = new boolean[1];
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(new BaseErrorListener() {
+                @Override
+                public void syntaxError(final Recognizer<?, ?> recognizer, final Object offendingSymbol,
+                                        final int line, final int charPositionInLine, final String msg,
+                                        final RecognitionException e) {
+                    hasErrors[0] = true;
+                }
+            });
+            final var types = new int[length];
+            final var channels = new int[length];
+            final var startOffsets = new int[length];
+            final var stopOffsets = new int[length];
+            var count = 0;
+            var isInDefaultMode = true;
+            try {
+                while (true) {
+                    final var token = lexer.nextToken();
+                    if (token.getType() == Token.EOF || token.getStartIndex() >= length) {
+                        break;
+                    }
+                    if (token.getStopIndex() >= length) {
+                        return REJECTED; // The token depends on what follows the run
+                    }
+                    types[count] = token.getType();
+                    channels[count] = token.getChannel();
+                    startOffsets[count] = token.getStartIndex();
+                    stopOffsets[count] = token.getStopIndex();
+                    count++;
+                    isInDefaultMode = lexer._mode == Lexer.DEFAULT_MODE && lexer._modeStack.isEmpty();
+                }
+            }
+            catch (RuntimeException error) {
+                return REJECTED;
+            }
+            if (hasErrors[0] || !isInDefaultMode || count == 0) {
+                return REJECTED;
+            }
+            // @formatter:off
+            return new Shape(Arrays.copyOf(types, count),
+                Arrays.copyOf(channels, count),
+                Arrays.copyOf(startOffsets, count),
+                Arrays.copyOf(stopOffsets, count));
+            // @formatter:on
+        }
+
+        public int size() {
+            return shapes.size();
+        }
+    }
+
+    private record Shape(int[] types, int[] channels, int[] startOffsets, int[] stopOffsets) {
+    }
+}
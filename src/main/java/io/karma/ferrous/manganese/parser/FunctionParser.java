@@ -22,7 +22,6 @@ import io.karma.ferrous.manganese.ocm.statement.ReturnStatement;
 import io.karma.ferrous.manganese.ocm.type.VoidType;
 import io.karma.ferrous.manganese.util.TokenSlice;
 import io.karma.ferrous.vanadium.FerrousParser.FunctionBodyContext;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.apiguardian.api.API;
 import org.apiguardian.api.API.Status;
 
@@ -48,7 +47,7 @@ public final class FunctionParser extends ParseAdapter {
         final var scopeStack = function.rebuildScopeStack(); // Reconstruct scope stack from prototype
         final var type = function.getType();
         final var parser = new StatementParser(compileContext, type.getReturnType(), scopeStack, function);
-        ParseTreeWalker.DEFAULT.walk(parser, context);
+        PruningParseTreeWalker.INSTANCE.walk(parser, context);
         final var statements = parser.getStatements();
         function.createBody(statements);
         for (final var statement : statements) {
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.parser;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Forwards the events of a single parse tree traversal to any number of listeners.
+ * Enter events are dispatched in subscription order and exit events in reverse
+ * subscription order, so the events of every listener are properly nested within
+ * the events of all listeners subscribed before it.
+ *
+ * @author Alexander Hinze
+ * @since 28/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class MultiplexedParseListener implements ParseTreeListener {
+    private final ArrayList<ParseTreeListener> listeners = new ArrayList<>();
+
+    public void subscribe(final ParseTreeListener listener) {
+        listeners.add(listener);
+    }
+
+    public List<ParseTreeListener> getListeners() {
+        return Collections.unmodifiableList(listeners);
+    }
+
+    @Override
+    public void visitTerminal(final TerminalNode node) {
+        for (final var listener : listeners) {
+            listener.visitTerminal(node);
+        }
+    }
+
+    @Override
+    public void visitErrorNode(final ErrorNode node) {
+        for (final var listener : listeners) {
+            listener.visitErrorNode(node);
+        }
+    }
+
+    @Override
+    public void enterEveryRule(final ParserRuleContext context) {
+        for (final var listener : listeners) {
+            listener.enterEveryRule(context);
+            context.enterRule(listener);
+        }
+    }
+
+    @Override
+    public void exitEveryRule(final ParserRuleContext context) {
+        for (var i = listeners.size() - 1; i >= 0; --i) {
+            final var listener = listeners.get(i);
+            context.exitRule(listener);
+            listener.exitEveryRule(context);
+        }
+    }
+}
@@ -44,6 +44,7 @@ public abstract class ParseAdapter implements FerrousParserListener {
     protected final CompileContext compileContext;
     protected ScopeStack scopeStack = new ScopeStack();
     protected Scope lastScope;
+    private boolean isSkippingChildren;
 
     protected ParseAdapter(final CompileContext compileContext) {
         this.compileContext = compileContext;
@@ -70,7 +71,26 @@ public abstract class ParseAdapter implements FerrousParserListener {
         return lastScope = scopeStack.pop();
     }
 
+    /**
+     * Prevents the {@link PruningParseTreeWalker} from descending into
+     * the children of the rule which is currently being entered.
+     */
+    protected void skipChildren() {
+        isSkippingChildren = true;
+    }
+
+    @API(status = Status.INTERNAL)
+    public boolean shouldSkipChildren() {
+        final var result = isSkippingChildren;
+        isSkippingChildren = false;
+        return result;
+    }
+
     protected @Nullable Function getFunction(final ProtoFunctionContext context) {
+        return getFunction(context, scopeStack);
+    }
+
+    protected @Nullable Function getFunction(final ProtoFunctionContext context, final ScopeStack scopeStack) {
         final var name = FunctionUtils.parseFunctionName(context.functionIdent());
         final var scopeName = scopeStack.getScopeName();
         final var type = FunctionUtils.parseFunctionType(compileContext, scopeStack, context);
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.karma.ferrous.manganese.parser;
+
+import org.antlr.v4.runtime.tree.*;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+/**
+ * A {@link ParseTreeWalker} which does not descend into the children of a rule
+ * once a {@link ParseAdapter} reports that it already consumed them.
+ * Nested parsers use this so every node of an expression is only visited once.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class PruningParseTreeWalker extends ParseTreeWalker {
+    public static final PruningParseTreeWalker INSTANCE = new PruningParseTreeWalker();
+
+    // @formatter:off
+    private PruningParseTreeWalker() {}
+    // @formatter:on
+
+    @Override
+    public void walk(final ParseTreeListener listener, final ParseTree tree) {
+        if (tree instanceof ErrorNode errorNode) {
+            listener.visitErrorNode(errorNode);
+            return;
+        }
+        if (tree instanceof TerminalNode terminalNode) {
+            listener.visitTerminal(terminalNode);
+            return;
+        }
+        final var ruleNode = (RuleNode) tree;
+        enterRule(listener, ruleNode);
+        if (!(listener instanceof ParseAdapter adapter) || !adapter.shouldSkipChildren()) {
+            final var numChildren = ruleNode.getChildCount();
+            for (var i = 0; i < numChildren; i++) {
+                walk(listener, ruleNode.getChild(i));
+            }
+        }
+        exitRule(listener, ruleNode);
+    }
+}
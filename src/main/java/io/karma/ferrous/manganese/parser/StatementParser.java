@@ -29,7 +29,6 @@ import io.karma.ferrous.manganese.util.KitchenSink;
 import io.karma.ferrous.manganese.util.TokenSlice;
 import io.karma.ferrous.vanadium.FerrousParser.*;
 import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.apiguardian.api.API;
 import org.jetbrains.annotations.Nullable;
 
@@ -58,7 +57,7 @@ public final class StatementParser extends ParseAdapter {
 
     private void addStatement(final Statement statement) {
         if (parent instanceof Function function && statement instanceof LetStatement let) {
-            compileContext.getOrCreateModuleData().getLocalsFor(function).put(let.getQualifiedName(), let);
+            compileContext.getOrCreateModuleData().addLocal(function, let);
         }
         statements.add(statement);
     }
@@ -71,7 +70,7 @@ public final class StatementParser extends ParseAdapter {
         }
 
         final var parser = new StatementParser(compileContext, expectedReturnType, scopeStack, parent);
-        ParseTreeWalker.DEFAULT.walk(parser, context);
+        PruningParseTreeWalker.INSTANCE.walk(parser, context);
         return parser.statements;
     }
 
@@ -79,12 +78,14 @@ public final class StatementParser extends ParseAdapter {
     public void enterStatement(final StatementContext context) {
         // Unreachable statements
         if (context.KW_UNREACHABLE() != null) {
+            skipChildren();
             addStatement(new UnreachableStatement(TokenSlice.from(compileContext, context)));
             return;
         }
         // Account for expressions-as-statements
         final var exprContext = context.expr();
         if (exprContext != null) {
+            skipChildren(); // Statements nested in the expression belong to the expression itself
             final var expr = ExpressionParser.parse(compileContext, capturedScopeStack, exprContext, parent);
             if (expr == null) {
                 compileContext.reportError(exprContext.start, CompileErrorCode.E2001);
@@ -114,6 +115,7 @@ public final class StatementParser extends ParseAdapter {
 
     @Override
     public void enterPanicStatement(final PanicStatementContext context) {
+        skipChildren();
         final var literalContext = context.stringLiteral();
         if (literalContext == null) {
             return;
@@ -135,6 +137,7 @@ public final class StatementParser extends ParseAdapter {
 
     @Override
     public void enterLetStatement(final LetStatementContext context) {
+        skipChildren();
         final var name = Identifier.parse(context.ident());
         final var typeContext = context.type();
         final var exprContext = context.expr();
@@ -183,6 +186,7 @@ public final class StatementParser extends ParseAdapter {
 
     @Override
     public void enterReturnStatement(final ReturnStatementContext context) {
+        skipChildren();
         final var exprContext = context.expr();
         if (exprContext != null) {
             final var expr = ExpressionParser.parse(compileContext, capturedScopeStack, exprContext, parent);
@@ -63,6 +63,11 @@ public final class TypeParser extends ParseAdapter {
         final var identContext = context.IDENT();
         if (identContext != null) {
             final var name = Identifier.parse(identContext.getText());
+            // Generic parameters shadow any type of the same name while an instantiation is parsed
+            type = compileContext.getGenericBindings().get(name);
+            if (type != null) {
+                return;
+            }
             type = moduleData.findCompleteType(name, capturedScopeStack.getScopeName());
             if (type == null) {
                 type = Types.incomplete(name,
@@ -82,6 +87,7 @@ public final class TypeParser extends ParseAdapter {
         if (typeContext == null) {
             return;
         }
+        skipChildren();
         final var type = Types.parse(compileContext, capturedScopeStack, typeContext);
         if (type == null) {
             compileContext.reportError(context.start, CompileErrorCode.E3002);
@@ -173,6 +179,11 @@ public final class TypeParser extends ParseAdapter {
         }
     }
 
+    @Override
+    public boolean shouldSkipChildren() {
+        return super.shouldSkipChildren() || type != null;
+    }
+
     public @Nullable Type getType() {
         return type;
     }
@@ -29,18 +29,20 @@ import java.util.Optional;
 @API(status = Status.STABLE)
 public enum OptimizationLevel {
     // @formatter:off
-    NONE        ("none",        LLVMTargetMachine.LLVMCodeGenLevelNone),
-    LESS        ("less",        LLVMTargetMachine.LLVMCodeGenLevelLess),
-    DEFAULT     ("default",     LLVMTargetMachine.LLVMCodeGenLevelDefault),
-    AGGRESSIVE  ("aggressive",  LLVMTargetMachine.LLVMCodeGenLevelAggressive);
+    NONE        ("none",        LLVMTargetMachine.LLVMCodeGenLevelNone,         "default<O0>"),
+    LESS        ("less",        LLVMTargetMachine.LLVMCodeGenLevelLess,         "default<O1>"),
+    DEFAULT     ("default",     LLVMTargetMachine.LLVMCodeGenLevelDefault,      "default<O2>"),
+    AGGRESSIVE  ("aggressive",  LLVMTargetMachine.LLVMCodeGenLevelAggressive,   "default<O3>");
     // @formatter:on
 
     private final String name;
     private final int llvmValue;
+    private final String pipeline;
 
-    OptimizationLevel(final String name, final int llvmValue) {
+    OptimizationLevel(final String name, final int llvmValue, final String pipeline) {
         this.name = name;
         this.llvmValue = llvmValue;
+        this.pipeline = pipeline;
     }
 
     public static Optional<OptimizationLevel> byName(final String name) {
@@ -55,6 +57,13 @@ public enum OptimizationLevel {
         return llvmValue;
     }
 
+    /**
+     * @return The standard IR optimization pipeline of the new pass manager for this level.
+     */
+    public String getPipeline() {
+        return pipeline;
+    }
+
     @Override
     public String toString() {
         return name;
@@ -38,6 +38,7 @@ public final class TargetMachine {
     private final OptimizationLevel level;
     private final Relocation relocation;
     private final CodeModel codeModel;
+    private final String cpu;
     private final long address;
     private final long dataAddress;
     private boolean isDisposed = false;
@@ -50,6 +51,7 @@ public final class TargetMachine {
         this.level = level;
         this.relocation = reloc;
         this.codeModel = model;
+        this.cpu = cpu;
 
         address = LLVMCreateTargetMachine(target.getAddress(),
             target.toString(),
@@ -70,6 +72,16 @@ public final class TargetMachine {
         Logger.INSTANCE.debugln(STR."Allocated target machine data at \{String.format("0x%08X", dataAddress)}");
     }
 
+    /**
+     * LLVM target machines may not be used for code generation on multiple threads
+     * at once, so every concurrent code generator requires its own copy.
+     *
+     * @return A new target machine with the same configuration as this one.
+     */
+    public TargetMachine copy() {
+        return new TargetMachine(target, features, level, relocation, codeModel, cpu);
+    }
+
     public Module loadEmbeddedModule(final String name, final long context) throws IOException {
         final var module = Module.loadEmbedded(context, name);
         module.setDataLayout(getDataLayout());
@@ -99,15 +111,15 @@ public final class TargetMachine {
         return LLVMPointerSize(dataAddress);
     }
 
-    public int getTypeSize(final long type) {
+    public synchronized int getTypeSize(final long type) {
         return (int) LLVMABISizeOfType(dataAddress, type);
     }
 
-    public int getTypeAlignment(final long type) {
+    public synchronized int getTypeAlignment(final long type) {
         return LLVMPreferredAlignmentOfType(dataAddress, type);
     }
 
-    public int getGlobalAlignment(final long global) {
+    public synchronized int getGlobalAlignment(final long global) {
         return LLVMPreferredAlignmentOfGlobal(dataAddress, global);
     }
 
@@ -135,6 +147,10 @@ public final class TargetMachine {
         return codeModel;
     }
 
+    public String getCpu() {
+        return cpu;
+    }
+
     public long getAddress() {
         return address;
     }
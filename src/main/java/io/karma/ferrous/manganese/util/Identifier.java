@@ -30,9 +30,38 @@ import java.util.Objects;
  * @since 15/10/2023
  */
 @API(status = Status.INTERNAL)
-public record Identifier(String... components) {
-    public static final Identifier EMPTY = new Identifier("");
+public final class Identifier {
     public static final String DELIMITER = TokenUtils.getLiteral(FerrousLexer.DOUBLE_COLON);
+    private static final WeakInterner<Identifier> INTERNER = new WeakInterner<>();
+    public static final Identifier EMPTY = new Identifier("").intern();
+
+    private final String[] components;
+    private final int hash;
+    private final boolean isNormalized;
+
+    public Identifier(final String... components) {
+        this.components = components;
+        hash = Arrays.hashCode(components);
+        isNormalized = isNormalized(components);
+    }
+
+    /**
+     * @return True if no component is empty or could merge with an adjacent delimiter,
+     * so the identifier round trips through its string representation.
+     */
+    private static boolean isNormalized(final String[] components) {
+        final var first = DELIMITER.charAt(0);
+        final var last = DELIMITER.charAt(DELIMITER.length() - 1);
+        for (final var component : components) {
+            if (component.isEmpty() || component.contains(DELIMITER)) {
+                return false;
+            }
+            if (component.charAt(0) == last || component.charAt(component.length() - 1) == first) {
+                return false;
+            }
+        }
+        return true;
+    }
 
     public static Identifier format(final String fmt, final Object... params) {
         return new Identifier(String.format(fmt, params));
@@ -53,10 +82,16 @@ public record Identifier(String... components) {
     }
 
     public static Identifier parse(final String value) {
-        if (!value.contains(DELIMITER)) {
-            return new Identifier(value);
-        }
-        return new Identifier(value.split(DELIMITER));
+        return parse(value, true);
+    }
+
+    private static Identifier parse(final String value, final boolean intern) {
+        // @formatter:off
+        final var result = value.contains(DELIMITER)
+            ? new Identifier(value.split(DELIMITER))
+            : new Identifier(value);
+        // @formatter:on
+        return intern ? result.intern() : result;
     }
 
     public static Identifier parse(final ParserRuleContext context) {
@@ -68,6 +103,22 @@ public record Identifier(String... components) {
         return parse(buffer.toString());
     }
 
+    /**
+     * @return The canonical instance of this identifier, shared by all identifiers with the same components
+     * for as long as any of them is referenced.
+     */
+    public Identifier intern() {
+        return INTERNER.intern(this);
+    }
+
+    public static int getNumInterned() {
+        return INTERNER.size();
+    }
+
+    public String[] components() {
+        return components;
+    }
+
     public Identifier[] split(final String delimiter) {
         final var result = new ArrayList<Identifier>();
         for (final var comp : components) {
@@ -84,14 +135,30 @@ public record Identifier(String... components) {
     }
 
     public Identifier join(final Identifier other) {
-        if (isBlank()) {
+        return join(components.length, other);
+    }
+
+    /**
+     * Joins the first {@code numComponents} components of this identifier with the given identifier.
+     * The result is not interned, since scope lookups join a candidate for every enclosing scope.
+     */
+    public Identifier join(final int numComponents, final Identifier other) {
+        if (numComponents == 0 || (numComponents == 1 && components[0].isBlank())) {
             return other;
         }
-        return parse(STR."\{this}\{DELIMITER}\{other}");
+        if (!isNormalized || !other.isNormalized) {
+            // Empty components and embedded delimiters have to be resolved by parsing
+            final var prefix = String.join(DELIMITER, Arrays.copyOf(components, numComponents));
+            return parse(STR."\{prefix}\{DELIMITER}\{other}", false);
+        }
+        final var otherComponents = other.components;
+        final var joined = Arrays.copyOf(components, numComponents + otherComponents.length);
+        System.arraycopy(otherComponents, 0, joined, numComponents, otherComponents.length);
+        return new Identifier(joined);
     }
 
     public boolean isBlank() {
-        return toString().isBlank();
+        return components.length == 0 || (components.length == 1 && components[0].isBlank());
     }
 
     public boolean isQualified() {
@@ -104,13 +171,16 @@ public record Identifier(String... components) {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(components);
+        return hash;
     }
 
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (obj instanceof Identifier ident) {
-            return Arrays.equals(components, ident.components);
+            return hash == ident.hash && Arrays.equals(components, ident.components);
         }
         return false;
     }
@@ -15,7 +15,6 @@
 
 package io.karma.ferrous.manganese.util;
 
-import io.karma.kommons.io.SimpleFileVisitor;
 import io.karma.kommons.util.ArrayUtils;
 import io.karma.kommons.util.SystemInfo;
 import it.unimi.dsi.fastutil.chars.CharPredicate;
@@ -26,12 +25,16 @@ import org.fusesource.jansi.Ansi.Attribute;
 import org.fusesource.jansi.Ansi.Color;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.function.IntFunction;
 
 /**
@@ -162,25 +165,52 @@ public final class KitchenSink {
     }
 
     public static List<Path> findFilesWithExtensions(final Path path, final String... extensions) {
+        return findFilesWithExtensions(path,
+            (file, error) -> Logger.INSTANCE.warnln(STR."Could not visit \{file}: \{error}"),
+            extensions);
+    }
+
+    public static List<Path> findFilesWithExtensions(final Path path,
+                                                     final BiConsumer<Path, IOException> errorHandler,
+                                                     final String... extensions) {
         final var files = new ArrayList<Path>();
         if (!Files.isDirectory(path)) {
             files.add(path);
             return files;
         }
         try {
-            Files.walkFileTree(path, new SimpleFileVisitor<>(filePath -> {
-                final var fileName = filePath.getFileName().toString();
-                for (final var ext : extensions) {
-                    if (!fileName.endsWith(STR.".\{ext}")) {
-                        continue;
+            Files.walkFileTree(path, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(final Path filePath, final BasicFileAttributes attributes) {
+                    final var fileName = filePath.getFileName().toString();
+                    for (final var ext : extensions) {
+                        if (!fileName.endsWith(STR.".\{ext}")) {
+                            continue;
+                        }
+                        files.add(filePath);
+                        break;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path filePath, final IOException error) {
+                    errorHandler.accept(filePath, error);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(final Path directory, final @Nullable IOException error) {
+                    if (error != null) {
+                        errorHandler.accept(directory, error);
                     }
-                    files.add(filePath);
-                    break;
+                    return FileVisitResult.CONTINUE;
                 }
-                return FileVisitResult.CONTINUE;
-            }));
+            });
+        }
+        catch (IOException error) {
+            errorHandler.accept(path, error);
         }
-        catch (Exception error) { /* swallow exception */ }
         return files;
     }
 
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.util;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link CharStream} which reads UTF-8 encoded source files straight
+ * from a memory mapping instead of decoding them into a code point array.
+ * Code points are addressed through a checkpoint every {@link #BLOCK_SIZE} code points,
+ * blocks which only contain ASCII are addressed directly, all other blocks
+ * are decoded lazily when they are accessed.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class MappedCharStream implements CharStream {
+    private static final int BLOCK_SHIFT = 10;
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int REPLACEMENT_CHAR = 0xFFFD;
+
+    private final ByteBuffer buffer;
+    private final String sourceName;
+    private final int[] checkpoints;
+    private final BitSet asciiBlocks;
+    private final int size;
+    private int position;
+    // Cursor of the last decoded code point, sequential access only ever steps forward by one.
+    // Only the lexing thread may use it, text is read concurrently by parser threads
+    private int cursorIndex;
+    private int cursorOffset;
+
+    private MappedCharStream(final ByteBuffer buffer, final String sourceName) {
+        this.buffer = buffer;
+        this.sourceName = sourceName;
+        final var limit = buffer.limit();
+        final var checkpoints = new int[(limit >> BLOCK_SHIFT) + 1];
+        asciiBlocks = new BitSet(checkpoints.length);
+        var count = 0;
+        var isAscii = true;
+        var offset = 0;
+        // Only count code points here, so ASCII sources never decode anything
+        while (offset < limit) {
+            if ((count & (BLOCK_SIZE - 1)) == 0) {
+                final var block = count >> BLOCK_SHIFT;
+                if (block > 0 && isAscii) {
+                    asciiBlocks.set(block - 1);
+                }
+                checkpoints[block] = offset;
+                isAscii = true;
+            }
+            final var value = buffer.get(offset);
+            if (value < 0) {
+                isAscii = false;
+            }
+            offset += getSequenceLength(value, offset, limit);
+            count++;
+        }
+        if (isAscii && count > 0) {
+            asciiBlocks.set((count - 1) >> BLOCK_SHIFT);
+        }
+        this.checkpoints = checkpoints;
+        size = count;
+    }
+
+    public static MappedCharStream open(final Path path) throws IOException {
+        try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            final var startTime = System.nanoTime();
+            final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final var stream = new MappedCharStream(buffer, path.toString());
+            final var time = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+            Logger.INSTANCE.debugln(STR."Mapped \{path} (\{stream.size} code points, ASCII: \{stream.isAscii()}) in \{time}us");
+            return stream;
+        }
+    }
+
+    public static MappedCharStream wrap(final ByteBuffer buffer, final String sourceName) {
+        return new MappedCharStream(buffer.slice(), sourceName);
+    }
+
+    private int getSequenceLength(final byte lead, final int offset, final int limit) {
+        final int length;
+        if (lead >= 0) {
+            return 1;
+        }
+        else if ((lead & 0xE0) == 0xC0) {
+            length = 2;
+        }
+        else if ((lead & 0xF0) == 0xE0) {
+            length = 3;
+        }
+        else if ((lead & 0xF8) == 0xF0) {
+            length = 4;
+        }
+        else {
+            return 1; // Stray continuation or invalid lead byte, decoded as a replacement character
+        }
+        // Truncated sequences only consume the bytes which are actually continuation bytes
+        for (var i = 1; i < length; i++) {
+            if (offset + i >= limit || (buffer.get(offset + i) & 0xC0) != 0x80) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private int getOffset(final int index, final int startIndex, final int startOffset) {
+        var currentIndex = startIndex;
+        var offset = startOffset;
+        final var limit = buffer.limit();
+        while (currentIndex < index) {
+            offset += getSequenceLength(buffer.get(offset), offset, limit);
+            currentIndex++;
+        }
+        return offset;
+    }
+
+    /**
+     * Only depends on immutable state, so it may be called from any thread.
+     */
+    private int getOffset(final int index) {
+        if (index >= size) {
+            return buffer.limit();
+        }
+        final var block = index >> BLOCK_SHIFT;
+        if (asciiBlocks.get(block)) {
+            return checkpoints[block] + (index & (BLOCK_SIZE - 1));
+        }
+        return getOffset(index, block << BLOCK_SHIFT, checkpoints[block]);
+    }
+
+    private int getCursorOffset(final int index) {
+        if (index >= size) {
+            return buffer.limit();
+        }
+        final var block = index >> BLOCK_SHIFT;
+        if (asciiBlocks.get(block)) {
+            return checkpoints[block] + (index & (BLOCK_SIZE - 1));
+        }
+        final var blockStart = block << BLOCK_SHIFT;
+        final int offset;
+        if (cursorIndex >= blockStart && cursorIndex <= index) {
+            offset = getOffset(index, cursorIndex, cursorOffset);
+        }
+        else {
+            offset = getOffset(index, blockStart, checkpoints[block]);
+        }
+        cursorIndex = index;
+        cursorOffset = offset;
+        return offset;
+    }
+
+    private int getCodePoint(final int index) {
+        final var offset = getCursorOffset(index);
+        final var lead = buffer.get(offset);
+        if (lead >= 0) {
+            return lead;
+        }
+        final var length = getSequenceLength(lead, offset, buffer.limit());
+        final int value = switch (length) {
+            case 2 -> lead & 0x1F;
+            case 3 -> lead & 0x0F;
+            case 4 -> lead & 0x07;
+            default -> -1;
+        };
+        if (value == -1 || (length == 2 && (lead & 0xE0) != 0xC0) || (length == 3 && (lead & 0xF0) != 0xE0)) {
+            return REPLACEMENT_CHAR; // Invalid or truncated sequence
+        }
+        var codePoint = value;
+        for (var i = 1; i < length; i++) {
+            codePoint = (codePoint << 6) | (buffer.get(offset + i) & 0x3F);
+        }
+        return codePoint;
+    }
+
+    public boolean isAscii() {
+        return asciiBlocks.cardinality() == (size + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+    }
+
+    @Override
+    public String getText(final Interval interval) {
+        final var start = Math.min(interval.a, size);
+        final var end = Math.min(interval.b + 1, size);
+        if (end <= start) {
+            return "";
+        }
+        final var startOffset = getOffset(start);
+        final var endOffset = getOffset(end);
+        final var bytes = new byte[endOffset - startOffset];
+        buffer.get(startOffset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void consume() {
+        if (position >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        position++;
+    }
+
+    @Override
+    public int LA(final int i) {
+        if (i == 0) {
+            return 0; // Undefined
+        }
+        final var index = i < 0 ? position + i : position + i - 1;
+        if (index < 0 || index >= size) {
+            return IntStream.EOF;
+        }
+        return getCodePoint(index);
+    }
+
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(final int marker) {
+    }
+
+    @Override
+    public int index() {
+        return position;
+    }
+
+    @Override
+    public void seek(final int index) {
+        position = index;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName.isEmpty() ? IntStream.UNKNOWN_SOURCE_NAME : sourceName;
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, size - 1));
+    }
+}
@@ -15,7 +15,6 @@
 
 package io.karma.ferrous.manganese.util;
 
-import io.karma.kommons.util.ArrayUtils;
 import org.apiguardian.api.API;
 import org.apiguardian.api.API.Status;
 import org.jetbrains.annotations.Nullable;
@@ -36,11 +35,9 @@ public final class ScopeUtils {
                                               final Identifier scopeName) {
         T element = map.get(name);
         if (element == null) {
-            final var components = scopeName.components();
-            final var numComponents = components.length;
+            final var numComponents = scopeName.components().length;
             for (var i = numComponents; i > 0; i--) {
-                final var subComponents = ArrayUtils.slice(components, 0, i, String[]::new);
-                element = map.get(new Identifier(subComponents).join(name));
+                element = map.get(scopeName.join(i, name));
                 if (element != null) {
                     break; // Stop if we have found it
                 }
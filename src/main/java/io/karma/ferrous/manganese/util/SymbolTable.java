@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.karma.ferrous.manganese.util;
+
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+
+/**
+ * A tree of scopes which maps every scope to the symbols declared directly inside it.
+ * Resolves names like {@link ScopeUtils#findInScope} does, by walking up the parent
+ * scopes of the lookup scope instead of joining new identifiers for every one of them.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class SymbolTable<T> {
+    private final Node<T> root = new Node<>(null);
+    private int size;
+
+    private static <T> @Nullable T get(Node<T> node, final String[] components) {
+        final var lastIndex = components.length - 1;
+        for (var i = 0; i < lastIndex; i++) {
+            node = node.getChild(components[i]);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.symbols != null ? node.symbols.get(components[lastIndex]) : null;
+    }
+
+    public void put(final Identifier name, final T value) {
+        final var components = name.components();
+        final var lastIndex = components.length - 1;
+        var node = root;
+        for (var i = 0; i < lastIndex; i++) {
+            node = node.getOrCreateChild(components[i]);
+        }
+        if (node.symbols == null) {
+            node.symbols = new HashMap<>();
+        }
+        if (node.symbols.put(components[lastIndex], value) == null) {
+            size++;
+        }
+    }
+
+    public @Nullable T get(final Identifier name) {
+        return get(root, name.components());
+    }
+
+    /**
+     * Resolves the given name relative to the given scope, starting at the scope itself
+     * and moving outwards until it reaches the global scope.
+     *
+     * @param name      The name of the symbol to find. May be qualified.
+     * @param scopeName The name of the scope the lookup happens in.
+     * @return The symbol which was found first, or null if there is none.
+     */
+    public @Nullable T find(final Identifier name, final Identifier scopeName) {
+        final var components = name.components();
+        final var element = get(root, components);
+        if (element != null) {
+            return element;
+        }
+        // Scopes deeper than the deepest existing node can't contain any symbols
+        var node = root;
+        for (final var component : scopeName.components()) {
+            final var child = node.getChild(component);
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+        for (; node != root; node = node.parent) {
+            final var result = get(node, components);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    public void clear() {
+        root.children = null;
+        root.symbols = null;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static final class Node<T> {
+        private final Node<T> parent;
+        private HashMap<String, Node<T>> children;
+        private HashMap<String, T> symbols;
+
+        private Node(final @Nullable Node<T> parent) {
+            this.parent = parent;
+        }
+
+        private @Nullable Node<T> getChild(final String name) {
+            return children != null ? children.get(name) : null;
+        }
+
+        private Node<T> getOrCreateChild(final String name) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            return children.computeIfAbsent(name, n -> new Node<>(this));
+        }
+    }
+}
@@ -20,7 +20,7 @@ import io.karma.ferrous.vanadium.FerrousLexer;
 import org.antlr.v4.runtime.CommonToken;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
-import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.jetbrains.annotations.Nullable;
 
@@ -32,59 +32,57 @@ import java.util.List;
  * @author Alexander Hinze
  * @since 29/10/2023
  */
-public record TokenSlice(@Nullable TokenStream tokenStream, int begin, int end) {
+public record TokenSlice(@Nullable TokenTable tokenTable, int begin, int end) {
     public static final TokenSlice EMPTY = new TokenSlice(null, 0, 0);
     public static final CommonToken EMPTY_TOKEN = new CommonToken(FerrousLexer.WS, "");
 
     public static TokenSlice from(final CompileContext compileContext, final ParserRuleContext context) {
-        return new TokenSlice(compileContext.getOrCreateModuleData().getTokenStream(),
+        return new TokenSlice(compileContext.getOrCreateModuleData().getTokenTable(),
             context.start.getTokenIndex(),
             context.stop.getTokenIndex());
     }
 
     public static TokenSlice from(final CompileContext compileContext, final TerminalNode terminalNode) {
         final var index = terminalNode.getSymbol().getTokenIndex();
-        return new TokenSlice(compileContext.getOrCreateModuleData().getTokenStream(), index, index);
+        return new TokenSlice(compileContext.getOrCreateModuleData().getTokenTable(), index, index);
     }
 
     public Token findTokenOrFirst(final String text) {
-        if (tokenStream == null) {
+        if (tokenTable == null) {
             return EMPTY_TOKEN;
         }
         for (var i = begin; i <= end; i++) {
-            final var token = tokenStream.get(i);
-            if (!token.getText().contains(text)) {
+            if (!tokenTable.getText(i).contains(text)) {
                 continue;
             }
-            return token;
+            return tokenTable.get(i);
         }
         return getFirstToken();
     }
 
     public Token getFirstToken() {
-        if (tokenStream == null) {
+        if (tokenTable == null) {
             return EMPTY_TOKEN;
         }
-        return tokenStream.get(begin);
+        return tokenTable.get(begin);
     }
 
     public List<Token> getTokens() {
-        if (tokenStream == null) {
+        if (tokenTable == null) {
             return Collections.emptyList();
         }
         final ArrayList<Token> tokens = new ArrayList<>(end - begin);
         for (var i = begin; i <= end; i++) {
-            tokens.add(tokenStream.get(i));
+            tokens.add(tokenTable.get(i));
         }
         return tokens;
     }
 
     @Override
     public String toString() {
-        if (tokenStream == null) {
+        if (tokenTable == null) {
             return "";
         }
-        final var text = tokenStream.getText(tokenStream.get(begin), tokenStream.get(end));
-        return text != null ? text : "Unknown token range";
+        return tokenTable.getText(Interval.of(begin, end));
     }
 }
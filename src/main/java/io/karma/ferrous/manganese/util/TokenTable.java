@@ -0,0 +1,472 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.karma.ferrous.manganese.util;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A fully buffered {@link TokenStream} which stores its tokens in columns
+ * instead of keeping one token object per token alive.
+ * Token text is sliced lazily from the source, and {@link Token} instances
+ * are only materialized when the parser or a diagnostic asks for one.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class TokenTable implements TokenStream {
+    private static final int INITIAL_CAPACITY = 1024;
+    // type, channel, start, stop, line, column
+    private static final int BYTES_PER_TOKEN = Integer.BYTES * 5 + Byte.BYTES;
+
+    private TokenSource tokenSource;
+    private final CharStream source;
+    private final int size;
+    private final int[] types;
+    private final byte[] channels;
+    private final int[] startIndices;
+    private final int[] stopIndices;
+    private final int[] lines;
+    private final int[] columns;
+    private final Range stream;
+
+    private TokenTable(final TokenSource tokenSource, final int size, final int[] types, final byte[] channels,
+                       final int[] startIndices, final int[] stopIndices, final int[] lines, final int[] columns) {
+        this.tokenSource = tokenSource;
+        source = tokenSource.getInputStream();
+        this.size = size;
+        this.types = types;
+        this.channels = channels;
+        this.startIndices = startIndices;
+        this.stopIndices = stopIndices;
+        this.lines = lines;
+        this.columns = columns;
+        stream = new Range(0, size - 1);
+    }
+
+    public static TokenTable tokenize(final TokenSource tokenSource) {
+        var capacity = INITIAL_CAPACITY;
+        var types = new int[capacity];
+        var channels = new byte[capacity];
+        var startIndices = new int[capacity];
+        var stopIndices = new int[capacity];
+        var lines = new int[capacity];
+        var columns = new int[capacity];
+        var size = 0;
+        while (true) {
+            if (size == capacity) {
+                capacity <<= 1;
+                types = Arrays.copyOf(types, capacity);
+                channels = Arrays.copyOf(channels, capacity);
+                startIndices = Arrays.copyOf(startIndices, capacity);
+                stopIndices = Arrays.copyOf(stopIndices, capacity);
+                lines = Arrays.copyOf(lines, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+            }
+            // The token object only lives until its columns are recorded
+            final var token = tokenSource.nextToken();
+            types[size] = token.getType();
+            channels[size] = (byte) token.getChannel();
+            startIndices[size] = token.getStartIndex();
+            stopIndices[size] = token.getStopIndex();
+            lines[size] = token.getLine();
+            columns[size] = token.getCharPositionInLine();
+            size++;
+            if (token.getType() == Token.EOF) {
+                break;
+            }
+        }
+        return new TokenTable(tokenSource,
+            size,
+            Arrays.copyOf(types, size),
+            Arrays.copyOf(channels, size),
+            Arrays.copyOf(startIndices, size),
+            Arrays.copyOf(stopIndices, size),
+            Arrays.copyOf(lines, size),
+            Arrays.copyOf(columns, size));
+    }
+
+    public int getType(final int index) {
+        return types[index];
+    }
+
+    public int getChannel(final int index) {
+        return channels[index];
+    }
+
+    public int getStartIndex(final int index) {
+        return startIndices[index];
+    }
+
+    public int getStopIndex(final int index) {
+        return stopIndices[index];
+    }
+
+    public int getLine(final int index) {
+        return lines[index];
+    }
+
+    public int getColumn(final int index) {
+        return columns[index];
+    }
+
+    public String getText(final int index) {
+        if (types[index] == Token.EOF) {
+            return "<EOF>";
+        }
+        final var stopIndex = stopIndices[index];
+        if (stopIndex >= source.size()) {
+            return "<EOF>";
+        }
+        return source.getText(Interval.of(startIndices[index], stopIndex));
+    }
+
+    public List<Token> getTokens() {
+        final var tokens = new ArrayList<Token>(size);
+        for (var i = 0; i < size; i++) {
+            tokens.add(get(i));
+        }
+        return tokens;
+    }
+
+    /**
+     * Drops the reference to the lexer which produced this table,
+     * tokens materialized afterwards are not associated with a token source.
+     */
+    public void releaseTokenSource() {
+        tokenSource = null;
+    }
+
+    public long getMemoryUsage() {
+        return (long) size * BYTES_PER_TOKEN;
+    }
+
+    /**
+     * @param begin The index of the first token in the range.
+     * @param end   The index of the token after the range, which is reported as EOF.
+     * @return A token stream over the given range of this table,
+     * which keeps the token indices of the table.
+     */
+    public Range getRange(final int begin, final int end) {
+        if (begin < 0 || end < begin || end >= size) {
+            throw new IndexOutOfBoundsException(STR."Token range \{begin}..\{end} out of range 0..\{size - 1}");
+        }
+        return new Range(begin, end);
+    }
+
+    private String getText(final int start, final int stop) {
+        final var builder = new StringBuilder();
+        for (var i = start; i <= stop; i++) {
+            if (types[i] == Token.EOF) {
+                break;
+            }
+            builder.append(getText(i));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public Token LT(final int k) {
+        return stream.LT(k);
+    }
+
+    @Override
+    public Token get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(STR."Token index \{index} out of range 0..\{size - 1}");
+        }
+        return new TableToken(this, index);
+    }
+
+    @Override
+    public @Nullable TokenSource getTokenSource() {
+        return tokenSource;
+    }
+
+    @Override
+    public String getText(final Interval interval) {
+        return stream.getText(interval);
+    }
+
+    @Override
+    public String getText() {
+        return stream.getText();
+    }
+
+    @Override
+    public String getText(final RuleContext context) {
+        return stream.getText(context);
+    }
+
+    @Override
+    public String getText(final Token start, final Token stop) {
+        return stream.getText(start, stop);
+    }
+
+    @Override
+    public void consume() {
+        stream.consume();
+    }
+
+    @Override
+    public int LA(final int i) {
+        return stream.LA(i);
+    }
+
+    @Override
+    public int mark() {
+        return stream.mark();
+    }
+
+    @Override
+    public void release(final int marker) {
+        stream.release(marker);
+    }
+
+    @Override
+    public int index() {
+        return stream.index();
+    }
+
+    @Override
+    public void seek(final int index) {
+        stream.seek(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return source.getSourceName();
+    }
+
+    /**
+     * A cursor over a range of the table with the same channel semantics as
+     * {@link org.antlr.v4.runtime.CommonTokenStream}, so a parser can consume it directly.
+     */
+    public final class Range implements TokenStream {
+        private final int begin;
+        private final int end;
+        private int position;
+
+        private Range(final int begin, final int end) {
+            this.begin = begin;
+            this.end = end;
+            position = getNextOnChannel(begin);
+        }
+
+        private int getType(final int index) {
+            return index >= end ? Token.EOF : types[index];
+        }
+
+        private int getChannel(final int index) {
+            return index >= end ? Token.DEFAULT_CHANNEL : channels[index];
+        }
+
+        private int getNextOnChannel(int index) {
+            if (index >= end) {
+                return end;
+            }
+            while (getChannel(index) != Token.DEFAULT_CHANNEL) {
+                if (getType(index) == Token.EOF) {
+                    return index;
+                }
+                index++;
+            }
+            return index;
+        }
+
+        private int getPreviousOnChannel(int index) {
+            while (index >= begin && getChannel(index) != Token.DEFAULT_CHANNEL) {
+                if (getType(index) == Token.EOF) {
+                    return index;
+                }
+                index--;
+            }
+            return index;
+        }
+
+        private int getLookaheadIndex(final int k) {
+            if (k == 0) {
+                return -1;
+            }
+            if (k < 0) {
+                if (position + k < begin) {
+                    return -1;
+                }
+                var index = position;
+                for (var i = 1; i <= -k && index > begin; i++) {
+                    index = getPreviousOnChannel(index - 1);
+                }
+                return index < begin ? -1 : index;
+            }
+            var index = position;
+            for (var i = 1; i < k; i++) {
+                index = getNextOnChannel(index + 1);
+            }
+            return index;
+        }
+
+        public int getBegin() {
+            return begin;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        @Override
+        public Token LT(final int k) {
+            final var index = getLookaheadIndex(k);
+            return index < 0 ? null : get(index);
+        }
+
+        @Override
+        public Token get(final int index) {
+            final var token = TokenTable.this.get(index);
+            if (index == end && token.getType() != Token.EOF) {
+                // The token after the range terminates it, it keeps its index so diagnostics stay correct
+                final var eofToken = (CommonToken) token;
+                eofToken.setType(Token.EOF);
+                eofToken.setChannel(Token.DEFAULT_CHANNEL);
+            }
+            return token;
+        }
+
+        @Override
+        public @Nullable TokenSource getTokenSource() {
+            return tokenSource;
+        }
+
+        @Override
+        public String getText(final Interval interval) {
+            final var start = Math.max(interval.a, begin);
+            final var stop = Math.min(interval.b, end - 1);
+            if (interval.a < 0 || interval.b < 0 || stop < start) {
+                return "";
+            }
+            return TokenTable.this.getText(start, stop);
+        }
+
+        @Override
+        public String getText() {
+            return getText(Interval.of(begin, end - 1));
+        }
+
+        @Override
+        public String getText(final RuleContext context) {
+            return getText(context.getSourceInterval());
+        }
+
+        @Override
+        public String getText(final Token start, final Token stop) {
+            if (start == null || stop == null) {
+                return "";
+            }
+            return getText(Interval.of(start.getTokenIndex(), stop.getTokenIndex()));
+        }
+
+        @Override
+        public void consume() {
+            if (LA(1) == EOF) {
+                throw new IllegalStateException("cannot consume EOF");
+            }
+            position = getNextOnChannel(position + 1);
+        }
+
+        @Override
+        public int LA(final int i) {
+            final var index = getLookaheadIndex(i);
+            return index < 0 ? Token.INVALID_TYPE : getType(index);
+        }
+
+        @Override
+        public int mark() {
+            return 0;
+        }
+
+        @Override
+        public void release(final int marker) {
+        }
+
+        @Override
+        public int index() {
+            return position;
+        }
+
+        @Override
+        public void seek(final int index) {
+            position = getNextOnChannel(Math.max(index, begin));
+        }
+
+        @Override
+        public int size() {
+            return end + 1;
+        }
+
+        @Override
+        public String getSourceName() {
+            return source.getSourceName();
+        }
+    }
+
+    private static final class TableToken extends CommonToken {
+        private final TokenTable table;
+
+        public TableToken(final TokenTable table, final int index) {
+            super(new Pair<>(table.tokenSource, table.source),
+                table.types[index],
+                table.channels[index],
+                table.startIndices[index],
+                table.stopIndices[index]);
+            this.table = table;
+            setTokenIndex(index);
+            setLine(table.lines[index]);
+            setCharPositionInLine(table.columns[index]);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            // Tokens are materialized on demand, so the same token may exist as multiple instances
+            if (obj instanceof TableToken token) {
+                return table == token.table && getTokenIndex() == token.getTokenIndex();
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(table) * 31 + getTokenIndex();
+        }
+    }
+}
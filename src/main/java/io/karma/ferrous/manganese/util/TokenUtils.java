@@ -17,7 +17,6 @@ package io.karma.ferrous.manganese.util;
 
 import io.karma.ferrous.vanadium.FerrousLexer;
 import org.antlr.v4.runtime.Token;
-import org.antlr.v4.runtime.TokenStream;
 import org.apiguardian.api.API;
 import org.apiguardian.api.API.Status;
 import org.barfuin.texttree.api.DefaultNode;
@@ -101,20 +100,20 @@ public final class TokenUtils {
         return name.substring(1, name.length() - 1);
     }
 
-    public static void getLineTokens(final TokenStream tokenStream, final Token token, final List<Token> tokens) {
+    public static void getLineTokens(final TokenTable tokenTable, final Token token, final List<Token> tokens) {
         final var line = token.getLine();
 
         var startIndex = token.getTokenIndex() - 1;
-        while (startIndex > 0 && tokenStream.get(startIndex).getLine() == line) {
+        while (startIndex > 0 && tokenTable.getLine(startIndex) == line) {
             --startIndex;
         }
         if (startIndex < 0) {
             startIndex = 0;
         }
 
-        final var maxIndex = tokenStream.size() - 1;
+        final var maxIndex = tokenTable.size() - 1;
         var endIndex = token.getTokenIndex() + 1;
-        while (endIndex < maxIndex && tokenStream.get(endIndex).getLine() == line) {
+        while (endIndex < maxIndex && tokenTable.getLine(endIndex) == line) {
             ++endIndex;
         }
         if (endIndex >= maxIndex) {
@@ -122,13 +121,13 @@ public final class TokenUtils {
         }
 
         for (var i = startIndex; i < endIndex; i++) {
-            tokens.add(tokenStream.get(i));
+            tokens.add(tokenTable.get(i));
         }
     }
 
-    public static ArrayList<Token> getLineTokens(final TokenStream tokenStream, final Token token) {
+    public static ArrayList<Token> getLineTokens(final TokenTable tokenTable, final Token token) {
         final var lineTokens = new ArrayList<Token>();
-        getLineTokens(tokenStream, token, lineTokens);
+        getLineTokens(tokenTable, token, lineTokens);
         return lineTokens;
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.karma.ferrous.manganese.util;
+
+import org.apiguardian.api.API;
+import org.apiguardian.api.API.Status;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonicalizes equal values to one shared instance.
+ * Entries only hold weak references, so values nothing refers to anymore can be collected
+ * and the table does not grow across compilations.
+ * Values of different classes are never considered equal, even if their equals says so.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@API(status = Status.INTERNAL)
+public final class WeakInterner<T> {
+    private final ConcurrentHashMap<Key<T>, Key<T>> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+
+    @SuppressWarnings("unchecked")
+    private void expungeStaleEntries() {
+        Key<T> key;
+        while ((key = (Key<T>) queue.poll()) != null) {
+            entries.remove(key, key);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V extends T> V intern(final V value) {
+        expungeStaleEntries();
+        final var key = new Key<T>(value, queue);
+        while (true) {
+            final var existing = entries.putIfAbsent(key, key);
+            if (existing == null) {
+                return value;
+            }
+            final var result = existing.get();
+            if (result != null) {
+                return (V) result;
+            }
+            entries.remove(existing, existing); // Collected between the lookup and now
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        expungeStaleEntries();
+        return entries.size();
+    }
+
+    private static final class Key<T> extends WeakReference<T> {
+        private final int hash;
+
+        private Key(final T value, final ReferenceQueue<T> queue) {
+            super(value, queue);
+            hash = value.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key<?> key) || hash != key.hash) {
+                return false;
+            }
+            // Collected keys are only equal to themselves
+            final var value = get();
+            final var other = key.get();
+            return value != null && other != null && value.getClass() == other.getClass() && value.equals(other);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import io.karma.ferrous.manganese.parser.FastLexer;
+import io.karma.ferrous.manganese.util.TokenTable;
+import io.karma.ferrous.vanadium.FerrousLexer;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Differential test of the {@link FastLexer} against the generated lexer it accelerates.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+public final class FastLexerTest {
+    // @formatter:off
+    private static final String[] FRAGMENTS = {
+        "fun", "let", "mut", "if", "else", "return", "while", "type", "mod", "use", "struct", "@NoMangle",
+        "main", "num_args", "_x", "value1", "FileHandle", "größe", "i32", "u8", "usize", "char*", "void**",
+        "0", "1", "42", "0x1F", "0b101", "1.5", "3.0e8", "1_000", "2u8", "7i64",
+        "\"text\"", "\"esc\\\"aped\\n\"", "\"unterminated", "'c'", "'\\n'", "`raw`",
+        "// comment\n", "/* block */", "/* unterminated",
+        "(", ")", "{", "}", "[", "]", "<", ">", ",", ";", ":", "::", ".", "..", "...", "->", "=>",
+        "=", "==", "!=", "<=", ">=", "+", "-", "*", "/", "%", "&", "&&", "|", "||", "^", "~", "!", "?", "#", "$",
+        " ", "  ", "\t", "\n", "\r\n", "\n\n", "§", " ", "🦀"
+    };
+    // @formatter:on
+    private static final int NUM_SOURCES = 500;
+    private static final Path SOURCE_DIRECTORY = Path.of("src/main/ferrous");
+
+    private static String createSource(final Random random, final int numFragments) {
+        final var builder = new StringBuilder();
+        for (var i = 0; i < numFragments; i++) {
+            builder.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            if (random.nextInt(4) == 0) {
+                builder.append(' ');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static FerrousLexer createLexer(final CharStream input) {
+        final var lexer = new FerrousLexer(input);
+        lexer.removeErrorListeners();
+        return lexer;
+    }
+
+    private static TokenTable lexGenerated(final String source) {
+        return TokenTable.tokenize(createLexer(CharStreams.fromString(source)));
+    }
+
+    private static TokenTable lexFast(final String source, final FastLexer.ShapeCache shapes) {
+        final var input = CharStreams.fromString(source);
+        return TokenTable.tokenize(new FastLexer(input, createLexer(input), shapes));
+    }
+
+    private static void assertSameTokens(final String name, final TokenTable expected, final TokenTable actual) {
+        final var size = Math.min(expected.size(), actual.size());
+        for (var i = 0; i < size; i++) {
+            final var message = STR."\{name}, token \{i}: expected \{expected.get(i)}, got \{actual.get(i)}";
+            assertEquals(expected.getType(i), actual.getType(i), message);
+            assertEquals(expected.getChannel(i), actual.getChannel(i), message);
+            assertEquals(expected.getStartIndex(i), actual.getStartIndex(i), message);
+            assertEquals(expected.getStopIndex(i), actual.getStopIndex(i), message);
+            assertEquals(expected.getLine(i), actual.getLine(i), message);
+            assertEquals(expected.getColumn(i), actual.getColumn(i), message);
+            assertEquals(expected.getText(i), actual.getText(i), message);
+        }
+        assertEquals(expected.size(), actual.size(), STR."\{name}: token count");
+    }
+
+    @Test
+    void testFuzzedSources() {
+        // Shapes are shared across sources like in the compiler, so stale shapes would show up here
+        final var shapes = new FastLexer.ShapeCache(FerrousLexer::new);
+        final var random = new Random(0xFE);
+        for (var i = 0; i < NUM_SOURCES; i++) {
+            final var source = createSource(random, 1 + random.nextInt(200));
+            assertSameTokens(STR."Fuzzed source \{i}", lexGenerated(source), lexFast(source, shapes));
+        }
+    }
+
+    @Test
+    void testBundledSources() throws IOException {
+        final var shapes = new FastLexer.ShapeCache(FerrousLexer::new);
+        try (final var files = Files.walk(SOURCE_DIRECTORY)) {
+            for (final var path : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(path)) {
+                    continue;
+                }
+                final var source = Files.readString(path);
+                assertSameTokens(path.toString(), lexGenerated(source), lexFast(source, shapes));
+            }
+        }
+    }
+
+    @Test
+    void testRepetitiveSource() {
+        // Repeated function shapes are where cached shapes get reused the most
+        final var random = new Random(1);
+        final var builder = new StringBuilder();
+        for (var i = 0; i < 2000; i++) {
+            builder.append("fun f").append(i).append("(a: i32, b: char*): i32 {\n");
+            builder.append("    let x: i32 = a + ").append(random.nextInt(100)).append("\n");
+            builder.append("    return x * b // ").append(createSource(random, 4).replace('\n', ' ')).append('\n');
+            builder.append("}\n\n");
+        }
+        final var source = builder.toString();
+        final var shapes = new FastLexer.ShapeCache(FerrousLexer::new);
+        assertSameTokens("Repetitive source", lexGenerated(source), lexFast(source, shapes));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import io.karma.ferrous.manganese.util.Identifier;
+import io.karma.ferrous.manganese.util.ScopeUtils;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+public final class IdentifierTest {
+    private static final String[] COMPONENTS = {"a", "foo", "Bar", "_x", "", ":", ":y", "z:", "b"};
+
+    private static Identifier createIdentifier(final Random random) {
+        final var components = new String[1 + random.nextInt(4)];
+        for (var i = 0; i < components.length; i++) {
+            components[i] = COMPONENTS[random.nextInt(COMPONENTS.length)];
+        }
+        return new Identifier(components);
+    }
+
+    @Test
+    void testParseInterns() {
+        final var first = Identifier.parse("std::string::len");
+        final var second = Identifier.parse(new String("std::string::len"));
+        assertSame(first, second);
+        assertEquals(first, Identifier.parse("std::string").join(Identifier.parse("len")));
+    }
+
+    @Test
+    void testJoinMatchesParse() {
+        final var random = new Random(21);
+        for (var i = 0; i < 10_000; i++) {
+            final var scopeName = createIdentifier(random);
+            final var name = createIdentifier(random);
+            final var numComponents = random.nextInt(scopeName.components().length + 1);
+            final var joined = scopeName.join(numComponents, name);
+            if (numComponents == 0 || (numComponents == 1 && scopeName.components()[0].isBlank())) {
+                assertSame(name, joined);
+                continue;
+            }
+            final var prefix = String.join(Identifier.DELIMITER,
+                Arrays.copyOf(scopeName.components(), numComponents));
+            final var expected = Identifier.parse(STR."\{prefix}\{Identifier.DELIMITER}\{name}");
+            assertEquals(expected, joined, STR."\{scopeName} (\{numComponents}) :: \{name}");
+            assertEquals(expected.toString(), joined.toString());
+            assertEquals(expected.hashCode(), joined.hashCode());
+        }
+    }
+
+    @Test
+    void testUnreferencedIdentifiersAreCollected() throws InterruptedException {
+        final var references = new ArrayList<WeakReference<Identifier>>();
+        for (var i = 0; i < 1000; i++) {
+            references.add(new WeakReference<>(Identifier.parse(STR."collected\{i}::name")));
+        }
+        for (var i = 0; i < 10 && references.stream().anyMatch(ref -> ref.get() != null); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        for (final var reference : references) {
+            assertNull(reference.get(), "The interner must not keep identifiers alive");
+        }
+    }
+
+    @Test
+    void testLookupsDoNotIntern() {
+        final var symbols = new HashMap<Identifier, Integer>();
+        final var scopeName = Identifier.parse("a::b::c::d::e::f::g::h");
+        symbols.put(Identifier.parse("a::b::value"), 1);
+        final var name = Identifier.parse("value");
+        final var missing = Identifier.parse("missing");
+        final var numInterned = Identifier.getNumInterned();
+        for (var i = 0; i < 10_000; i++) {
+            assertEquals(Integer.valueOf(1), ScopeUtils.findInScope(symbols, name, scopeName));
+            assertNull(ScopeUtils.findInScope(symbols, missing, scopeName));
+        }
+        assertTrue(Identifier.getNumInterned() <= numInterned, "Probed candidates must not be interned");
+    }
+
+    @Test
+    void testLookupsAtEveryDepth() {
+        final var symbols = new HashMap<Identifier, Integer>();
+        final var scopeName = Identifier.parse("a::b::c::d::e::f::g::h");
+        final var names = new Identifier[64];
+        for (var i = 0; i < names.length; i++) {
+            names[i] = Identifier.parse(STR."symbol\{i}");
+            // Spread the symbols over all depths, so lookups probe a varying number of scopes
+            symbols.put(scopeName.join(1 + i % 8, names[i]), i);
+        }
+        for (var i = 0; i < names.length; i++) {
+            assertEquals(Integer.valueOf(i), ScopeUtils.findInScope(symbols, names[i], scopeName));
+        }
+    }
+}
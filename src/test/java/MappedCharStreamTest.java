@@ -0,0 +1,137 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import io.karma.ferrous.manganese.util.MappedCharStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+public final class MappedCharStreamTest {
+    private static final String[] SNIPPETS = {"let x: i32 = 1;", "\n", "// Kommentar über Größe\n", "\"日本語\"", "🦀", "fn main() {}"};
+    private static final int NUM_THREADS = 8;
+
+    private static String createSource(final Random random, final int numSnippets) {
+        final var builder = new StringBuilder();
+        for (var i = 0; i < numSnippets; i++) {
+            builder.append(SNIPPETS[random.nextInt(SNIPPETS.length)]);
+        }
+        return builder.toString();
+    }
+
+    private static MappedCharStream wrap(final String source) {
+        return MappedCharStream.wrap(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)), "test");
+    }
+
+    private static long consume(final CharStream stream) {
+        var hash = 0L;
+        while (stream.LA(1) != IntStream.EOF) {
+            hash = hash * 31 + stream.LA(1);
+            stream.consume();
+        }
+        return hash;
+    }
+
+    @Test
+    void testMatchesCodePointStream() {
+        final var random = new Random(1337);
+        for (var i = 0; i < 50; i++) {
+            final var source = createSource(random, random.nextInt(2000));
+            final var expected = CharStreams.fromString(source);
+            final var actual = wrap(source);
+            assertEquals(expected.size(), actual.size());
+            for (var j = 0; j < 100 && expected.size() > 0; j++) {
+                final var start = random.nextInt(expected.size());
+                final var end = start + random.nextInt(expected.size() - start);
+                final var interval = Interval.of(start, end);
+                assertEquals(expected.getText(interval), actual.getText(interval));
+            }
+            assertEquals(consume(expected), consume(actual));
+        }
+    }
+
+    @Test
+    void testConcurrentTextReads() {
+        // Only non-ASCII blocks are decoded through the cursor, so keep all reads within a few of them
+        final var random = new Random(42);
+        final var builder = new StringBuilder();
+        for (var i = 0; i < 4 * MappedCharStream.BLOCK_SIZE; i++) {
+            builder.append(random.nextBoolean() ? "ü" : "🦀");
+        }
+        final var source = builder.toString();
+        final var expected = CharStreams.fromString(source);
+        final var stream = wrap(source);
+        final var size = stream.size();
+        final var executor = Executors.newFixedThreadPool(NUM_THREADS);
+        final var futures = new ArrayList<CompletableFuture<Void>>();
+        for (var i = 0; i < NUM_THREADS; i++) {
+            final var seed = i;
+            futures.add(CompletableFuture.runAsync(() -> {
+                final var threadRandom = new Random(seed);
+                for (var j = 0; j < 200_000; j++) {
+                    final var start = threadRandom.nextInt(size);
+                    final var interval = Interval.of(start, Math.min(size - 1, start + threadRandom.nextInt(64)));
+                    assertEquals(expected.getText(interval), stream.getText(interval));
+                }
+            }, executor));
+        }
+        // Lexing moves the cursor while other threads read text
+        consume(stream);
+        try {
+            futures.forEach(CompletableFuture::join);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertMatchesChannel(final String source) throws IOException {
+        final var path = Files.createTempFile("manganese", ".fe");
+        try {
+            Files.writeString(path, source, StandardCharsets.UTF_8);
+            try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                assertEquals(consume(CharStreams.fromChannel(channel)), consume(MappedCharStream.open(path)));
+            }
+        }
+        finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void testMappedFileMatchesChannel() throws IOException {
+        assertMatchesChannel("fn main() {\n    let x: i32 = 1;\n}\n".repeat(40_000));
+        assertMatchesChannel(createSource(new Random(7), 100_000));
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import io.karma.ferrous.manganese.compiler.Compiler;
+import io.karma.ferrous.manganese.compiler.MonomorphizationCache;
+import io.karma.ferrous.manganese.compiler.pass.EmitPass;
+import io.karma.ferrous.manganese.module.ModuleData;
+import io.karma.ferrous.manganese.ocm.function.*;
+import io.karma.ferrous.manganese.ocm.generic.GenericParameter;
+import io.karma.ferrous.manganese.ocm.scope.DefaultScope;
+import io.karma.ferrous.manganese.ocm.type.*;
+import io.karma.ferrous.manganese.util.Identifier;
+import io.karma.ferrous.manganese.util.TokenSlice;
+import io.karma.ferrous.manganese.util.TokenTable;
+import io.karma.ferrous.vanadium.FerrousLexer;
+import io.karma.ferrous.vanadium.FerrousParser;
+import io.karma.kommons.function.Functions;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.lwjgl.llvm.LLVMCore.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public final class MonomorphizationTest extends AbstractTest {
+    private static final Identifier NAME = new Identifier("id");
+    private static final Identifier GENERIC_NAME = new Identifier("T");
+
+    // fun id<T>(x: T*): T
+    private static Function createGenericFunction() {
+        final var genericType = Types.incomplete(GENERIC_NAME, Functions.castingIdentity(), TokenSlice.EMPTY);
+        final var type = Types.function(genericType,
+            List.of(genericType.asPtr()),
+            false,
+            Functions.castingIdentity(),
+            TokenSlice.EMPTY);
+        final var function = new Function(NAME,
+            CallingConvention.CDECL,
+            type,
+            EnumSet.noneOf(FunctionModifier.class),
+            TokenSlice.EMPTY,
+            List.of(new Parameter(new Identifier("x"), genericType.asPtr(), false, null)),
+            List.of(new GenericParameter(GENERIC_NAME)),
+            List.of());
+        function.setEnclosingScope(DefaultScope.GLOBAL);
+        return function;
+    }
+
+    @Test
+    void testInstantiationsAreShared() {
+        final var cache = new MonomorphizationCache();
+        final var function = createGenericFunction();
+        final var instantiation = function.monomorphize(cache, List.of(IntType.I32));
+        assertSame(instantiation, function.monomorphize(cache, List.of(IntType.I32)));
+        assertEquals(1, cache.getNumInstantiations());
+        assertEquals(1, cache.getNumHits());
+        // An equal declaration of another module gets its own instantiation
+        assertNotSame(instantiation, cache.instantiate(createGenericFunction(), List.of(IntType.I32)));
+        assertEquals(2, cache.getNumInstantiations());
+        assertTrue(instantiation.isMonomorphic());
+        assertEquals(IntType.I32, instantiation.getType().getReturnType());
+        assertEquals(List.of(IntType.I32.asPtr()), instantiation.getType().getParamTypes());
+        assertEquals(IntType.I32.asPtr(), instantiation.getParameters().getFirst().getType());
+        assertEquals(function.getEnclosingScope(), instantiation.getEnclosingScope());
+        assertNotNull(instantiation.getParamStorage(new Identifier("x")));
+
+        final var otherInstantiation = function.monomorphize(cache, List.of(IntType.I64));
+        assertNotSame(instantiation, otherInstantiation);
+        assertNotEquals(instantiation.getMangledName(), otherInstantiation.getMangledName());
+        assertEquals(3, cache.getNumInstantiations());
+        assertEquals(2, function.getMonomorphizations().size());
+        assertThrows(IllegalStateException.class, () -> createFunction().monomorphize(cache, List.of(IntType.I32)));
+    }
+
+    @Test
+    void testGenericCallResolution() {
+        final var cache = new MonomorphizationCache();
+        final var moduleData = new ModuleData("test");
+        final var function = createGenericFunction();
+        moduleData.addFunction(function);
+        final var instantiation = moduleData.findFunction(NAME,
+            Identifier.EMPTY,
+            List.of(IntType.I32),
+            List.of(IntType.I32.asPtr()),
+            cache);
+        assertNotNull(instantiation);
+        assertSame(cache.instantiate(function, List.of(IntType.I32)), instantiation);
+        // Candidates whose parameters don't match must not be instantiated
+        assertNull(moduleData.findFunction(NAME,
+            Identifier.EMPTY,
+            List.of(IntType.I64),
+            List.of(IntType.I32.asPtr()),
+            cache));
+        assertNull(moduleData.findFunction(NAME,
+            Identifier.EMPTY,
+            List.of(IntType.I32, IntType.I64),
+            List.of(IntType.I32.asPtr()),
+            cache));
+        assertEquals(1, cache.getNumInstantiations());
+        // Calls without type arguments never resolve to a generic function
+        assertNull(moduleData.findFunction(NAME, Identifier.EMPTY, List.of(IntType.I32.asPtr())));
+    }
+
+    private MonomorphizationCache lower(final String moduleName, final String source,
+                                        final int numThreads) throws Exception {
+        final var linker = targetMachine.getTarget().getPlatform().getDefaultLinkerType().create();
+        try (final var compiler = new Compiler(targetMachine, linker, numThreads, false)) {
+            compileContext.setCompiler(compiler);
+            compileContext.setCurrentModuleName(moduleName);
+            final var moduleData = compileContext.getOrCreateModuleData();
+            final var lexer = new FerrousLexer(CharStreams.fromString(source, moduleName));
+            moduleData.setLexer(lexer);
+            final var tokenTable = TokenTable.tokenize(lexer);
+            moduleData.setTokenTable(tokenTable);
+            final var parser = new FerrousParser(tokenTable);
+            moduleData.setParser(parser);
+            moduleData.setFileContext(parser.file());
+            for (final var pass : compiler.getPasses()) {
+                compileContext.setCurrentPass(pass);
+                pass.run(compileContext, module, compiler.getExecutorService());
+            }
+            compileContext.setCurrentPass(null);
+            assertTrue(compileContext.makeResult().errors().isEmpty(), compileContext.makeResult().errors().toString());
+            assertNull(module.verify());
+            return compiler.getMonomorphizationCache();
+        }
+        finally {
+            compileContext.setCompiler(null);
+        }
+    }
+
+    private MonomorphizedFunction findInstantiation(final String moduleName, final Identifier name) {
+        final var overloads = compileContext.getOrCreateModuleData(moduleName).getFunctions().get(name);
+        assertNotNull(overloads);
+        final var function = overloads.values().iterator().next();
+        assertFalse(function.isMonomorphic());
+        assertEquals(1, function.getMonomorphizations().size());
+        final var instantiation = function.getMonomorphizations().iterator().next();
+        assertEquals(List.of(IntType.I32), instantiation.getType().getParamTypes());
+        assertNotNull(instantiation.getBody());
+        return instantiation;
+    }
+
+    private void assertDefinedOnce(final MonomorphizedFunction instantiation) {
+        final var address = LLVMGetNamedFunction(module.getAddress(), instantiation.getMangledName());
+        assertNotEquals(NULL, address);
+        assertNotEquals(NULL, LLVMGetFirstBasicBlock(address));
+        assertEquals(LLVMLinkOnceODRLinkage, LLVMGetLinkage(address));
+    }
+
+    @Test
+    void testInstantiationIsLowered() throws Exception {
+        final var moduleName = "monomorphization";
+        final var source = """
+            fun id<T>(x: T): T {
+                return x
+            }
+
+            fun use(x: i32): i32 {
+                return id<i32>(x)
+            }
+            """;
+        final var cache = lower(moduleName, source, 1);
+        final var instantiation = findInstantiation(moduleName, NAME);
+        assertSame(instantiation, cache.getInstantiations().iterator().next());
+        assertDefinedOnce(instantiation);
+    }
+
+    @Test
+    void testGenericParametersAreBoundInBody() throws Exception {
+        final var moduleName = "generic_body";
+        final var source = """
+            fun copy<T>(x: T): T {
+                let y: T = x
+                return y
+            }
+
+            fun use_copy(x: i32): i32 {
+                return copy<i32>(x)
+            }
+            """;
+        lower(moduleName, source, 1);
+        final var instantiation = findInstantiation(moduleName, new Identifier("copy"));
+        final var locals = compileContext.getOrCreateModuleData(moduleName).getLocalsFor(instantiation);
+        assertEquals(1, locals.size());
+        assertEquals(IntType.I32, locals.values().iterator().next().getType());
+        assertTrue(compileContext.getGenericBindings().isEmpty());
+        assertDefinedOnce(instantiation);
+    }
+
+    @Test
+    void testInstantiationIsLoweredOnParallelWorkers() throws Exception {
+        final var moduleName = "parallel_monomorphization";
+        // Callers in every worker's chunk, so the instantiation is reached from a worker which doesn't own it
+        final var numCallers = 4 * EmitPass.MIN_FUNCTIONS_PER_WORKER;
+        final var source = new StringBuilder("fun forward<T>(x: T): T {\n    return x\n}\n");
+        for (var i = 0; i < numCallers; i++) {
+            source.append(STR."fun caller\{i}(x: i32): i32 {\n    return forward<i32>(x)\n}\n");
+        }
+        lower(moduleName, source.toString(), 2);
+        final var instantiation = findInstantiation(moduleName, new Identifier("forward"));
+        assertDefinedOnce(instantiation);
+    }
+
+    private static Function createFunction() {
+        final var type = Types.function(IntType.I32,
+            List.of(IntType.I32),
+            false,
+            Functions.castingIdentity(),
+            TokenSlice.EMPTY);
+        return new Function(NAME,
+            CallingConvention.CDECL,
+            type,
+            EnumSet.noneOf(FunctionModifier.class),
+            TokenSlice.EMPTY,
+            List.of(),
+            List.of(),
+            List.of());
+    }
+}
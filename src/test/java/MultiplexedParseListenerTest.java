@@ -0,0 +1,156 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import io.karma.ferrous.manganese.parser.MultiplexedParseListener;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+public final class MultiplexedParseListenerTest {
+    private static final int NUM_LINES = 10_000;
+    private static final int NUM_LISTENERS = 6;
+
+    private static ParserRuleContext createTree(final int numLines) {
+        final var root = new ParserRuleContext();
+        for (var i = 0; i < numLines; i++) {
+            // Roughly the shape of a single statement: a rule with a nested expression rule
+            final var statement = new ParserRuleContext(root, 0);
+            final var expression = new ParserRuleContext(statement, 0);
+            for (var j = 0; j < 4; j++) {
+                expression.addChild(new TerminalNodeImpl(new CommonToken(j + 1, STR."t\{j}")));
+            }
+            statement.addChild(expression);
+            statement.addChild(new TerminalNodeImpl(new CommonToken(5, ";")));
+            root.addChild(statement);
+        }
+        return root;
+    }
+
+    private static ArrayList<CountingListener> createListeners() {
+        final var listeners = new ArrayList<CountingListener>();
+        for (var i = 0; i < NUM_LISTENERS; i++) {
+            listeners.add(new CountingListener());
+        }
+        return listeners;
+    }
+
+    private static void walkSeparately(final ParserRuleContext tree, final ArrayList<CountingListener> listeners) {
+        for (final var listener : listeners) {
+            ParseTreeWalker.DEFAULT.walk(listener, tree);
+        }
+    }
+
+    private static void walkMultiplexed(final ParserRuleContext tree, final ArrayList<CountingListener> listeners) {
+        final var multiplexer = new MultiplexedParseListener();
+        listeners.forEach(multiplexer::subscribe);
+        ParseTreeWalker.DEFAULT.walk(multiplexer, tree);
+    }
+
+    @Test
+    void testEventsMatchSeparateWalks() {
+        final var tree = createTree(1000);
+        final var separateListeners = createListeners();
+        final var multiplexedListeners = createListeners();
+        walkSeparately(tree, separateListeners);
+        walkMultiplexed(tree, multiplexedListeners);
+        for (var i = 0; i < NUM_LISTENERS; i++) {
+            final var expected = separateListeners.get(i);
+            final var actual = multiplexedListeners.get(i);
+            assertEquals(expected.numEnters, actual.numEnters);
+            assertEquals(expected.numExits, actual.numExits);
+            assertEquals(expected.numTerminals, actual.numTerminals);
+            assertEquals(expected.sequenceHash, actual.sequenceHash);
+        }
+    }
+
+    @Test
+    void testEventsAreNested() {
+        final var tree = createTree(1);
+        final var events = new ArrayList<String>();
+        final var multiplexer = new MultiplexedParseListener();
+        for (var i = 0; i < 2; i++) {
+            final var index = i;
+            multiplexer.subscribe(new CountingListener() {
+                @Override
+                public void enterEveryRule(final ParserRuleContext context) {
+                    events.add(STR."enter\{index}");
+                }
+
+                @Override
+                public void exitEveryRule(final ParserRuleContext context) {
+                    events.add(STR."exit\{index}");
+                }
+            });
+        }
+        ParseTreeWalker.DEFAULT.walk(multiplexer, tree.getChild(ParserRuleContext.class, 0)
+            .getChild(ParserRuleContext.class, 0));
+        assertEquals(List.of("enter0", "enter1", "exit1", "exit0"), events);
+    }
+
+    @Test
+    void testSingleTraversalReachesEveryListener() {
+        final var tree = createTree(NUM_LINES);
+        final var listeners = createListeners();
+        walkMultiplexed(tree, listeners);
+        for (final var listener : listeners) {
+            assertEquals(NUM_LINES * 2 + 1, listener.numEnters);
+            assertEquals(NUM_LINES * 5, listener.numTerminals);
+        }
+    }
+
+    private static class CountingListener implements ParseTreeListener {
+        private int numEnters;
+        private int numExits;
+        private int numTerminals;
+        private long sequenceHash;
+
+        @Override
+        public void visitTerminal(final TerminalNode node) {
+            numTerminals++;
+            sequenceHash = sequenceHash * 31 + node.getSymbol().getType();
+        }
+
+        @Override
+        public void visitErrorNode(final ErrorNode node) {
+        }
+
+        @Override
+        public void enterEveryRule(final ParserRuleContext context) {
+            numEnters++;
+            sequenceHash = sequenceHash * 31 + 1000 + context.getChildCount();
+        }
+
+        @Override
+        public void exitEveryRule(final ParserRuleContext context) {
+            numExits++;
+            sequenceHash = sequenceHash * 31 - 1000;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import io.karma.ferrous.manganese.module.ModuleData;
+import io.karma.ferrous.manganese.ocm.function.CallingConvention;
+import io.karma.ferrous.manganese.ocm.function.Function;
+import io.karma.ferrous.manganese.ocm.function.FunctionModifier;
+import io.karma.ferrous.manganese.ocm.scope.DefaultScope;
+import io.karma.ferrous.manganese.ocm.scope.Scope;
+import io.karma.ferrous.manganese.ocm.scope.ScopeType;
+import io.karma.ferrous.manganese.ocm.type.*;
+import io.karma.ferrous.manganese.util.Identifier;
+import io.karma.ferrous.manganese.util.TokenSlice;
+import io.karma.kommons.function.Functions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+public final class OverloadSetTest {
+    private static final Type[] PARAM_TYPES = {IntType.I8, IntType.I16, IntType.I32, IntType.I64, IntType.U8,
+        IntType.U16, IntType.U32, IntType.U64, BoolType.INSTANCE, CharType.INSTANCE};
+    private static final Identifier NAME = new Identifier("foo");
+
+    private static Function createFunction(final Scope scope, final Type returnType, final List<Type> paramTypes) {
+        final var type = Types.function(returnType, paramTypes, false, Functions.castingIdentity(), TokenSlice.EMPTY);
+        final var function = new Function(NAME,
+            CallingConvention.CDECL,
+            type,
+            EnumSet.noneOf(FunctionModifier.class),
+            TokenSlice.EMPTY,
+            List.of(),
+            List.of(),
+            List.of());
+        function.setEnclosingScope(scope);
+        return function;
+    }
+
+    private static DefaultScope createScope(final Scope enclosingScope, final String name) {
+        final var scope = new DefaultScope(ScopeType.MODULE, new Identifier(name));
+        scope.setEnclosingScope(enclosingScope);
+        return scope;
+    }
+
+    // Every combination of up to three parameter types, this makes for 1110 overloads of one name
+    private static List<List<Type>> createSignatures() {
+        final var signatures = new ArrayList<List<Type>>();
+        for (final var first : PARAM_TYPES) {
+            signatures.add(List.of(first));
+            for (final var second : PARAM_TYPES) {
+                signatures.add(List.of(first, second));
+                for (final var third : PARAM_TYPES) {
+                    signatures.add(List.of(first, second, third));
+                }
+            }
+        }
+        return signatures;
+    }
+
+    // The lookup findFunction did before overloads were indexed by their call signature
+    private static Function findLinear(final ModuleData data, final Identifier name, final List<Type> paramTypes) {
+        final var overloads = data.getFunctions().get(name);
+        if (overloads == null) {
+            return null;
+        }
+        for (final var type : overloads.keySet()) {
+            if (!type.getParamTypes().equals(paramTypes)) {
+                continue;
+            }
+            return overloads.get(type);
+        }
+        return null;
+    }
+
+    @Test
+    void testAddFunctionInvalidatesResolvedCalls() {
+        final var data = new ModuleData("test");
+        final var outerScope = createScope(DefaultScope.GLOBAL, "a");
+        final var innerScope = createScope(outerScope, "b");
+        final var globalFunction = createFunction(DefaultScope.GLOBAL, VoidType.INSTANCE, List.of(IntType.I32));
+        data.addFunction(globalFunction);
+        final var callScopeName = innerScope.getQualifiedName();
+        assertSame(globalFunction, data.findFunction(NAME, callScopeName, List.of(IntType.I32)));
+        // The new overload is closer to the call site, so it has to win over the memoized one
+        final var scopedFunction = createFunction(outerScope, VoidType.INSTANCE, List.of(IntType.I32));
+        data.addFunction(scopedFunction);
+        assertSame(scopedFunction, data.findFunction(NAME, callScopeName, List.of(IntType.I32)));
+        assertSame(globalFunction, data.findFunction(NAME, Identifier.EMPTY, List.of(IntType.I32)));
+    }
+
+    @Test
+    void testAddFunctionMakesNewOverloadVisible() {
+        final var data = new ModuleData("test");
+        final var function = createFunction(DefaultScope.GLOBAL, VoidType.INSTANCE, List.of(IntType.I32));
+        data.addFunction(function);
+        assertSame(function, data.findFunction(NAME, Identifier.EMPTY, List.of(IntType.I32)));
+        assertNull(data.findFunction(NAME, Identifier.EMPTY, List.of(IntType.I64)));
+        final var overload = createFunction(DefaultScope.GLOBAL, VoidType.INSTANCE, List.of(IntType.I64));
+        data.addFunction(overload);
+        assertSame(overload, data.findFunction(NAME, Identifier.EMPTY, List.of(IntType.I64)));
+        assertSame(function, data.findFunction(NAME, Identifier.EMPTY, List.of(IntType.I32)));
+        assertThrows(IllegalStateException.class,
+            () -> data.addFunction(createFunction(DefaultScope.GLOBAL, VoidType.INSTANCE, List.of(IntType.I32))));
+    }
+
+    @Test
+    void testPutFunctionInvalidatesResolvedCalls() {
+        final var data = new ModuleData("test");
+        final var function = createFunction(DefaultScope.GLOBAL, VoidType.INSTANCE, List.of(IntType.I32));
+        data.putFunction(function);
+        assertSame(function, data.findFunction(NAME, Identifier.EMPTY, List.of(IntType.I32)));
+        // Same type, so the new function replaces the old one
+        final var replacement = createFunction(DefaultScope.GLOBAL, VoidType.INSTANCE, List.of(IntType.I32));
+        data.putFunction(replacement);
+        assertSame(replacement, data.findFunction(NAME, Identifier.EMPTY, List.of(IntType.I32)));
+        assertSame(replacement, data.findFunction(NAME, Identifier.EMPTY, replacement.getType()));
+    }
+
+    @Test
+    void testLookupMatchesLinearScan() {
+        final var data = new ModuleData("test");
+        final var signatures = createSignatures();
+        for (final var signature : signatures) {
+            data.addFunction(createFunction(DefaultScope.GLOBAL, VoidType.INSTANCE, signature));
+        }
+        assertEquals(signatures.size(), data.getFunctions().get(NAME).size());
+        for (final var signature : signatures) {
+            final var paramTypes = new ArrayList<>(signature);
+            final var function = data.findFunction(NAME, Identifier.EMPTY, paramTypes);
+            assertNotNull(function);
+            assertSame(findLinear(data, NAME, paramTypes), function);
+            assertEquals(signature, function.getType().getParamTypes());
+        }
+        assertNull(data.findFunction(NAME, Identifier.EMPTY, List.of()));
+        assertNull(data.findFunction(NAME, Identifier.EMPTY, List.of(IntType.I8, IntType.I8, IntType.I8, IntType.I8)));
+    }
+
+    @Test
+    void testMismatchedCallsMatchLinearScan() {
+        final var random = new Random(24);
+        final var data = new ModuleData("test");
+        final var signatures = createSignatures();
+        for (final var signature : signatures) {
+            data.addFunction(createFunction(DefaultScope.GLOBAL, VoidType.INSTANCE, signature));
+        }
+        // Call sites build their own argument type lists, roughly one in eight of them matches no overload
+        for (var i = 0; i < 1024; i++) {
+            final var paramTypes = new ArrayList<>(signatures.get(random.nextInt(signatures.size())));
+            if (random.nextInt(8) == 0) {
+                paramTypes.add(PARAM_TYPES[random.nextInt(PARAM_TYPES.length)]);
+            }
+            assertSame(findLinear(data, NAME, paramTypes), data.findFunction(NAME, Identifier.EMPTY, paramTypes));
+        }
+    }
+}
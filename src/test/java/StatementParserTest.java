@@ -0,0 +1,230 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import io.karma.ferrous.manganese.compiler.CompileContext;
+import io.karma.ferrous.manganese.compiler.Compiler;
+import io.karma.ferrous.manganese.compiler.pass.EmitPass;
+import io.karma.ferrous.manganese.ocm.expr.BinaryExpression;
+import io.karma.ferrous.manganese.ocm.expr.IfExpression;
+import io.karma.ferrous.manganese.ocm.function.Function;
+import io.karma.ferrous.manganese.ocm.statement.ReturnStatement;
+import io.karma.ferrous.manganese.ocm.statement.Statement;
+import io.karma.ferrous.manganese.parser.ParseAdapter;
+import io.karma.ferrous.manganese.parser.PruningParseTreeWalker;
+import io.karma.ferrous.manganese.util.TokenTable;
+import io.karma.ferrous.vanadium.FerrousLexer;
+import io.karma.ferrous.vanadium.FerrousParser;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the statements built by the pruning parse tree walk,
+ * which must visit every nested expression and branch exactly once.
+ *
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public final class StatementParserTest extends AbstractTest {
+    private static final int EXPRESSION_DEPTH = 100;
+    private static final int NUM_BRANCHES = 50;
+    private static final int IF_DEPTH = 20;
+
+    private List<Statement> parseBody(final String moduleName, final String source,
+                                      final String functionName) throws Exception {
+        final var linker = targetMachine.getTarget().getPlatform().getDefaultLinkerType().create();
+        try (final var compiler = new Compiler(targetMachine, linker, 1, false)) {
+            compileContext.setCompiler(compiler);
+            compileContext.setCurrentModuleName(moduleName);
+            final var moduleData = compileContext.getOrCreateModuleData();
+            final var lexer = new FerrousLexer(CharStreams.fromString(source, moduleName));
+            moduleData.setLexer(lexer);
+            final var tokenTable = TokenTable.tokenize(lexer);
+            moduleData.setTokenTable(tokenTable);
+            final var parser = new FerrousParser(tokenTable);
+            moduleData.setParser(parser);
+            moduleData.setFileContext(parser.file());
+            for (final var pass : compiler.getPasses()) {
+                if (pass instanceof EmitPass) {
+                    break; // Only the OCM is of interest
+                }
+                compileContext.setCurrentPass(pass);
+                pass.run(compileContext, module, compiler.getExecutorService());
+            }
+            compileContext.setCurrentPass(null);
+            assertTrue(compileContext.makeResult().errors().isEmpty(), compileContext.makeResult().errors().toString());
+            Function function = null;
+            for (final var overloadSet : moduleData.getFunctions().values()) {
+                for (final var candidate : overloadSet.values()) {
+                    if (candidate.getName().toString().equals(functionName)) {
+                        function = candidate;
+                    }
+                }
+            }
+            assertNotNull(function, STR."Function \{functionName} was not declared");
+            final var body = function.getBody();
+            assertNotNull(body, STR."Function \{functionName} has no body");
+            return body.getStatements();
+        }
+        finally {
+            compileContext.setCompiler(null);
+        }
+    }
+
+    @Test
+    void testDeeplyNestedExpression() throws Exception {
+        final var source = new StringBuilder("fun nested(x: i32): i32 {\n    return ");
+        source.append("(".repeat(EXPRESSION_DEPTH)).append('x');
+        source.append(" + 1)".repeat(EXPRESSION_DEPTH)).append("\n}\n");
+        final var statements = parseBody("nested_expr", source.toString(), "nested");
+        assertEquals(1, statements.size());
+        final var statement = assertInstanceOf(ReturnStatement.class, statements.getFirst());
+        var depth = 0;
+        var expr = statement.getValue();
+        while (expr instanceof BinaryExpression binaryExpr) {
+            depth++;
+            expr = binaryExpr.getLHS();
+        }
+        assertEquals(EXPRESSION_DEPTH, depth);
+    }
+
+    @Test
+    void testElseIfChain() throws Exception {
+        final var source = new StringBuilder("fun chain(x: i32): i32 {\n    if (x == 0) {\n        return 0\n    }");
+        for (var i = 1; i < NUM_BRANCHES; i++) {
+            source.append(STR." else if (x == \{i}) {\n        return \{i}\n    }");
+        }
+        source.append(" else {\n        return 99\n    }\n    return 0\n}\n");
+        final var statements = parseBody("else_if_chain", source.toString(), "chain");
+        // Statements of the branches must not leak into the function body
+        assertEquals(2, statements.size());
+        final var ifExpr = assertInstanceOf(IfExpression.class, statements.getFirst());
+        assertInstanceOf(ReturnStatement.class, statements.getLast());
+        final var branches = ifExpr.getBranches();
+        assertEquals(NUM_BRANCHES + 1, branches.size());
+        for (var i = 0; i < branches.size(); i++) {
+            final var branch = branches.get(i);
+            assertEquals(i == NUM_BRANCHES, branch.getLeft() == null);
+            assertEquals(1, branch.getRight().size(), STR."Branch \{i}");
+            assertInstanceOf(ReturnStatement.class, branch.getRight().getFirst());
+        }
+    }
+
+    @Test
+    void testNestedIfBodies() throws Exception {
+        final var source = new StringBuilder("fun nested_if(x: i32): i32 {\n");
+        for (var i = 0; i < IF_DEPTH; i++) {
+            source.append(STR."if (x > \{i}) {\n");
+        }
+        source.append("return 1\n");
+        source.append("}\n".repeat(IF_DEPTH));
+        source.append("return 0\n}\n");
+        var statements = parseBody("nested_if", source.toString(), "nested_if");
+        assertEquals(2, statements.size());
+        for (var i = 0; i < IF_DEPTH; i++) {
+            final var ifExpr = assertInstanceOf(IfExpression.class, statements.getFirst(), STR."Level \{i}");
+            final var branches = ifExpr.getBranches();
+            assertEquals(1, branches.size());
+            statements = branches.getFirst().getRight();
+            assertEquals(1, statements.size(), STR."Level \{i}");
+        }
+        assertInstanceOf(ReturnStatement.class, statements.getFirst());
+    }
+
+    @Test
+    void testNestedExpressionIsVisitedOnce() {
+        final var source = new StringBuilder("fun nested(x: i32): i32 {\n    return ");
+        source.append("(".repeat(EXPRESSION_DEPTH)).append('x');
+        source.append(" + 1)".repeat(EXPRESSION_DEPTH)).append("\n}\n");
+        final var lexer = new FerrousLexer(CharStreams.fromString(source.toString(), "visit_once"));
+        final var parser = new FerrousParser(TokenTable.tokenize(lexer));
+        final var fileContext = parser.file();
+        final var contexts = new ArrayList<ParserRuleContext>();
+        ParseTreeWalker.DEFAULT.walk(new ParseTreeListener() {
+            @Override
+            public void visitTerminal(final TerminalNode node) {}
+
+            @Override
+            public void visitErrorNode(final ErrorNode node) {}
+
+            @Override
+            public void enterEveryRule(final ParserRuleContext context) {
+                contexts.add(context);
+            }
+
+            @Override
+            public void exitEveryRule(final ParserRuleContext context) {}
+        }, fileContext);
+        final var numEnters = new IdentityHashMap<ParserRuleContext, Integer>();
+        final var numParsers = new int[1];
+        PruningParseTreeWalker.INSTANCE.walk(new NestingAdapter(compileContext, null, numEnters, numParsers), fileContext);
+        // Every expression is handed to a nested adapter, like the statement and expression parsers do
+        assertTrue(numParsers[0] > EXPRESSION_DEPTH, STR."Only \{numParsers[0]} nested adapters were created");
+        assertEquals(contexts.size(), numEnters.size());
+        for (final var context : contexts) {
+            assertEquals(1, numEnters.get(context), STR."Visits of \{context.getClass().getSimpleName()}");
+        }
+    }
+
+    /**
+     * Walks every expression below its root with a nested adapter and skips the children itself,
+     * counting how often each rule is entered. The root is entered by the adapter which handed it over.
+     */
+    private static final class NestingAdapter extends ParseAdapter {
+        private final ParserRuleContext root;
+        private final IdentityHashMap<ParserRuleContext, Integer> numEnters;
+        private final int[] numParsers;
+
+        private NestingAdapter(final CompileContext compileContext, final ParserRuleContext root,
+                               final IdentityHashMap<ParserRuleContext, Integer> numEnters,
+                               final int[] numParsers) {
+            super(compileContext);
+            this.root = root;
+            this.numEnters = numEnters;
+            this.numParsers = numParsers;
+            numParsers[0]++;
+        }
+
+        @Override
+        public void enterEveryRule(final ParserRuleContext context) {
+            if (context != root) {
+                numEnters.merge(context, 1, Integer::sum);
+            }
+        }
+
+        @Override
+        public void enterExpr(final FerrousParser.ExprContext context) {
+            if (context == root) {
+                return;
+            }
+            PruningParseTreeWalker.INSTANCE.walk(new NestingAdapter(compileContext, context, numEnters, numParsers), context);
+            skipChildren();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import io.karma.ferrous.manganese.util.Identifier;
+import io.karma.ferrous.manganese.util.ScopeUtils;
+import io.karma.ferrous.manganese.util.SymbolTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+public final class SymbolTableTest {
+    private static final String[] COMPONENTS = {"a", "b", "c", "std", "io", "x"};
+
+    private static Identifier createName(final Random random, final int minLength, final int maxLength) {
+        final var components = new String[minLength + random.nextInt(maxLength - minLength + 1)];
+        for (var i = 0; i < components.length; i++) {
+            components[i] = COMPONENTS[random.nextInt(COMPONENTS.length)];
+        }
+        return new Identifier(components);
+    }
+
+    @Test
+    void testFindMatchesScopeUtils() {
+        final var random = new Random(22);
+        for (var round = 0; round < 100; round++) {
+            final var map = new HashMap<Identifier, Integer>();
+            final var table = new SymbolTable<Integer>();
+            for (var i = 0; i < 50; i++) {
+                final var name = createName(random, 1, 5);
+                map.put(name, i);
+                table.put(name, i);
+            }
+            assertEquals(map.size(), table.size());
+            for (var i = 0; i < 1000; i++) {
+                final var name = createName(random, 1, 3);
+                // @formatter:off
+                final var scopeName = random.nextInt(10) == 0
+                    ? Identifier.EMPTY
+                    : createName(random, 1, 6);
+                // @formatter:on
+                assertEquals(ScopeUtils.findInScope(map, name, scopeName),
+                    table.find(name, scopeName),
+                    STR."\{name} in \{scopeName}");
+                assertEquals(map.get(name), table.get(name));
+            }
+        }
+    }
+
+    @Test
+    void testDeepScopesMatchScopeUtils() {
+        final var random = new Random(1);
+        final var map = new HashMap<Identifier, Integer>();
+        final var table = new SymbolTable<Integer>();
+        // Symbols are only declared inside of scopes, so every lookup has to probe its enclosing scopes
+        for (var i = 0; i < 10_000; i++) {
+            final var name = createName(random, 1, 5).join(new Identifier(STR."symbol\{i % 100}"));
+            map.put(name, i);
+            table.put(name, i);
+        }
+        for (var i = 0; i < 1024; i++) {
+            final var name = new Identifier(STR."symbol\{random.nextInt(100)}");
+            final var scopeName = createName(random, 4, 8);
+            assertEquals(ScopeUtils.findInScope(map, name, scopeName),
+                table.find(name, scopeName),
+                STR."\{name} in \{scopeName}");
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import io.karma.ferrous.manganese.util.TokenTable;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+public final class TokenTableTest {
+    private static final int NUM_TOKENS = 100_000;
+    private static final String LINE = "let value: i32 = other + 1;\n";
+    private static final int TOKENS_PER_LINE = 16; // Including whitespace
+
+    private static CharStream createSource(final int numTokens) {
+        return CharStreams.fromString(LINE.repeat(numTokens / TOKENS_PER_LINE));
+    }
+
+    @Test
+    void testMatchesCommonTokenStream() {
+        final var source = createSource(10_000);
+        final var expected = new CommonTokenStream(new WordLexer(source));
+        expected.fill();
+        source.seek(0);
+        final var actual = TokenTable.tokenize(new WordLexer(source));
+        assertEquals(expected.size(), actual.size());
+        for (var i = 0; i < expected.size(); i++) {
+            final var expectedToken = expected.get(i);
+            final var actualToken = actual.get(i);
+            assertEquals(expectedToken.getType(), actualToken.getType());
+            assertEquals(expectedToken.getChannel(), actualToken.getChannel());
+            assertEquals(expectedToken.getStartIndex(), actualToken.getStartIndex());
+            assertEquals(expectedToken.getStopIndex(), actualToken.getStopIndex());
+            assertEquals(expectedToken.getLine(), actualToken.getLine());
+            assertEquals(expectedToken.getCharPositionInLine(), actualToken.getCharPositionInLine());
+            assertEquals(expectedToken.getTokenIndex(), actualToken.getTokenIndex());
+            assertEquals(expectedToken.getText(), actualToken.getText());
+        }
+    }
+
+    @Test
+    void testMemoryUsageBounds() {
+        final var source = createSource(NUM_TOKENS);
+        final var tokenTable = TokenTable.tokenize(new WordLexer(source));
+        final var numTokens = tokenTable.size();
+        assertTrue(numTokens >= NUM_TOKENS - TOKENS_PER_LINE);
+        final var memoryUsage = tokenTable.getMemoryUsage();
+        // Type, start, stop, line and column are stored as ints for every token
+        assertTrue(memoryUsage >= (long) numTokens * Integer.BYTES * 5,
+            STR."\{memoryUsage} bytes cannot hold \{numTokens} tokens");
+        // A CommonToken object alone is larger than this, without its reference in the token list
+        assertTrue(memoryUsage <= (long) numTokens * 32,
+            STR."\{memoryUsage} bytes for \{numTokens} tokens is no smaller than token objects");
+    }
+
+    /**
+     * Splits its input into identifiers, numbers, single character symbols and whitespace,
+     * which is enough to produce token streams of a realistic shape without a grammar.
+     */
+    private static final class WordLexer implements TokenSource {
+        private static final int TYPE_WORD = 1;
+        private static final int TYPE_SYMBOL = 2;
+        private static final int TYPE_WHITESPACE = 3;
+
+        private final CharStream input;
+        private final Pair<TokenSource, CharStream> source;
+        private TokenFactory<?> tokenFactory = CommonTokenFactory.DEFAULT;
+        private int line = 1;
+        private int column;
+
+        private WordLexer(final CharStream input) {
+            this.input = input;
+            source = new Pair<>(this, input);
+        }
+
+        @Override
+        public Token nextToken() {
+            final var start = input.index();
+            final var startLine = line;
+            final var startColumn = column;
+            final var first = input.LA(1);
+            if (first == IntStream.EOF) {
+                return tokenFactory.create(source, Token.EOF, null, Token.DEFAULT_CHANNEL, start, start - 1, line,
+                    column);
+            }
+            final int type;
+            if (Character.isLetterOrDigit(first)) {
+                type = TYPE_WORD;
+                while (Character.isLetterOrDigit(input.LA(1))) {
+                    advance();
+                }
+            }
+            else if (Character.isWhitespace(first)) {
+                type = TYPE_WHITESPACE;
+                while (Character.isWhitespace(input.LA(1))) {
+                    advance();
+                }
+            }
+            else {
+                type = TYPE_SYMBOL;
+                advance();
+            }
+            final var channel = type == TYPE_WHITESPACE ? Token.HIDDEN_CHANNEL : Token.DEFAULT_CHANNEL;
+            return tokenFactory.create(source, type, null, channel, start, input.index() - 1, startLine, startColumn);
+        }
+
+        private void advance() {
+            if (input.LA(1) == '\n') {
+                line++;
+                column = 0;
+            }
+            else {
+                column++;
+            }
+            input.consume();
+        }
+
+        @Override
+        public int getLine() {
+            return line;
+        }
+
+        @Override
+        public int getCharPositionInLine() {
+            return column;
+        }
+
+        @Override
+        public CharStream getInputStream() {
+            return input;
+        }
+
+        @Override
+        public String getSourceName() {
+            return input.getSourceName();
+        }
+
+        @Override
+        public void setTokenFactory(final TokenFactory<?> tokenFactory) {
+            this.tokenFactory = tokenFactory;
+        }
+
+        @Override
+        public TokenFactory<?> getTokenFactory() {
+            return tokenFactory;
+        }
+    }
+}
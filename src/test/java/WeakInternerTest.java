@@ -0,0 +1,108 @@
+/*
+ * Copyright 2023 Karma Krafts & associates
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import io.karma.ferrous.manganese.ocm.type.FunctionType;
+import io.karma.ferrous.manganese.ocm.type.IntType;
+import io.karma.ferrous.manganese.ocm.type.NamedFunctionType;
+import io.karma.ferrous.manganese.ocm.type.Type;
+import io.karma.ferrous.manganese.ocm.type.Types;
+import io.karma.ferrous.manganese.util.Identifier;
+import io.karma.ferrous.manganese.util.TokenSlice;
+import io.karma.ferrous.manganese.util.WeakInterner;
+import io.karma.kommons.function.Functions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Alexander Hinze
+ * @since 29/12/2023
+ */
+public final class WeakInternerTest {
+    @Test
+    void testSubclassesAreNotMerged() {
+        // Mirrors FunctionType/NamedFunctionType with a colliding hash, the base equals accepts the subclass
+        final var interner = new WeakInterner<Base>();
+        final var base = interner.intern(new Base(42));
+        final var derived = interner.intern(new Derived(42));
+        assertNotSame(base, derived);
+        assertEquals(Derived.class, derived.getClass());
+        assertSame(base, interner.intern(new Base(42)));
+        assertSame(derived, interner.intern(new Derived(42)));
+        assertEquals(2, interner.size());
+    }
+
+    @Test
+    void testSubclassInternedFirstIsNotReturnedForBase() {
+        final var interner = new WeakInterner<Base>();
+        final var derived = interner.intern(new Derived(7));
+        final var base = interner.intern(new Base(7));
+        assertNotSame(derived, base);
+        assertEquals(Base.class, base.getClass());
+    }
+
+    @Test
+    void testNamedFunctionTypeIsNotMergedWithUnnamed() {
+        final var paramTypes = List.<Type>of(IntType.I32);
+        final var unnamed = Types.function(IntType.I32,
+            paramTypes,
+            false,
+            Functions.castingIdentity(),
+            TokenSlice.EMPTY);
+        final var named = Types.namedFunction(Identifier.parse("foo"),
+            IntType.I32,
+            paramTypes,
+            false,
+            Functions.castingIdentity(),
+            TokenSlice.EMPTY);
+        assertNotSame(unnamed, named);
+        assertEquals(FunctionType.class, unnamed.getClass());
+        assertEquals(NamedFunctionType.class, named.getClass());
+        assertSame(unnamed,
+            Types.function(IntType.I32, paramTypes, false, Functions.castingIdentity(), TokenSlice.EMPTY));
+    }
+
+    private static class Base {
+        private final int value;
+
+        private Base(final int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Base base && value == base.value;
+        }
+    }
+
+    private static final class Derived extends Base {
+        private Derived(final int value) {
+            super(value);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Derived && super.equals(obj);
+        }
+    }
+}